@@ -0,0 +1,83 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolving caller names from an {@link AddressBook}, as done for every incoming call snapshot,
+ * and indexing the whole file, as done in the background before the first lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressBookBenchmark {
+
+    @Param({"5000"})
+    private int contacts;
+
+    private Path file;
+    private AddressBook addressBook;
+    private String[] numbers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final StringBuilder cards = new StringBuilder();
+        numbers = new String[1024];
+        for (int i = 0; i < contacts; i++) {
+            final String subscriber = Integer.toString(1_000_000 + i * 7).substring(1);
+            cards.append("BEGIN:VCARD\nVERSION:3.0\nFN:Contact ").append(i)
+                .append("\nTEL;TYPE=CELL:+44 7700 ").append(subscriber)
+                .append("\nTEL;TYPE=HOME:+44 20 7946 ").append(subscriber.substring(2))
+                .append("\nEND:VCARD\n");
+        }
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = "07700 " + Integer.toString(1_000_000 + (i * 31 % contacts) * 7).substring(1);
+        }
+        file = Files.createTempFile("contacts", ".vcf");
+        Files.writeString(file, cards);
+        addressBook = new AddressBook(file);
+        addressBook.size();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Optional<String> resolveKnown() {
+        return addressBook.resolve(numbers[next++ & numbers.length - 1]);
+    }
+
+    @Benchmark
+    public Optional<String> resolveUnknown() {
+        return addressBook.resolve("+1 555 010 9999");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int load() {
+        return new AddressBook(file).size();
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.freedesktop.dbus.types.Variant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.javadruid.bluez.phone.lib.Payloads.CALL_PATH;
+import static com.javadruid.bluez.phone.lib.Payloads.MODEM_PATH;
+
+/**
+ * Appending call events to a {@link CallJournal}, as done on the signal threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private Path directory;
+    private CallJournal journal;
+    private Map<String, Variant<?>> callProperties;
+    private Variant<String> state;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = new CallJournal(directory);
+        callProperties = Payloads.callProperties();
+        state = new Variant<>("active");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void propertyChanged() {
+        journal.propertyChanged(CALL_PATH, VoiceCall.STATE, state);
+    }
+
+    @Benchmark
+    public void callAdded() {
+        journal.callAdded(MODEM_PATH, CALL_PATH, callProperties);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.Manager;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
+import static com.javadruid.bluez.phone.lib.VoiceCalls.GET_MODEMS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Decoding and filtering of the {@code GetModems} reply.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModemListingBenchmark {
+
+    private VoiceCalls voiceCalls;
+
+    @Setup
+    public void setup() throws DBusException {
+        final DBusConnection connection = Payloads.connection();
+        final Manager manager = mock(Manager.class, withSettings().stubOnly());
+        when(connection.getRemoteObject(BUS_NAME, "/", Manager.class)).thenReturn(manager);
+        Payloads.reply(connection, GET_MODEMS, Payloads.modemListing());
+        voiceCalls = new VoiceCalls(connection);
+    }
+
+    @Benchmark
+    public Map<String, Boolean> getModemListing() throws DBusException {
+        return voiceCalls.getModemListing();
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.Variant;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Realistic oFono payloads and stub-only mocks shared by the benchmarks.
+ */
+final class Payloads {
+
+    static final String MODEM_PATH = "/hfp/org/bluez/hci0/dev_00_11_22_33_44_55";
+    static final String CALL_PATH = MODEM_PATH + "/voicecall01";
+
+    private Payloads() {
+    }
+
+    static Map<String, Variant<?>> callProperties() {
+        final Map<String, Variant<?>> properties = new LinkedHashMap<>();
+        properties.put(VoiceCall.LINE_IDENTIFICATION, new Variant<>("+441234567890"));
+        properties.put(VoiceCall.INCOMING_LINE, new Variant<>("+449876543210"));
+        properties.put(VoiceCall.NAME, new Variant<>("Alice"));
+        properties.put(VoiceCall.MULTIPARTY, new Variant<>(false));
+        properties.put(VoiceCall.STATE, new Variant<>("active"));
+        properties.put(VoiceCall.START_TIME, new Variant<>("2024-01-01T10:00:00+0000"));
+        properties.put(VoiceCall.INFORMATION, new Variant<>(""));
+        properties.put(VoiceCall.ICON, new Variant<>((byte) 0));
+        properties.put(VoiceCall.EMERGENCY, new Variant<>(false));
+        properties.put(VoiceCall.REMOTE_HELD, new Variant<>(false));
+        properties.put(VoiceCall.REMOTE_MULTIPARTY, new Variant<>(false));
+        return properties;
+    }
+
+    static Map<String, Variant<?>> modemProperties(String name, boolean online) {
+        final Map<String, Variant<?>> properties = new LinkedHashMap<>();
+        properties.put("Online", new Variant<>(online));
+        properties.put("Powered", new Variant<>(true));
+        properties.put("Lockdown", new Variant<>(false));
+        properties.put("Emergency", new Variant<>(false));
+        properties.put("Name", new Variant<>(name));
+        properties.put("Manufacturer", new Variant<>("oFono"));
+        properties.put("Model", new Variant<>("HFP"));
+        properties.put("Revision", new Variant<>("1.0"));
+        properties.put("Serial", new Variant<>("00:11:22:33:44:55"));
+        properties.put("Type", new Variant<>("hfp"));
+        properties.put("Features", new Variant<>(List.of("net", "gprs"), "as"));
+        properties.put("Interfaces", new Variant<>(List.of(
+            "org.ofono.VoiceCallManager", "org.ofono.CallVolume", "org.ofono.NetworkRegistration"), "as"));
+        properties.put("Strength", new Variant<>(new UInt32(80)));
+        return properties;
+    }
+
+    static List<Object[]> modemListing() {
+        return List.of(
+            new Object[]{new ObjectPath("", MODEM_PATH), modemProperties("Phone", true)},
+            new Object[]{new ObjectPath("", "/hfp/org/bluez/hci0/dev_66_77_88_99_AA_BB"), modemProperties("Tablet", false)},
+            new Object[]{new ObjectPath("", "/phonesim"), modemProperties("Phonesim", true)});
+    }
+
+    /**
+     * Returns a connection whose mocks record no invocations, so they do not allocate per call.
+     */
+    static DBusConnection connection() {
+        return mock(DBusConnection.class, withSettings().stubOnly());
+    }
+
+    /**
+     * Answers every call to {@code member} sent through {@code connection} with {@code parameters}.
+     */
+    static void reply(DBusConnection connection, String member, Object... parameters) throws DBusException {
+        final Message message = mock(Message.class, withSettings().stubOnly());
+        when(message.getParameters()).thenReturn(parameters);
+        doAnswer(i -> {
+            i.<MethodCall>getArgument(0).setReply(message);
+            return null;
+        })
+        .when(connection).sendMessage(argThat(m -> m instanceof MethodCall c && member.equals(c.getName())));
+    }
+
+}
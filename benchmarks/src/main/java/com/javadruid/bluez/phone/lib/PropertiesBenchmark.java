@@ -0,0 +1,88 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.Properties;
+import org.freedesktop.dbus.types.Variant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.javadruid.bluez.phone.lib.AbstractDBusSupport.GET_PROPERTIES;
+import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
+import static com.javadruid.bluez.phone.lib.Payloads.CALL_PATH;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Property decoding and lookup on a {@link VoiceCall}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesBenchmark {
+
+    private VoiceCall voiceCall;
+    private Map.Entry<String, Variant<?>> entry;
+
+    @Setup
+    public void setup() throws DBusException {
+        final DBusConnection connection = Payloads.connection();
+        final com.javadruid.bluez.phone.lib.interfaces.VoiceCall remoteObject =
+            mock(com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class, withSettings().stubOnly());
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH, com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class))
+            .thenReturn(remoteObject);
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH, Properties.class))
+            .thenReturn(mock(Properties.class, withSettings().stubOnly()));
+        Payloads.reply(connection, GET_PROPERTIES, Payloads.callProperties());
+        voiceCall = new VoiceCall(connection, CALL_PATH);
+        voiceCall.refreshProperties();
+        entry = Map.entry(VoiceCall.STATE, new Variant<>("active"));
+    }
+
+    @Benchmark
+    public void refreshProperties() {
+        voiceCall.refreshProperties();
+    }
+
+    @Benchmark
+    public VoiceCallState getState() {
+        return voiceCall.getState();
+    }
+
+    @Benchmark
+    public void getProperties(Blackhole blackhole) {
+        voiceCall.getProperties().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public VoiceCallSnapshot snapshot() {
+        return voiceCall.snapshot();
+    }
+
+    @Benchmark
+    public Map.Entry<String, Object> toObjectEntry() {
+        return AbstractDBusSupport.toObjectEntry(entry);
+    }
+
+    @Benchmark
+    public VoiceCallState stateLookup() {
+        return VoiceCallState.get("incoming");
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Properties;
+import org.freedesktop.dbus.types.Variant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
+import static com.javadruid.bluez.phone.lib.Payloads.CALL_PATH;
+import static com.javadruid.bluez.phone.lib.Payloads.MODEM_PATH;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Decoding of {@code CallAdded} and {@code PropertyChanged} signals through the handlers the
+ * objects register, as delivered by the connection: into maps and entries, and into reused
+ * typed events. Run with {@code -prof gc} for the bytes allocated per signal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalDecodeBenchmark {
+
+    private CallAdded callAdded;
+    private PropertyChanged propertyChanged;
+    private DBusSigHandler<CallAdded> callAddedHandler;
+    private DBusSigHandler<PropertyChanged> propertyChangedHandler;
+    private DBusSigHandler<CallAdded> callAddedEventHandler;
+    private DBusSigHandler<PropertyChanged> propertyEventHandler;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws DBusException {
+        callAdded = new CallAdded(MODEM_PATH, new ObjectPath("", CALL_PATH), Payloads.callProperties());
+        propertyChanged = new PropertyChanged(CALL_PATH, VoiceCall.STATE, new Variant<>("held"));
+
+        final DBusConnection connection = Payloads.connection();
+        final com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager manager =
+            remoteObject(connection, MODEM_PATH, com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class);
+        final com.javadruid.bluez.phone.lib.interfaces.VoiceCall call =
+            remoteObject(connection, CALL_PATH, com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class);
+        final AtomicReference<DBusSigHandler<CallAdded>> added = capture(connection, CallAdded.class, manager);
+        final AtomicReference<DBusSigHandler<PropertyChanged>> changed = capture(connection, PropertyChanged.class, call);
+
+        final Consumer<Object> sink = blackhole::consume;
+        final VoiceCallManager voiceCallManager = new VoiceCallManager(connection, MODEM_PATH);
+        final VoiceCall voiceCall = new VoiceCall(connection, CALL_PATH);
+        voiceCallManager.onCallAdded(sink::accept);
+        voiceCall.onPropertyChange(sink::accept);
+        callAddedHandler = added.get();
+        propertyChangedHandler = changed.get();
+        voiceCallManager.onCallAddedEvent(e -> blackhole.consume(e.getState()));
+        voiceCall.onPropertyEvent(e -> blackhole.consume(e.getState()));
+        callAddedEventHandler = added.get();
+        propertyEventHandler = changed.get();
+    }
+
+    @Benchmark
+    public void handleCallAdded() {
+        callAddedHandler.handle(callAdded);
+    }
+
+    @Benchmark
+    public void handlePropertyChanged() {
+        propertyChangedHandler.handle(propertyChanged);
+    }
+
+    @Benchmark
+    public void handleCallAddedEvent() {
+        callAddedEventHandler.handle(callAdded);
+    }
+
+    @Benchmark
+    public void handlePropertyEvent() {
+        propertyEventHandler.handle(propertyChanged);
+    }
+
+    private static <T extends DBusInterface> T remoteObject(DBusConnection connection, String path, Class<T> type)
+            throws DBusException {
+        final T remoteObject = mock(type, withSettings().stubOnly());
+        when(connection.getRemoteObject(BUS_NAME, path, type)).thenReturn(remoteObject);
+        when(connection.getRemoteObject(BUS_NAME, path, Properties.class))
+            .thenReturn(mock(Properties.class, withSettings().stubOnly()));
+        return remoteObject;
+    }
+
+    /**
+     * Keeps the handler an object registers for a signal of its remote object.
+     */
+    private static <T extends org.freedesktop.dbus.messages.DBusSignal> AtomicReference<DBusSigHandler<T>> capture(
+            DBusConnection connection, Class<T> signal, DBusInterface object) throws DBusException {
+        final AtomicReference<DBusSigHandler<T>> handler = new AtomicReference<>();
+        doAnswer(i -> {
+            handler.set(i.getArgument(2));
+            return null;
+        }).when(connection).addSigHandler(same(signal), eq(object), any(DBusSigHandler.class));
+        return handler;
+    }
+
+}
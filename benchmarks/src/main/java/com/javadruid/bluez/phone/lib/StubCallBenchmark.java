@@ -0,0 +1,96 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManagerStub;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.freedesktop.dbus.RemoteInvocationHandler;
+import org.freedesktop.dbus.RemoteObject;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
+import static com.javadruid.bluez.phone.lib.Payloads.MODEM_PATH;
+import static org.mockito.Mockito.when;
+
+/**
+ * Building and sending a {@code Dial} call through a dbus-java proxy, as
+ * {@code AbstractConnection.callWithCallback} does, and through the generated stub. The
+ * connection drops the messages, so only the work on the calling thread is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StubCallBenchmark {
+
+    private static final String NUMBER = "+441234567890";
+    private static final String HIDE_CALLER_ID = "default";
+
+    private final CallbackHandler<Object> handler = new CallbackHandler<>() {
+        @Override
+        public void handle(Object reply) {
+        }
+
+        @Override
+        public void handleError(DBusExecutionException error) {
+        }
+    };
+    private DBusConnection connection;
+    private RemoteObject remote;
+    private VoiceCallManagerStub stub;
+
+    @Setup
+    public void setup() {
+        connection = Payloads.connection();
+        when(connection.isConnected()).thenReturn(true);
+        remote = new RemoteObject(BUS_NAME, MODEM_PATH,
+            com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class, false);
+        stub = new VoiceCallManagerStub(connection, BUS_NAME, MODEM_PATH);
+    }
+
+    @Benchmark
+    public Object proxyCallback() throws DBusException, NoSuchMethodException {
+        final Object[] parameters = {NUMBER, HIDE_CALLER_ID};
+        final Class<?>[] types = Arrays.stream(parameters).map(Object::getClass).toArray(Class<?>[]::new);
+        final Method method = remote.getInterface().getMethod(VoiceCallManager.DIAL, types);
+        return RemoteInvocationHandler.executeRemoteMethod(remote, method, connection,
+            RemoteInvocationHandler.CALL_TYPE_CALLBACK, handler, parameters);
+    }
+
+    @Benchmark
+    public void stubCallback() {
+        VoiceCallManagerStub.DIAL.callWithCallback(connection, BUS_NAME, MODEM_PATH, handler,
+            NUMBER, HIDE_CALLER_ID);
+    }
+
+    @Benchmark
+    public Object proxyCall() throws DBusException, NoSuchMethodException {
+        final Object[] parameters = {NUMBER, HIDE_CALLER_ID};
+        final Class<?>[] types = Arrays.stream(parameters).map(Object::getClass).toArray(Class<?>[]::new);
+        final Method method = remote.getInterface().getMethod(VoiceCallManager.DIAL, types);
+        return RemoteInvocationHandler.executeRemoteMethod(remote, method, connection,
+            RemoteInvocationHandler.CALL_TYPE_ASYNC, null, parameters);
+    }
+
+    @Benchmark
+    public MethodCall stubCall() {
+        return stub.dial(NUMBER, HIDE_CALLER_ID);
+    }
+
+}
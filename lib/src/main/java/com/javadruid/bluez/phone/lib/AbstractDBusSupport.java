@@ -1,18 +1,40 @@
 package com.javadruid.bluez.phone.lib;
 
+import com.javadruid.bluez.phone.lib.DBusMetrics.Outcome;
+import com.javadruid.bluez.phone.lib.interfaces.AbstractPropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.StubMethod;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.errors.Error;
+import org.freedesktop.dbus.errors.NoReply;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Properties;
 import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
 import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.UInt32;
 import org.freedesktop.dbus.types.Variant;
 import org.slf4j.Logger;
@@ -25,17 +47,77 @@ public abstract class AbstractDBusSupport {
     static final String SET = "Set";
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractDBusSupport.class);
+    private static final DBusMetrics metrics = DBusMetrics.getInstance();
+    private static final CallTimeouts timeouts = CallTimeouts.getInstance();
+    private static final ScheduledThreadPoolExecutor deadlines = newDeadlines();
 
     protected final String objectPath;
     protected final DBusInterface remoteObject;
     protected final DBusConnection connection;
+    protected final SignalDispatcher dispatcher;
+    private final String busName;
     private final Properties properties;
+    private final Function<String, StubMethod> stubs;
+    private final Class<AbstractPropertyChanged> propertyChangedClass;
+    private final Object propertyCacheLock = new Object();
+    // Serializes the cache updates against the change signals, which must not wait for GetProperties
+    private final Object propertyChangesLock = new Object();
+    // An immutable snapshot replaced as a whole, null until the properties are fetched
+    private volatile Map<String, Object> propertyCache;
+    // Set once the object is gone from the bus, after which its properties are not fetched again
+    private volatile boolean closed;
+    // Changes signalled whilst the cache is being filled, empty values for removed properties
+    private Map<String, Optional<Object>> pendingPropertyChanges;
+    private DBusSigHandler<PropertiesChanged> propertyCacheHandler;
+    private DBusSigHandler<AbstractPropertyChanged> propertyChangedCacheHandler;
     private DBusSigHandler<PropertiesChanged> propertyChangeHandler;
+    private DBusSigHandler<AbstractPropertyChanged> propertyChangedHandler;
+    private volatile Consumer<Map.Entry<String, Object>> propertyChangeConsumer;
+    private DBusSigHandler<PropertiesChanged> propertyEventHandler;
+    private DBusSigHandler<AbstractPropertyChanged> propertyChangedEventHandler;
+    private volatile Consumer<PropertyEvent> propertyEventConsumer;
+    private SignalPublisher<Map.Entry<String, Object>> propertyChangePublisher;
+    // Every publisher created, closed with this object. Guarded by this
+    private final List<SignalPublisher<?>> publishers = new ArrayList<>();
 
     public AbstractDBusSupport(DBusConnection connection, String objectPath, String busName,
             Class<? extends DBusInterface> dbusClass) {
+        this(connection, objectPath, busName, dbusClass, null);
+    }
+
+    /**
+     * @param propertyChangedClass the native {@code PropertyChanged} signal of {@code dbusClass}, or
+     * {@code null} if the object only reports changes through {@code org.freedesktop.DBus.Properties}
+     */
+    public AbstractDBusSupport(DBusConnection connection, String objectPath, String busName,
+            Class<? extends DBusInterface> dbusClass,
+            Class<? extends AbstractPropertyChanged> propertyChangedClass) {
+        this(connection, objectPath, busName, dbusClass, propertyChangedClass, SignalDispatcher.DIRECT);
+    }
+
+    /**
+     * @param dispatcher dispatches the signals received by the handlers of this object
+     */
+    public AbstractDBusSupport(DBusConnection connection, String objectPath, String busName,
+            Class<? extends DBusInterface> dbusClass,
+            Class<? extends AbstractPropertyChanged> propertyChangedClass, SignalDispatcher dispatcher) {
+        this(connection, objectPath, busName, dbusClass, propertyChangedClass, dispatcher, member -> null);
+    }
+
+    /**
+     * @param stubs finds the generated stub of a method of {@code dbusClass}, e.g.
+     * {@code VoiceCallStub::method}, through which it is called rather than through the proxy
+     */
+    protected AbstractDBusSupport(DBusConnection connection, String objectPath, String busName,
+            Class<? extends DBusInterface> dbusClass,
+            Class<? extends AbstractPropertyChanged> propertyChangedClass, SignalDispatcher dispatcher,
+            Function<String, StubMethod> stubs) {
         this.connection = connection;
+        this.dispatcher = dispatcher;
         this.objectPath = objectPath;
+        this.busName = busName;
+        this.stubs = stubs;
+        this.propertyChangedClass = (Class<AbstractPropertyChanged>) propertyChangedClass;
         try {
             this.remoteObject = connection.getRemoteObject(busName, objectPath, dbusClass);
             this.properties = connection.getRemoteObject(busName, objectPath, Properties.class);
@@ -45,21 +127,204 @@ public abstract class AbstractDBusSupport {
         }
     }
 
+    /**
+     * Returns the properties of this object. They are served from a local cache which is filled
+     * by a single {@code GetProperties} call and then kept up to date from change signals.
+     * @return the current properties
+     */
     public Stream<Map.Entry<String, Object>> getProperties() {
-        return ((Map<String, Variant<?>>) callMethodReturn(remoteObject, GET_PROPERTIES))
-            .entrySet().stream()
-            .map(AbstractDBusSupport::toObjectEntry);
+        return getCachedProperties().entrySet().stream();
+    }
+
+    /**
+     * Returns the properties of this object without blocking. A filled cache completes the future
+     * at once; otherwise it is completed by an asynchronous {@code GetProperties} call, which
+     * leaves the cache untouched. Never waits for a refresh in progress.
+     * @return a future of the current properties
+     */
+    protected CompletableFuture<Map<String, Object>> getPropertiesAsync() {
+        if (closed) {
+            return CompletableFuture.failedFuture(closedException());
+        }
+        final Map<String, Object> cached = propertyCache;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return mapReply(this.<Map<String, Variant<?>>>callMethodAsync(remoteObject, GET_PROPERTIES),
+            result -> result.entrySet().stream()
+                .map(AbstractDBusSupport::toObjectEntry)
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    /**
+     * Fetches the properties again from the bus. Readers keep seeing the previous ones until the
+     * new ones replace them, and keep them if the call fails.
+     * @throws IllegalStateException if this object was closed
+     */
+    public void refreshProperties() {
+        synchronized (propertyCacheLock) {
+            checkOpen();
+            trackPropertyChanges();
+            synchronized (propertyChangesLock) {
+                pendingPropertyChanges = new LinkedHashMap<>();
+            }
+            Map<String, Object> refreshed = null;
+            try {
+                final Map<String, Variant<?>> result =
+                    (Map<String, Variant<?>>) callMethodReturn(remoteObject, GET_PROPERTIES);
+                if (result != null) {
+                    refreshed = new HashMap<>();
+                    for (Map.Entry<String, Variant<?>> e : result.entrySet()) {
+                        refreshed.put(e.getKey(), e.getValue().getValue());
+                    }
+                }
+            } finally {
+                synchronized (propertyChangesLock) {
+                    final Map<String, Object> base = refreshed != null ? refreshed
+                        : propertyCache != null ? new HashMap<>(propertyCache) : null;
+                    if (base != null) {
+                        // Changes handled before the cache was filled, which the reply may predate
+                        pendingPropertyChanges.forEach((k, v) -> apply(base, k, v));
+                        propertyCache = Collections.unmodifiableMap(base);
+                    }
+                    pendingPropertyChanges = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the cached properties and stops tracking their changes. The next read
+     * fetches them again from the bus.
+     */
+    public void invalidateProperties() {
+        synchronized (propertyCacheLock) {
+            synchronized (propertyChangesLock) {
+                propertyCache = null;
+            }
+            removeSigHandler(PropertiesChanged.class, properties, propertyCacheHandler);
+            removeSigHandler(propertyChangedClass, remoteObject, propertyChangedCacheHandler);
+            propertyCacheHandler = null;
+            propertyChangedCacheHandler = null;
+        }
+    }
+
+    /**
+     * Marks this object as gone from the bus, e.g. an evicted call: its cached properties are
+     * discarded and no longer tracked, and reading them fails with {@link IllegalStateException}
+     * rather than fetching them and tracking their changes again. The subscribers of its event
+     * publishers are completed.
+     */
+    void close() {
+        synchronized (propertyCacheLock) {
+            closed = true;
+            invalidateProperties();
+        }
+        final List<SignalPublisher<?>> closing;
+        synchronized (this) {
+            closing = List.copyOf(publishers);
+        }
+        closing.forEach(SignalPublisher::close);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw closedException();
+        }
+    }
+
+    private IllegalStateException closedException() {
+        return new IllegalStateException(defaultName() + " is closed");
+    }
+
+    /**
+     * Fills the property cache with values obtained elsewhere, e.g. from a bulk call.
+     */
+    void seedProperties(Map<String, Object> values) {
+        synchronized (propertyCacheLock) {
+            checkOpen();
+            trackPropertyChanges();
+            synchronized (propertyChangesLock) {
+                propertyCache = Collections.unmodifiableMap(new HashMap<>(values));
+            }
+        }
     }
 
     // Listeners
     public void onPropertyChange(Consumer<Map.Entry<String, Object>> handler) {
-        propertyChangeHandler = onSignal(
-            PropertiesChanged.class, properties, propertyChangeHandler,
-            s -> handlePropertyChange(s, handler));
+        propertyChangeConsumer = handler;
+        if (propertyChangedClass != null) {
+            propertyChangedHandler = onSignal(
+                propertyChangedClass, remoteObject, propertyChangedHandler,
+                s -> handlePropertyChanged(s, handler));
+        } else {
+            propertyChangeHandler = onSignal(
+                PropertiesChanged.class, properties, propertyChangeHandler,
+                s -> handlePropertyChange(s, handler));
+        }
     }
 
     public void removePropertyChange() {
+        propertyChangeConsumer = null;
         removeSigHandler(PropertiesChanged.class, properties, propertyChangeHandler);
+        removeSigHandler(propertyChangedClass, remoteObject, propertyChangedHandler);
+    }
+
+    /**
+     * Like {@link #onPropertyChange}, but hands the changes over as {@link PropertyEvent}s decoded
+     * in place, which are reused rather than allocated per signal.
+     */
+    public void onPropertyEvent(Consumer<PropertyEvent> handler) {
+        propertyEventConsumer = handler;
+        final Recycler<PropertyEvent> events = new Recycler<>(PropertyEvent::new, PropertyEvent::clear);
+        if (propertyChangedClass != null) {
+            propertyChangedEventHandler = onSignal(
+                propertyChangedClass, remoteObject, propertyChangedEventHandler, s -> {
+                    final PropertyEvent event = events.take();
+                    try {
+                        handler.accept(event.set(s.getPath(), s.getName(), s.getValue()));
+                    } finally {
+                        events.give(event);
+                    }
+                });
+        } else {
+            propertyEventHandler = onSignal(
+                PropertiesChanged.class, properties, propertyEventHandler, s -> {
+                    final PropertyEvent event = events.take();
+                    try {
+                        for (Map.Entry<String, Variant<?>> e : s.getPropertiesChanged().entrySet()) {
+                            handler.accept(event.set(s.getPath(), e.getKey(), e.getValue()));
+                        }
+                    } finally {
+                        events.give(event);
+                    }
+                });
+        }
+    }
+
+    public void removePropertyEvent() {
+        propertyEventConsumer = null;
+        removeSigHandler(PropertiesChanged.class, properties, propertyEventHandler);
+        removeSigHandler(propertyChangedClass, remoteObject, propertyChangedEventHandler);
+    }
+
+    /**
+     * Returns the property changes of this object as a stream any number of subscribers may
+     * share, unlike {@link #onPropertyChange}, which takes a single handler.
+     */
+    public synchronized Flow.Publisher<Map.Entry<String, Object>> propertyChangeEvents() {
+        if (propertyChangePublisher == null) {
+            propertyChangePublisher = propertyChangedClass != null
+                ? newSignalPublisher("property change", propertyChangedClass, remoteObject,
+                    AbstractDBusSupport::handlePropertyChanged)
+                : newSignalPublisher("property change", PropertiesChanged.class, properties,
+                    AbstractDBusSupport::handlePropertyChange);
+        }
+        return propertyChangePublisher;
     }
 
     public String getPath() {
@@ -75,6 +340,93 @@ public abstract class AbstractDBusSupport {
         callMethod(remoteObject, methodName, parameters);
     }
 
+    protected CompletableFuture<Void> callObjectMethodAsync(String methodName, Object... parameters) {
+        return callMethodAsync(remoteObject, methodName, parameters);
+    }
+
+    /**
+     * Calls a method without blocking. The returned future is completed from the connection's
+     * callback threads with the decoded return value, or exceptionally with the D-Bus error.
+     * If a deadline is set for the method it fails with {@link DBusTimeoutException} once it
+     * passes. Cancelling the future, or its deadline passing, discards the reply whenever it
+     * arrives: dbus-java keeps its callback until then, which no longer holds the future.
+     */
+    protected <T> CompletableFuture<T> callMethodAsync(DBusInterface object, String methodName, Object... parameters) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        // Cleared once the future completes, whether or not by the reply
+        final AtomicReference<CompletableFuture<T>> pending = new AtomicReference<>(result);
+        result.whenComplete((r, ex) -> pending.set(null));
+        final long start = System.nanoTime();
+        try {
+            final CallbackHandler<T> handler = new CallbackHandler<T>() {
+                @Override
+                public void handle(T r) {
+                    final CompletableFuture<T> future = pending.get();
+                    if (future != null && future.complete(r)) {
+                        recordCall(methodName, start, Outcome.SUCCESS);
+                    }
+                }
+
+                @Override
+                public void handleError(DBusExecutionException e) {
+                    logger.warn("Error whilst calling method {}", methodName, e);
+                    final CompletableFuture<T> future = pending.get();
+                    if (future != null && future.completeExceptionally(e)) {
+                        recordCall(methodName, start, e instanceof NoReply ? Outcome.TIMEOUT : Outcome.ERROR);
+                    }
+                }
+            };
+            final StubMethod stub = stub(object, methodName);
+            if (stub != null) {
+                stub.callWithCallback(connection, busName, objectPath, handler, parameters);
+            } else {
+                connection.callWithCallback(object, methodName, handler, parameters);
+            }
+        } catch (DBusExecutionException ex) {
+            recordCall(methodName, start, Outcome.ERROR);
+            logger.warn("Could not call {} with parameters {}", methodName, parameters);
+            result.completeExceptionally(ex);
+            return result;
+        }
+        timeouts.get(methodName).ifPresent(timeout -> {
+            final ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                if (result.completeExceptionally(new DBusTimeoutException(methodName, timeout))) {
+                    recordCall(methodName, start, Outcome.TIMEOUT);
+                    logger.warn("No reply to {} within {}", methodName, timeout);
+                }
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+            result.whenComplete((r, ex) -> deadline.cancel(false));
+        });
+        return result;
+    }
+
+    /**
+     * Maps the result of an asynchronous call. Cancelling the mapped future cancels the call.
+     */
+    protected static <T, R> CompletableFuture<R> mapReply(CompletableFuture<T> call,
+            Function<? super T, ? extends R> mapper) {
+        final CompletableFuture<R> mapped = call.thenApply(mapper);
+        mapped.whenComplete((r, ex) -> {
+            if (mapped.isCancelled()) {
+                call.cancel(false);
+            }
+        });
+        return mapped;
+    }
+
+    /**
+     * Most calls reply before their deadline, which is then cancelled and removed at once.
+     */
+    private static ScheduledThreadPoolExecutor newDeadlines() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "dbus-call-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
     protected Object getProperty(String propertyName, String interfaceName) {
         return callMethodReturn(properties, GET, interfaceName, propertyName);
     }
@@ -108,11 +460,47 @@ public abstract class AbstractDBusSupport {
     }
 
     protected <T> Optional<T> getSingleProperty(String propertyName, final Class<T> aClass) {
-        return getProperties()
-            .filter(e -> propertyName.equals(e.getKey()))
-            .map(Map.Entry::getValue)
-            .map(aClass::cast)
-            .findFirst();
+        return Optional.ofNullable(getCachedProperties().get(propertyName))
+            .map(aClass::cast);
+    }
+
+    /**
+     * @return an immutable snapshot of the properties, empty if they could not be fetched
+     * @throws IllegalStateException if this object was closed
+     */
+    protected Map<String, Object> getCachedProperties() {
+        Map<String, Object> cached = propertyCache;
+        if (cached == null) {
+            synchronized (propertyCacheLock) {
+                if (propertyCache == null) {
+                    refreshProperties();
+                }
+                cached = propertyCache;
+            }
+        }
+        return cached != null ? cached : Map.of();
+    }
+
+    /**
+     * Registers the listeners of this object again, e.g. after its service restarted. Subclasses
+     * with listeners of their own extend this.
+     */
+    protected void resubscribe() {
+        final Consumer<Map.Entry<String, Object>> handler = propertyChangeConsumer;
+        if (handler != null) {
+            onPropertyChange(handler);
+        }
+        final Consumer<PropertyEvent> eventHandler = propertyEventConsumer;
+        if (eventHandler != null) {
+            onPropertyEvent(eventHandler);
+        }
+        final SignalPublisher<?> publisher;
+        synchronized (this) {
+            publisher = propertyChangePublisher;
+        }
+        if (publisher != null) {
+            publisher.reregister();
+        }
     }
 
     protected String defaultName() {
@@ -140,11 +528,40 @@ public abstract class AbstractDBusSupport {
         return addSigHandler(clazz, object, newSignalhandler);
     }
 
+    /**
+     * Creates a publisher of the events decoded from a signal of an object. Its handler is
+     * registered whilst it has subscribers, and its subscribers are completed once this object
+     * is closed.
+     * @param decode hands the events of a signal to the given sink
+     */
+    protected <S extends DBusSignal, T> SignalPublisher<T> newSignalPublisher(String name, Class<S> clazz,
+            DBusInterface object, BiConsumer<S, Consumer<T>> decode) {
+        final SignalPublisher<T> publisher = new SignalPublisher<>(name, sink -> {
+            final DBusSigHandler<S> handler = addSigHandler(clazz, object, s -> decode.accept(s, sink));
+            return () -> removeSigHandler(clazz, object, handler);
+        });
+        synchronized (this) {
+            publishers.add(publisher);
+        }
+        // Created after this object was closed
+        if (closed) {
+            publisher.close();
+        }
+        return publisher;
+    }
+
     protected <T extends DBusSignal> DBusSigHandler<T> addSigHandler(
             Class<T> clazz, DBusInterface object, DBusSigHandler<T> signalHandler) {
+        return addSigHandler(clazz, object, signalHandler, dispatcher);
+    }
+
+    private <T extends DBusSignal> DBusSigHandler<T> addSigHandler(
+            Class<T> clazz, DBusInterface object, DBusSigHandler<T> signalHandler, SignalDispatcher dispatcher) {
         try {
-            connection.addSigHandler(clazz, object, signalHandler);
-            return signalHandler;
+            metrics.countSignals(connection, clazz);
+            final DBusSigHandler<T> handler = dispatcher.wrap(signalHandler);
+            connection.addSigHandler(clazz, object, handler);
+            return handler;
         } catch (DBusException ex) {
             logger.error("Error adding new listener", ex);
             throw new RuntimeException(ex);
@@ -163,20 +580,114 @@ public abstract class AbstractDBusSupport {
         }
     }
 
+    /**
+     * @throws DBusTimeoutException if a deadline is set for the method and no reply arrives in time
+     */
     private Message callMethod(DBusInterface object, String methodName, Object... parameters) {
-        return connection.callMethodAsync(object, methodName, parameters)
-            .getCall()
-            .getReply();
+        final Optional<Duration> timeout = timeouts.get(methodName);
+        final long start = System.nanoTime();
+        final Message reply;
+        try {
+            final StubMethod stub = stub(object, methodName);
+            final MethodCall call = stub != null
+                ? stub.call(connection, busName, objectPath, parameters)
+                : connection.callMethodAsync(object, methodName, parameters).getCall();
+            reply = getReply(call, timeout);
+        } catch (RuntimeException ex) {
+            recordCall(methodName, start, Outcome.ERROR);
+            throw ex;
+        }
+        recordCall(methodName, start, outcome(reply));
+        if (reply == null && timeout.isPresent()) {
+            throw new DBusTimeoutException(methodName, timeout.get());
+        }
+        return reply;
+    }
+
+    /**
+     * @return the generated stub of a method of the remote object, or {@code null} to go through
+     * the proxy
+     */
+    private StubMethod stub(DBusInterface object, String methodName) {
+        return object == remoteObject ? stubs.apply(methodName) : null;
+    }
+
+    static Message getReply(MethodCall call, Optional<Duration> timeout) {
+        return timeout.isPresent() ? call.getReply(timeout.get().toMillis()) : call.getReply();
+    }
+
+    private void recordCall(String methodName, long start, Outcome outcome) {
+        metrics.recordCall(getClass().getSimpleName(), methodName, System.nanoTime() - start, outcome);
+    }
+
+    /**
+     * A {@code null} reply means none arrived before the connection's timeout.
+     */
+    static Outcome outcome(Message reply) {
+        if (reply == null) {
+            return Outcome.TIMEOUT;
+        }
+        return reply instanceof Error ? Outcome.ERROR : Outcome.SUCCESS;
+    }
+
+    /**
+     * Cache updates are applied on the thread that delivers the signal rather than through the
+     * dispatcher, which may drop signals and so leave the cache stale. They never wait for a call.
+     */
+    private void trackPropertyChanges() {
+        if (propertyChangedClass != null) {
+            if (propertyChangedCacheHandler == null) {
+                propertyChangedCacheHandler = addSigHandler(propertyChangedClass, remoteObject,
+                    this::updatePropertyCache, SignalDispatcher.DIRECT);
+            }
+        } else if (propertyCacheHandler == null) {
+            propertyCacheHandler = addSigHandler(PropertiesChanged.class, properties, this::updatePropertyCache,
+                SignalDispatcher.DIRECT);
+        }
+    }
+
+    private void updatePropertyCache(PropertiesChanged s) {
+        synchronized (propertyChangesLock) {
+            s.getPropertiesChanged().forEach((k, v) -> updatePropertyCache(k, Optional.of(v.getValue())));
+            s.getPropertiesRemoved().forEach(k -> updatePropertyCache(k, Optional.empty()));
+        }
+    }
+
+    private void updatePropertyCache(AbstractPropertyChanged s) {
+        synchronized (propertyChangesLock) {
+            updatePropertyCache(s.getName(), Optional.of(s.getValue().getValue()));
+        }
+    }
+
+    // Guarded by propertyChangesLock
+    private void updatePropertyCache(String name, Optional<Object> value) {
+        final Map<String, Object> cached = propertyCache;
+        if (pendingPropertyChanges != null) {
+            pendingPropertyChanges.put(name, value);
+        } else if (cached != null) {
+            final Map<String, Object> updated = new HashMap<>(cached);
+            apply(updated, name, value);
+            propertyCache = Collections.unmodifiableMap(updated);
+        }
+    }
+
+    private static void apply(Map<String, Object> properties, String name, Optional<Object> value) {
+        value.ifPresentOrElse(v -> properties.put(name, v), () -> properties.remove(name));
+    }
+
+    private static void handlePropertyChanged(AbstractPropertyChanged s, Consumer<Map.Entry<String, Object>> handler) {
+        handler.accept(Map.entry(s.getName(), s.getValue().getValue()));
+        logger.debug("signal received: {}", s);
     }
 
     private static void handlePropertyChange(PropertiesChanged s, Consumer<Map.Entry<String, Object>> handler) {
-        s.getPropertiesChanged().entrySet().stream()
-            .map(AbstractDBusSupport::toObjectEntry)
-            .forEach(handler::accept);
-        logger.info("signal received: {}", s);
+        for (Map.Entry<String, Variant<?>> e : s.getPropertiesChanged().entrySet()) {
+            handler.accept(toObjectEntry(e));
+        }
+        logger.debug("signal received: {}", s);
     }
 
-    private static Map.Entry<String, Object> toObjectEntry(Map.Entry<String, Variant<?>> e) {
+    static Map.Entry<String, Object> toObjectEntry(Map.Entry<String, Variant<?>> e) {
         return Map.entry(e.getKey(), e.getValue().getValue());
     }
 
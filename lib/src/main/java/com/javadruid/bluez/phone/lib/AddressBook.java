@@ -0,0 +1,488 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves caller names from a vCard file, such as a phonebook exported from the phone. The
+ * file is indexed in the background, from {@link #preload()} or the first lookup, and indexed
+ * again once it changes, parsing only the cards that changed. Lookups find nothing until then.
+ * <p>
+ * Numbers match when they end with the same digits and differ at most by a country code on one
+ * side and a trunk prefix ({@code 0}) on the other, so that {@code +44 7700 900123} matches
+ * {@code 07700 900123}. At least {@value #MIN_MATCH} digits must match; shorter numbers, such as
+ * service numbers, only match exactly. Each number is kept packed in a {@code long}, indexed by
+ * its last digits in a sorted {@code int} array.
+ */
+public final class AddressBook implements CallerIdResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(AddressBook.class);
+    static final int MIN_MATCH = 7;
+    private static final int MAX_DIGITS = 17;
+    private static final long NO_NUMBER = -1;
+    private static final long[] POWERS = new long[MAX_DIGITS + 1];
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(2);
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final Path file;
+    private final Executor reloader;
+    private final long checkIntervalNanos;
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile Index index;
+    private volatile long nextCheckNanos;
+    // Guarded by lock
+    private FileTime modified;
+    private long size = -1;
+    private Map<Long, Contact> cards = Map.of();
+    private int lastParsed;
+
+    /**
+     * Checks the file for changes at most every two seconds, reloading it on a virtual thread.
+     */
+    public AddressBook(Path file) {
+        this(file, r -> Thread.ofVirtual().name("address-book").start(r), CHECK_INTERVAL);
+    }
+
+    AddressBook(Path file, Executor reloader, Duration checkInterval) {
+        this.file = file;
+        this.reloader = reloader;
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.nextCheckNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts indexing the file in the background, so that it is ready by the first call.
+     */
+    @Override
+    public void preload() {
+        checkForChanges();
+    }
+
+    /**
+     * Looks the number up in memory, never reading the file.
+     * @return the contact name, or empty if the number is unknown or the file is not indexed yet
+     */
+    @Override
+    public Optional<String> resolve(String number) {
+        checkForChanges();
+        final Index current = index;
+        return current == null ? Optional.empty() : Optional.ofNullable(current.find(pack(number)));
+    }
+
+    /**
+     * Indexes the file again if it changed since it was last read.
+     * @throws UncheckedIOException if the file cannot be read; the current index is kept
+     */
+    public void reload() {
+        synchronized (lock) {
+            load();
+        }
+    }
+
+    /**
+     * @return the number of phone numbers indexed, reading the file now if not indexed yet
+     */
+    public int size() {
+        synchronized (lock) {
+            if (index == null) {
+                try {
+                    load();
+                } catch (UncheckedIOException ex) {
+                    logger.error("Error loading {}", file, ex);
+                }
+            }
+            return index.size();
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of cards parsed by the last load, the others being unchanged
+     */
+    int getLastParsed() {
+        synchronized (lock) {
+            return lastParsed;
+        }
+    }
+
+    private void checkForChanges() {
+        final long now = System.nanoTime();
+        if (now - nextCheckNanos < 0 || !checking.compareAndSet(false, true)) {
+            return;
+        }
+        nextCheckNanos = now + checkIntervalNanos;
+        try {
+            reloader.execute(() -> {
+                try {
+                    reload();
+                } catch (UncheckedIOException ex) {
+                    logger.error("Error reloading {}", file, ex);
+                } finally {
+                    checking.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            checking.set(false);
+            logger.error("Could not schedule reloading {}", file, ex);
+        }
+    }
+
+    private void load() {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            if (index == null || size >= 0) {
+                logger.info("No address book at {}", file);
+                cards = Map.of();
+                modified = null;
+                size = -1;
+                index = Index.EMPTY;
+            }
+            return;
+        } catch (IOException ex) {
+            if (index == null) {
+                index = Index.EMPTY;
+            }
+            throw new UncheckedIOException(ex);
+        }
+        if (index != null && attributes.lastModifiedTime().equals(modified) && attributes.size() == size) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final Map<Long, Contact> previous = cards;
+        final Map<Long, Contact> loaded = new HashMap<>();
+        final int[] parsed = new int[1];
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            readCards(reader, card -> {
+                final long hash = card.hash();
+                Contact contact = previous.get(hash);
+                if (contact == null) {
+                    parsed[0]++;
+                    contact = card.parse();
+                }
+                if (contact != null) {
+                    loaded.put(hash, contact);
+                }
+            });
+        } catch (IOException ex) {
+            if (index == null) {
+                index = Index.EMPTY;
+            }
+            throw new UncheckedIOException(ex);
+        }
+        cards = loaded;
+        modified = attributes.lastModifiedTime();
+        size = attributes.size();
+        lastParsed = parsed[0];
+        index = Index.of(loaded.values());
+        logger.info("Indexed {} numbers of {} contacts from {} in {} ms, {} cards parsed", index.size(),
+            loaded.size(), file, Duration.ofNanos(System.nanoTime() - start).toMillis(), parsed[0]);
+    }
+
+    /**
+     * Splits the file into cards, unfolding continued lines, and hashes each card so that
+     * unchanged ones need not be parsed again.
+     */
+    private static void readCards(BufferedReader reader, Consumer<Card> consumer) throws IOException {
+        List<String> lines = null;
+        String pending = null;
+        String line;
+        while ((line = reader.readLine()) != null || pending != null) {
+            if (line != null && !line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                pending = (pending == null ? "" : pending) + line.substring(1);
+                continue;
+            }
+            if (pending != null) {
+                if (pending.regionMatches(true, 0, "BEGIN:VCARD", 0, 11)) {
+                    lines = new ArrayList<>();
+                } else if (pending.regionMatches(true, 0, "END:VCARD", 0, 9)) {
+                    if (lines != null) {
+                        consumer.accept(new Card(lines));
+                    }
+                    lines = null;
+                } else if (lines != null) {
+                    lines.add(pending);
+                }
+            }
+            pending = line;
+        }
+    }
+
+    /**
+     * Packs a number as its digit count, whether it is international and its digits, or returns
+     * {@link #NO_NUMBER} if it has no digits or too many. Dialing pauses and extensions end it.
+     */
+    static long pack(String number) {
+        long value = 0;
+        int count = 0;
+        boolean international = false;
+        boolean started = false;
+        for (int i = 0; i < number.length(); i++) {
+            final char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (count == MAX_DIGITS) {
+                    return NO_NUMBER;
+                }
+                value = value * 10 + (c - '0');
+                count++;
+                started = true;
+            } else if (c == '+' && !started) {
+                international = true;
+                started = true;
+            } else if (c == ',' || c == ';' || c == 'p' || c == 'P' || c == 'w' || c == 'W'
+                    || c == 'x' || c == 'X') {
+                break;
+            }
+        }
+        if (!international && count > 2 && value / POWERS[count - 2] == 0) {
+            // 00 international prefix
+            international = true;
+            count -= 2;
+        }
+        return count == 0 ? NO_NUMBER : (long) count << 58 | (international ? 1L << 57 : 0) | value;
+    }
+
+    private static int count(long packed) {
+        return (int) (packed >>> 58);
+    }
+
+    private static boolean isInternational(long packed) {
+        return (packed & 1L << 57) != 0;
+    }
+
+    private static long digits(long packed) {
+        return packed & (1L << 57) - 1;
+    }
+
+    /**
+     * Groups numbers by their last {@value #MIN_MATCH} digits, or all their digits if shorter.
+     */
+    private static int suffix(long packed) {
+        final int count = count(packed);
+        return count >= MIN_MATCH
+            ? (int) (digits(packed) % POWERS[MIN_MATCH])
+            : (int) (POWERS[MIN_MATCH] + count * POWERS[MIN_MATCH - 1] + digits(packed));
+    }
+
+    /**
+     * @return the number of trailing digits shared by two numbers that denote the same line,
+     * or 0 if they do not
+     */
+    static int match(long a, long b) {
+        final int countA = count(a);
+        final int countB = count(b);
+        long digitsA = digits(a);
+        long digitsB = digits(b);
+        if (countA < MIN_MATCH || countB < MIN_MATCH) {
+            return countA == countB && digitsA == digitsB ? countA : 0;
+        }
+        int common = 0;
+        while (common < countA && common < countB && digitsA % 10 == digitsB % 10) {
+            digitsA /= 10;
+            digitsB /= 10;
+            common++;
+        }
+        if (common < MIN_MATCH) {
+            return 0;
+        }
+        final int restA = countA - common;
+        final int restB = countB - common;
+        if (restA == 0 && restB == 0) {
+            return common;
+        }
+        if (isInternational(a) && isInternational(b)) {
+            return 0;
+        }
+        return isNational(restA, digitsA, a) || isNational(restB, digitsB, b) ? common : 0;
+    }
+
+    // What is left is nothing or a trunk prefix, so the rest may be a country code on the other side
+    private static boolean isNational(int rest, long restDigits, long packed) {
+        return !isInternational(packed) && (rest == 0 || rest == 1 && restDigits == 0);
+    }
+
+    private record Contact(String name, long[] numbers) {
+    }
+
+    private record Card(List<String> lines) {
+
+        long hash() {
+            long hash = 0xcbf29ce484222325L;
+            for (String line : lines) {
+                for (int i = 0; i < line.length(); i++) {
+                    hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+                }
+                hash = (hash ^ '\n') * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        /**
+         * @return the name and numbers of this card, or {@code null} if it has neither
+         */
+        Contact parse() {
+            String formatted = null;
+            String structured = null;
+            final List<Long> numbers = new ArrayList<>();
+            for (String line : lines) {
+                final int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                final String property = propertyName(line, colon);
+                final String value = line.substring(colon + 1).trim();
+                if (property.equalsIgnoreCase("FN")) {
+                    formatted = unescape(value);
+                } else if (property.equalsIgnoreCase("N")) {
+                    structured = structuredName(value);
+                } else if (property.equalsIgnoreCase("TEL")) {
+                    final long packed = pack(value.regionMatches(true, 0, "tel:", 0, 4) ? value.substring(4) : value);
+                    if (packed != NO_NUMBER) {
+                        numbers.add(packed);
+                    }
+                }
+            }
+            final String name = formatted != null && !formatted.isBlank() ? formatted : structured;
+            if (name == null || name.isBlank() || numbers.isEmpty()) {
+                return null;
+            }
+            return new Contact(name, numbers.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        private static String propertyName(String line, int colon) {
+            int end = colon;
+            final int semicolon = line.indexOf(';');
+            if (semicolon >= 0 && semicolon < end) {
+                end = semicolon;
+            }
+            // Grouped properties, e.g. item1.TEL
+            final int dot = line.lastIndexOf('.', end);
+            return line.substring(dot + 1, end);
+        }
+
+        // Family;Given;Additional;Prefix;Suffix
+        private static String structuredName(String value) {
+            final String[] parts = value.split("(?<!\\\\);", -1);
+            final StringBuilder name = new StringBuilder();
+            for (int i : new int[]{3, 1, 2, 0, 4}) {
+                if (i < parts.length && !parts[i].isBlank()) {
+                    if (!name.isEmpty()) {
+                        name.append(' ');
+                    }
+                    name.append(unescape(parts[i].trim()));
+                }
+            }
+            return name.toString();
+        }
+
+        private static String unescape(String value) {
+            return value.replace("\\,", ",").replace("\\;", ";").replace("\\n", " ").replace("\\\\", "\\");
+        }
+    }
+
+    /**
+     * The numbers sorted by suffix, with the index of their contact's name.
+     */
+    private record Index(int[] suffixes, long[] numbers, int[] contacts, String[] names) {
+
+        static final Index EMPTY = new Index(new int[0], new long[0], new int[0], new String[0]);
+
+        static Index of(Collection<Contact> contacts) {
+            final String[] names = new String[contacts.size()];
+            int total = 0;
+            for (Contact contact : contacts) {
+                total += contact.numbers().length;
+            }
+            // Sort by suffix, keeping each entry's position in the low half
+            final long[] order = new long[total];
+            final long[] numbers = new long[total];
+            final int[] owners = new int[total];
+            int contact = 0;
+            int entry = 0;
+            for (Contact c : contacts) {
+                names[contact] = c.name();
+                for (long number : c.numbers()) {
+                    order[entry] = (long) suffix(number) << 32 | entry;
+                    numbers[entry] = number;
+                    owners[entry] = contact;
+                    entry++;
+                }
+                contact++;
+            }
+            Arrays.sort(order);
+            final int[] sortedSuffixes = new int[total];
+            final long[] sortedNumbers = new long[total];
+            final int[] sortedOwners = new int[total];
+            for (int i = 0; i < total; i++) {
+                final int position = (int) order[i];
+                sortedSuffixes[i] = (int) (order[i] >>> 32);
+                sortedNumbers[i] = numbers[position];
+                sortedOwners[i] = owners[position];
+            }
+            return new Index(sortedSuffixes, sortedNumbers, sortedOwners, names);
+        }
+
+        int size() {
+            return numbers.length;
+        }
+
+        /**
+         * @return the name of the best match, the one sharing the most trailing digits
+         */
+        String find(long number) {
+            if (number == NO_NUMBER) {
+                return null;
+            }
+            final int suffix = suffix(number);
+            int i = Arrays.binarySearch(suffixes, suffix);
+            if (i < 0) {
+                return null;
+            }
+            while (i > 0 && suffixes[i - 1] == suffix) {
+                i--;
+            }
+            String best = null;
+            int bestMatch = 0;
+            for (; i < suffixes.length && suffixes[i] == suffix; i++) {
+                final int match = match(number, numbers[i]);
+                if (match > bestMatch) {
+                    bestMatch = match;
+                    best = names[contacts[i]];
+                }
+            }
+            return best;
+        }
+    }
+
+}
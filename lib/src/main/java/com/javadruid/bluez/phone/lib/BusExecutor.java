@@ -0,0 +1,70 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking bus work, such as method calls and property reads, each on its own virtual
+ * thread, and completes the returned futures on the caller's executor, e.g. a UI thread, which
+ * therefore never waits on the bus. Failures are reported as thrown by the work, e.g. a
+ * {@link DBusTimeoutException} once a method's deadline passes.
+ * <p>
+ * dbus-java waits for replies inside {@code synchronized}, which pins the carrier thread before
+ * JDK 24: on JDK 21 to 23 as many calls wait at once as there are carriers, the others queue.
+ */
+public final class BusExecutor implements Closeable {
+
+    private final ExecutorService workers;
+    private final Executor callerExecutor;
+
+    /**
+     * @param callerExecutor completes the futures, so that their dependent actions run there
+     */
+    public BusExecutor(Executor callerExecutor) {
+        this(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dbus-call-", 0).factory()), callerExecutor);
+    }
+
+    BusExecutor(ExecutorService workers, Executor callerExecutor) {
+        this.workers = workers;
+        this.callerExecutor = callerExecutor;
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            CompletableFuture.supplyAsync(work, workers).whenCompleteAsync((value, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex);
+                } else {
+                    result.complete(value);
+                }
+            }, callerExecutor);
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    public CompletableFuture<Void> run(Runnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting work. Work already started runs to completion.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+}
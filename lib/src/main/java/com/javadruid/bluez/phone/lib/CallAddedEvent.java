@@ -0,0 +1,79 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
+import java.util.HashMap;
+import java.util.Map;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * A call added, read in place from its signal: the properties are decoded on access rather than
+ * copied. The instance is reused for later signals once the handler returns, so a handler keeps
+ * the values it needs, or {@link #getProperties()}, rather than the event.
+ * @see VoiceCallManager#onCallAddedEvent
+ */
+public final class CallAddedEvent {
+
+    private String managerPath;
+    private String path;
+    private CallAdded signal;
+
+    CallAddedEvent() {
+    }
+
+    public String getManagerPath() {
+        return managerPath;
+    }
+
+    /**
+     * @return the path of the call added
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the decoded value of a property, or {@code null} if the signal did not carry it
+     */
+    public Object getValue(VoiceCall.Property property) {
+        final Variant<?> value = signal.getProperty(property.getName());
+        return value != null ? value.getValue() : null;
+    }
+
+    public VoiceCallState getState() {
+        return VoiceCallState.get((String) getValue(VoiceCall.Property.STATE));
+    }
+
+    public String getLineIdentification() {
+        return (String) getValue(VoiceCall.Property.LINE_IDENTIFICATION);
+    }
+
+    /**
+     * @return a copy of the decoded properties that may be kept
+     */
+    public Map<String, Object> getProperties() {
+        final Map<String, Variant<?>> properties = signal.getProperties();
+        final Map<String, Object> result = new HashMap<>(properties.size() * 4 / 3 + 1);
+        properties.forEach((k, v) -> result.put(k, v != null ? v.getValue() : null));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return managerPath + " added " + path;
+    }
+
+    CallAddedEvent set(CallAdded signal) {
+        this.managerPath = signal.getPath();
+        this.path = signal.getCallPath().getPath();
+        this.signal = signal;
+        return this;
+    }
+
+    void clear() {
+        managerPath = null;
+        path = null;
+        signal = null;
+    }
+
+}
@@ -0,0 +1,377 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.types.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of call events in memory-mapped segment files. Every record fills one
+ * fixed {@value #SLOT}-byte slot:
+ * <pre>
+ *  0 long  event time, microseconds since the epoch
+ *  8 byte  record type
+ *  9 byte  value type
+ * 12 int   object path id
+ * 16 int   source path id: the manager of a call added or removed
+ * 20 int   name id: property name or disconnect reason
+ * 24 long  value: a string id, a boolean, a number or a property count
+ * </pre>
+ * Strings are interned per segment: the first use of a string writes a definition record
+ * followed by its UTF-8 bytes, padded to whole slots. A segment therefore replays on its own.
+ * Appending is a few stores into the mapped buffer; the operating system writes the pages back.
+ * @see CallJournalReader
+ */
+public final class CallJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    static final int SLOT = 32;
+    static final int MAGIC = 0x4F464A31;
+    static final String SEGMENT_PREFIX = "calls-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    // Record types; zero marks the unused end of a segment
+    static final byte END = 0;
+    static final byte DEFINE = 1;
+    static final byte CALL_ADDED = 2;
+    static final byte CALL_PROPERTY = 3;
+    static final byte CALL_REMOVED = 4;
+    static final byte PROPERTY_CHANGED = 5;
+    static final byte DISCONNECT_REASON = 6;
+
+    // Value types
+    static final byte NONE = 0;
+    static final byte STRING = 1;
+    static final byte BOOLEAN = 2;
+    static final byte BYTE = 3;
+    static final byte LONG = 4;
+
+    private static final Logger logger = LoggerFactory.getLogger(CallJournal.class);
+    private static final int NO_ID = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segment;
+    private long records;
+    private boolean closed;
+
+    /**
+     * Opens a journal with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+     * @param directory where the segments are written, after any already there
+     */
+    public CallJournal(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory where the segments are written, after any already there
+     * @param segmentSize the size of each segment file, in bytes
+     */
+    public CallJournal(Path directory, int segmentSize) {
+        if (segmentSize < 4 * SLOT || segmentSize % SLOT != 0) {
+            throw new IllegalArgumentException("Segment size must be a multiple of " + SLOT + " of at least "
+                + 4 * SLOT + ": " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            segment = segments(directory).stream()
+                .mapToInt(CallJournal::segmentIndex)
+                .max()
+                .orElse(0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        rotate();
+    }
+
+    public synchronized void callAdded(String managerPath, String callPath, Map<String, ?> properties) {
+        final long time = now();
+        for (int attempt = 0; ; attempt++) {
+            final int started = segment;
+            final int call = intern(callPath);
+            final int manager = intern(managerPath);
+            final int[] names = new int[properties.size()];
+            int i = 0;
+            for (Map.Entry<String, ?> e : properties.entrySet()) {
+                names[i++] = intern(e.getKey());
+                internValue(e.getValue());
+            }
+            // The call and its properties go in one segment
+            if (reserve(1 + properties.size(), started, attempt)) {
+                put(time, CALL_ADDED, NONE, call, manager, NO_ID, properties.size());
+                i = 0;
+                for (Object value : properties.values()) {
+                    putValue(time, CALL_PROPERTY, call, manager, names[i++], value);
+                }
+                return;
+            }
+        }
+    }
+
+    public synchronized void callRemoved(String managerPath, String callPath) {
+        final long time = now();
+        for (int attempt = 0; ; attempt++) {
+            final int started = segment;
+            final int call = intern(callPath);
+            final int manager = intern(managerPath);
+            if (reserve(1, started, attempt)) {
+                put(time, CALL_REMOVED, NONE, call, manager, NO_ID, 0);
+                return;
+            }
+        }
+    }
+
+    public synchronized void propertyChanged(String objectPath, String name, Object value) {
+        final long time = now();
+        for (int attempt = 0; ; attempt++) {
+            final int started = segment;
+            final int path = intern(objectPath);
+            final int id = intern(name);
+            internValue(value);
+            if (reserve(1, started, attempt)) {
+                putValue(time, PROPERTY_CHANGED, path, path, id, value);
+                return;
+            }
+        }
+    }
+
+    public synchronized void disconnectReason(String callPath, String reason) {
+        final long time = now();
+        for (int attempt = 0; ; attempt++) {
+            final int started = segment;
+            final int path = intern(callPath);
+            final int id = intern(reason);
+            if (reserve(1, started, attempt)) {
+                put(time, DISCONNECT_REASON, NONE, path, path, id, 0);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Feeds this journal from the call signals of a connection. The records are written on the
+     * threads delivering the signals, in the order they arrive: dbus-java may deliver signals
+     * sent by different objects in close succession out of order.
+     * @return closing it removes the signal handlers
+     */
+    Closeable subscribe(DBusConnection connection) throws DBusException {
+        final DBusSigHandler<CallAdded> added = s -> record(() ->
+            callAdded(s.getPath(), s.getCallPath().getPath(), s.getProperties()));
+        final DBusSigHandler<CallRemoved> removed = s -> record(() ->
+            callRemoved(s.getPath(), s.getCallPath().getPath()));
+        final DBusSigHandler<PropertyChanged> changed = s -> record(() ->
+            propertyChanged(s.getPath(), s.getName(), s.getValue()));
+        final DBusSigHandler<DisconnectReason> reason = s -> record(() ->
+            disconnectReason(s.getPath(), s.getReason()));
+        connection.addSigHandler(CallAdded.class, added);
+        connection.addSigHandler(CallRemoved.class, removed);
+        connection.addSigHandler(PropertyChanged.class, changed);
+        connection.addSigHandler(DisconnectReason.class, reason);
+        return () -> {
+            try {
+                connection.removeSigHandler(CallAdded.class, added);
+                connection.removeSigHandler(CallRemoved.class, removed);
+                connection.removeSigHandler(PropertyChanged.class, changed);
+                connection.removeSigHandler(DisconnectReason.class, reason);
+            } catch (DBusException ex) {
+                throw new IOException(ex);
+            }
+        };
+    }
+
+    /**
+     * @return the number of event records written by this instance, property records included
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Forces the written records to the storage device.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static int segmentIndex(Path file) {
+        final String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long now() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    /**
+     * Makes room for the slots of an event whose strings were interned since {@code started}.
+     * @return {@code false} if the segment was rotated meanwhile, so the event has to be interned
+     * and reserved again
+     */
+    private boolean reserve(int slots, int started, int attempt) {
+        if (segment == started && fits(slots)) {
+            return true;
+        }
+        if (attempt > 0) {
+            throw new IllegalArgumentException("Event too large for a journal segment of " + segmentSize + " bytes");
+        }
+        if (segment == started) {
+            rotate();
+        }
+        return false;
+    }
+
+    private boolean fits(int slots) {
+        return buffer.remaining() >= slots * SLOT;
+    }
+
+    private int intern(String value) {
+        if (closed) {
+            throw new IllegalStateException("Journal closed");
+        }
+        if (value == null) {
+            return NO_ID;
+        }
+        final Integer id = strings.get(value);
+        if (id != null) {
+            return id;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        final int slots = 1 + (bytes.length + SLOT - 1) / SLOT;
+        if (slots * SLOT > segmentSize - SLOT) {
+            throw new IllegalArgumentException("String too long for a journal segment: " + bytes.length + " bytes");
+        }
+        if (!fits(slots)) {
+            rotate();
+        }
+        final int newId = strings.size();
+        final int position = buffer.position();
+        buffer.putLong(position, 0)
+            .put(position + 8, DEFINE)
+            .putInt(position + 20, newId)
+            .putLong(position + 24, bytes.length)
+            .put(position + SLOT, bytes);
+        buffer.position(position + slots * SLOT);
+        strings.put(value, newId);
+        return newId;
+    }
+
+    private static void record(Runnable append) {
+        try {
+            append.run();
+        } catch (RuntimeException ex) {
+            logger.warn("Could not journal signal", ex);
+        }
+    }
+
+    private void internValue(Object value) {
+        value = unwrap(value);
+        if (!(value instanceof Boolean || value instanceof Byte || value instanceof Number || value == null)) {
+            intern(value.toString());
+        }
+    }
+
+    private void putValue(long time, byte type, int path, int source, int name, Object value) {
+        value = unwrap(value);
+        if (value == null) {
+            put(time, type, NONE, path, source, name, 0);
+        } else if (value instanceof Boolean b) {
+            put(time, type, BOOLEAN, path, source, name, b ? 1 : 0);
+        } else if (value instanceof Byte b) {
+            put(time, type, BYTE, path, source, name, b);
+        } else if (value instanceof Number n) {
+            put(time, type, LONG, path, source, name, n.longValue());
+        } else {
+            put(time, type, STRING, path, source, name, strings.get(value.toString()));
+        }
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof Variant<?> v ? v.getValue() : value;
+    }
+
+    private void put(long time, byte type, byte valueType, int path, int source, int name, long value) {
+        final int position = buffer.position();
+        buffer.putLong(position, time)
+            .put(position + 8, type)
+            .put(position + 9, valueType)
+            .putInt(position + 12, path)
+            .putInt(position + 16, source)
+            .putInt(position + 20, name)
+            .putLong(position + 24, value);
+        buffer.position(position + SLOT);
+        records++;
+    }
+
+    private void rotate() {
+        try {
+            if (channel != null) {
+                buffer.force();
+                channel.close();
+            }
+            segment++;
+            final Path file = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.putInt(0, MAGIC).putInt(4, SLOT);
+            buffer.position(SLOT);
+            strings.clear();
+            logger.debug("Journal segment {} started", file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.javadruid.bluez.phone.lib.CallJournal.BOOLEAN;
+import static com.javadruid.bluez.phone.lib.CallJournal.BYTE;
+import static com.javadruid.bluez.phone.lib.CallJournal.CALL_ADDED;
+import static com.javadruid.bluez.phone.lib.CallJournal.CALL_PROPERTY;
+import static com.javadruid.bluez.phone.lib.CallJournal.CALL_REMOVED;
+import static com.javadruid.bluez.phone.lib.CallJournal.DEFINE;
+import static com.javadruid.bluez.phone.lib.CallJournal.DISCONNECT_REASON;
+import static com.javadruid.bluez.phone.lib.CallJournal.END;
+import static com.javadruid.bluez.phone.lib.CallJournal.LONG;
+import static com.javadruid.bluez.phone.lib.CallJournal.MAGIC;
+import static com.javadruid.bluez.phone.lib.CallJournal.PROPERTY_CHANGED;
+import static com.javadruid.bluez.phone.lib.CallJournal.SLOT;
+import static com.javadruid.bluez.phone.lib.CallJournal.STRING;
+
+/**
+ * Replays a {@link CallJournal} through the listeners the live objects take, e.g. those of
+ * {@link VoiceCallManager#onCallAdded} and {@link VoiceCall#onPropertyChange}. Listeners are
+ * registered per object path, or for every object with a {@code null} path, and may register
+ * more whilst replaying, as live code does when a call is added. Numbers replay as {@code Long}.
+ */
+public final class CallJournalReader {
+
+    private final Path directory;
+    private final Map<String, Consumer<Map.Entry<String, Map<String, Object>>>> callAdded = new HashMap<>();
+    private final Map<String, Consumer<String>> callRemoved = new HashMap<>();
+    private final Map<String, Consumer<Map.Entry<String, Object>>> propertyChange = new HashMap<>();
+    private final Map<String, Consumer<Map.Entry<String, String>>> disconnectReason = new HashMap<>();
+    private Instant eventTime;
+
+    public CallJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    public void onCallAdded(String managerPath, Consumer<Map.Entry<String, Map<String, Object>>> handler) {
+        callAdded.put(managerPath, handler);
+    }
+
+    public void onCallRemoved(String managerPath, Consumer<String> handler) {
+        callRemoved.put(managerPath, handler);
+    }
+
+    public void onPropertyChange(String objectPath, Consumer<Map.Entry<String, Object>> handler) {
+        propertyChange.put(objectPath, handler);
+    }
+
+    public void onDisconnectReason(String callPath, Consumer<Map.Entry<String, String>> handler) {
+        disconnectReason.put(callPath, handler);
+    }
+
+    /**
+     * @return when the event being replayed happened, for the listeners to read
+     */
+    public Instant getEventTime() {
+        return eventTime;
+    }
+
+    /**
+     * Replays every segment of the journal in order.
+     * @return the number of events replayed
+     */
+    public long replay() {
+        try {
+            long events = 0;
+            for (Path segment : CallJournal.segments(directory)) {
+                events += replay(segment);
+            }
+            return events;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private long replay(Path segment) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < SLOT || buffer.getInt(0) != MAGIC || buffer.getInt(4) != SLOT) {
+            throw new IllegalStateException("Not a call journal segment: " + segment);
+        }
+        final List<String> strings = new ArrayList<>();
+        long events = 0;
+        int position = SLOT;
+        while (position + SLOT <= buffer.capacity() && buffer.get(position + 8) != END) {
+            final byte type = buffer.get(position + 8);
+            if (type == DEFINE) {
+                final int length = (int) buffer.getLong(position + 24);
+                final byte[] bytes = new byte[length];
+                buffer.get(position + SLOT, bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+                position += SLOT * (1 + (length + SLOT - 1) / SLOT);
+                continue;
+            }
+            eventTime = Instant.EPOCH.plus(buffer.getLong(position), ChronoUnit.MICROS);
+            final String path = string(strings, buffer.getInt(position + 12));
+            final String source = string(strings, buffer.getInt(position + 16));
+            final String name = string(strings, buffer.getInt(position + 20));
+            switch (type) {
+                case CALL_ADDED -> {
+                    final int count = (int) buffer.getLong(position + 24);
+                    final Map<String, Object> properties = new LinkedHashMap<>();
+                    for (int i = 0; i < count; i++) {
+                        position += SLOT;
+                        if (buffer.get(position + 8) != CALL_PROPERTY) {
+                            throw new IllegalStateException("Missing call property at " + position + " in " + segment);
+                        }
+                        properties.put(string(strings, buffer.getInt(position + 20)), value(strings, buffer, position));
+                    }
+                    dispatch(callAdded, source, Map.entry(path, properties));
+                }
+                case CALL_REMOVED -> dispatch(callRemoved, source, path);
+                case PROPERTY_CHANGED -> {
+                    final Object value = value(strings, buffer, position);
+                    dispatch(propertyChange, path, value == null ? new HashMap.SimpleEntry<>(name, null) : Map.entry(name, value));
+                }
+                case DISCONNECT_REASON -> dispatch(disconnectReason, path, Map.entry(path, name));
+                default -> throw new IllegalStateException("Unknown record type " + type + " at " + position + " in " + segment);
+            }
+            events++;
+            position += SLOT;
+        }
+        return events;
+    }
+
+    private static <T> void dispatch(Map<String, Consumer<T>> handlers, String path, T event) {
+        final Consumer<T> handler = handlers.get(path);
+        if (handler != null) {
+            handler.accept(event);
+        }
+        final Consumer<T> any = handlers.get(null);
+        if (any != null) {
+            any.accept(event);
+        }
+    }
+
+    private static String string(List<String> strings, int id) {
+        return id < 0 ? null : strings.get(id);
+    }
+
+    private static Object value(List<String> strings, ByteBuffer buffer, int position) {
+        final long value = buffer.getLong(position + 24);
+        return switch (buffer.get(position + 9)) {
+            case STRING -> strings.get((int) value);
+            case BOOLEAN -> value != 0;
+            case BYTE -> (byte) value;
+            case LONG -> value;
+            default -> null;
+        };
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide deadlines for D-Bus calls. A deadline set for a method name, e.g.
+ * {@code Dial}, takes precedence over the default one. Methods without any deadline wait
+ * for the connection's own reply timeout.
+ */
+public final class CallTimeouts {
+
+    private static final CallTimeouts INSTANCE = new CallTimeouts();
+
+    private final Map<String, Duration> timeouts = new ConcurrentHashMap<>();
+    private volatile Duration defaultTimeout;
+
+    private CallTimeouts() {
+    }
+
+    public static CallTimeouts getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param timeout the deadline for every method without its own, or {@code null} for none
+     */
+    public void setDefault(Duration timeout) {
+        defaultTimeout = validate(timeout);
+    }
+
+    /**
+     * @param method the D-Bus method name
+     * @param timeout the deadline for the method, or {@code null} to fall back to the default
+     */
+    public void set(String method, Duration timeout) {
+        if (validate(timeout) == null) {
+            timeouts.remove(method);
+        } else {
+            timeouts.put(method, timeout);
+        }
+    }
+
+    public Optional<Duration> get(String method) {
+        return Optional.ofNullable(timeouts.getOrDefault(method, defaultTimeout));
+    }
+
+    /**
+     * Removes every deadline.
+     */
+    public void clear() {
+        timeouts.clear();
+        defaultTimeout = null;
+    }
+
+    private static Duration validate(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+        }
+        return timeout;
+    }
+
+}
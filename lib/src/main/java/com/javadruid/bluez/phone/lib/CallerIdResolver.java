@@ -0,0 +1,27 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Optional;
+
+/**
+ * Finds the name of the contact a phone number belongs to. Called on the incoming call path,
+ * so implementations must answer without blocking on I/O.
+ * @see AddressBook
+ */
+@FunctionalInterface
+public interface CallerIdResolver {
+
+    CallerIdResolver NONE = number -> Optional.empty();
+
+    /**
+     * @param number a phone number as shown by the network, in any format
+     * @return the contact name, or empty if the number is unknown or withheld
+     */
+    Optional<String> resolve(String number);
+
+    /**
+     * Prepares the lookups ahead of the first call, without blocking. Does nothing by default.
+     */
+    default void preload() {
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.freedesktop.dbus.DBusMatchRule;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide D-Bus instrumentation: a latency histogram per method name, success, error and
+ * timeout counters per object type, and a counter per received signal class.
+ */
+public final class DBusMetrics implements DBusMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.javadruid.bluez.phone:type=DBusMetrics";
+
+    private static final Logger logger = LoggerFactory.getLogger(DBusMetrics.class);
+    private static final DBusMetrics INSTANCE = new DBusMetrics();
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Outcomes> outcomes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> signals = new ConcurrentHashMap<>();
+    // The signal classes counted on each connection, guarded by itself
+    private final Map<DBusConnection, Set<Class<?>>> counted = new WeakHashMap<>();
+
+    public enum Outcome {
+        SUCCESS, ERROR, TIMEOUT
+    }
+
+    private DBusMetrics() {
+    }
+
+    public static DBusMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under {@link #OBJECT_NAME}. Registering
+     * more than once has no effect.
+     */
+    public void registerMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ex) {
+            logger.debug("D-Bus metrics already registered");
+        } catch (JMException ex) {
+            logger.error("Could not register D-Bus metrics", ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Records a finished method call.
+     * @param objectType the kind of object called, e.g. {@code VoiceCall}
+     * @param method the D-Bus method name
+     * @param nanos the time from sending the call to its outcome
+     */
+    public void recordCall(String objectType, String method, long nanos, Outcome outcome) {
+        getLatency(method).record(nanos);
+        outcomes.computeIfAbsent(objectType, k -> new Outcomes()).get(outcome).increment();
+    }
+
+    /**
+     * Counts the signals of a class received on a connection, once each however many handlers
+     * receive them. The first call for a class registers a counting handler of its own, which
+     * stays registered as long as the connection.
+     */
+    public <T extends DBusSignal> void countSignals(DBusConnection connection, Class<T> signal) {
+        countSignals(connection, signal, s -> true);
+    }
+
+    /**
+     * @param filter the signals to count; only the first filter given for a class applies
+     */
+    public <T extends DBusSignal> void countSignals(DBusConnection connection, Class<T> signal, Predicate<T> filter) {
+        final Set<Class<?>> registered;
+        synchronized (counted) {
+            registered = counted.computeIfAbsent(connection, k -> new HashSet<>());
+            if (!registered.add(signal)) {
+                return;
+            }
+        }
+        final LongAdder counter = signals.computeIfAbsent(signalName(signal), k -> new LongAdder());
+        final DBusSigHandler<T> handler = s -> {
+            if (filter.test(s)) {
+                counter.increment();
+            }
+        };
+        try {
+            // Through a match rule so that it is told apart from the handlers of the signal
+            connection.addSigHandler(new DBusMatchRule(signal), handler);
+        } catch (DBusException ex) {
+            synchronized (counted) {
+                registered.remove(signal);
+            }
+            logger.warn("Could not count {} signals", signalName(signal), ex);
+        }
+    }
+
+    public LatencyHistogram getLatency(String method) {
+        return latencies.computeIfAbsent(method, k -> new LatencyHistogram());
+    }
+
+    public long getCount(String objectType, Outcome outcome) {
+        final Outcomes counts = outcomes.get(objectType);
+        return counts == null ? 0 : counts.get(outcome).sum();
+    }
+
+    public long getSignalCount(Class<? extends DBusSignal> signal) {
+        final LongAdder counter = signals.get(signalName(signal));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMethodCalls() {
+        return latencyView(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getMethodLatencyP50() {
+        return latencyMillis(h -> h.getValueAtPercentile(50));
+    }
+
+    @Override
+    public Map<String, Double> getMethodLatencyP99() {
+        return latencyMillis(h -> h.getValueAtPercentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getMethodLatencyP999() {
+        return latencyMillis(h -> h.getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public Map<String, Double> getMethodLatencyMax() {
+        return latencyMillis(LatencyHistogram::getMax);
+    }
+
+    @Override
+    public Map<String, Long> getSuccesses() {
+        return outcomeView(Outcome.SUCCESS);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return outcomeView(Outcome.ERROR);
+    }
+
+    @Override
+    public Map<String, Long> getTimeouts() {
+        return outcomeView(Outcome.TIMEOUT);
+    }
+
+    @Override
+    public Map<String, Long> getSignalsReceived() {
+        final Map<String, Long> result = new TreeMap<>();
+        signals.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        outcomes.values().forEach(Outcomes::reset);
+        signals.values().forEach(LongAdder::reset);
+    }
+
+    private Map<String, Long> latencyView(ToLongFunction<LatencyHistogram> value) {
+        final Map<String, Long> result = new TreeMap<>();
+        latencies.forEach((k, v) -> result.put(k, value.applyAsLong(v)));
+        return result;
+    }
+
+    private Map<String, Double> latencyMillis(ToDoubleFunction<LatencyHistogram> nanos) {
+        final Map<String, Double> result = new TreeMap<>();
+        latencies.forEach((k, v) -> result.put(k, nanos.applyAsDouble(v) / NANOS_PER_MILLI));
+        return result;
+    }
+
+    private Map<String, Long> outcomeView(Outcome outcome) {
+        final Map<String, Long> result = new TreeMap<>();
+        outcomes.forEach((k, v) -> result.put(k, v.get(outcome).sum()));
+        return result;
+    }
+
+    private static String signalName(Class<?> signal) {
+        final Class<?> enclosing = signal.getEnclosingClass();
+        return enclosing == null ? signal.getSimpleName() : enclosing.getSimpleName() + "." + signal.getSimpleName();
+    }
+
+    private static class Outcomes {
+
+        private final LongAdder[] counters = new LongAdder[Outcome.values().length];
+
+        Outcomes() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new LongAdder();
+            }
+        }
+
+        LongAdder get(Outcome outcome) {
+            return counters[outcome.ordinal()];
+        }
+
+        void reset() {
+            for (LongAdder counter : counters) {
+                counter.reset();
+            }
+        }
+
+    }
+
+}
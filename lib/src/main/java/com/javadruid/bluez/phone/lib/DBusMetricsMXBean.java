@@ -0,0 +1,31 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link DBusMetrics}. Latencies are in milliseconds and keyed by D-Bus method
+ * name, call outcomes by object type and signal counts by signal class.
+ */
+public interface DBusMetricsMXBean {
+
+    Map<String, Long> getMethodCalls();
+
+    Map<String, Double> getMethodLatencyP50();
+
+    Map<String, Double> getMethodLatencyP99();
+
+    Map<String, Double> getMethodLatencyP999();
+
+    Map<String, Double> getMethodLatencyMax();
+
+    Map<String, Long> getSuccesses();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Long> getTimeouts();
+
+    Map<String, Long> getSignalsReceived();
+
+    void reset();
+
+}
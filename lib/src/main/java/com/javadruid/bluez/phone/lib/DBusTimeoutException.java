@@ -0,0 +1,28 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.time.Duration;
+
+/**
+ * Thrown, or used to complete an async call, when no reply arrives before the deadline set for
+ * the method in {@link CallTimeouts}.
+ */
+public class DBusTimeoutException extends RuntimeException {
+
+    private final String method;
+    private final Duration timeout;
+
+    public DBusTimeoutException(String method, Duration timeout) {
+        super("No reply to " + method + " within " + timeout.toMillis() + " ms");
+        this.method = method;
+        this.timeout = timeout;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Tracks the modems known to oFono and keeps a {@link VoiceCallManager} for each of the online ones.
+ * Managers are created and the handlers notified outside the registry's lock, so they may call
+ * back into it.
+ */
+class ModemRegistry {
+
+    private final Function<String, VoiceCallManager> factory;
+    private final Map<String, Boolean> modems = new LinkedHashMap<>();
+    private final Map<String, VoiceCallManager> managers = new LinkedHashMap<>();
+    // Modems whose manager is being created
+    private final Set<String> creating = new HashSet<>();
+    private volatile Consumer<VoiceCallManager> addedHandler;
+    private volatile Consumer<VoiceCallManager> removedHandler;
+
+    ModemRegistry(Function<String, VoiceCallManager> factory) {
+        this.factory = factory;
+    }
+
+    synchronized List<VoiceCallManager> getVoiceCallManagers() {
+        return List.copyOf(managers.values());
+    }
+
+    /**
+     * Replaces the known modems with a full listing, reporting the differences.
+     */
+    void reset(Map<String, Boolean> listing) {
+        final Changes changes = new Changes();
+        synchronized (this) {
+            List.copyOf(modems.keySet()).stream()
+                .filter(path -> !listing.containsKey(path))
+                .forEach(path -> modemRemoved(path, changes));
+            listing.forEach((path, online) -> modemAdded(path, online, changes));
+        }
+        changes.apply();
+    }
+
+    void modemAdded(String path, boolean online) {
+        final Changes changes = new Changes();
+        synchronized (this) {
+            modemAdded(path, online, changes);
+        }
+        changes.apply();
+    }
+
+    void modemRemoved(String path) {
+        final Changes changes = new Changes();
+        synchronized (this) {
+            modemRemoved(path, changes);
+        }
+        changes.apply();
+    }
+
+    void onlineChanged(String path, boolean online) {
+        final Changes changes = new Changes();
+        synchronized (this) {
+            onlineChanged(path, online, changes);
+        }
+        changes.apply();
+    }
+
+    void onAdded(Consumer<VoiceCallManager> handler) {
+        addedHandler = handler;
+    }
+
+    void onRemoved(Consumer<VoiceCallManager> handler) {
+        removedHandler = handler;
+    }
+
+    // The methods below hold the lock
+
+    private void modemAdded(String path, boolean online, Changes changes) {
+        modems.put(path, online);
+        onlineChanged(path, online, changes);
+    }
+
+    private void modemRemoved(String path, Changes changes) {
+        modems.remove(path);
+        onlineChanged(path, false, changes);
+    }
+
+    private void onlineChanged(String path, boolean online, Changes changes) {
+        if (online && modems.containsKey(path)) {
+            modems.put(path, true);
+            if (!managers.containsKey(path) && creating.add(path)) {
+                changes.created.add(path);
+            }
+        } else {
+            if (modems.containsKey(path)) {
+                modems.put(path, false);
+            }
+            final VoiceCallManager manager = managers.remove(path);
+            if (manager != null) {
+                changes.notifications.add(() -> notify(removedHandler, manager));
+            }
+        }
+    }
+
+    private static void notify(Consumer<VoiceCallManager> handler, VoiceCallManager manager) {
+        if (handler != null) {
+            handler.accept(manager);
+        }
+    }
+
+    /**
+     * What to do once the lock is released.
+     */
+    private class Changes {
+
+        private final List<String> created = new ArrayList<>();
+        private final List<Runnable> notifications = new ArrayList<>();
+
+        void apply() {
+            for (String path : created) {
+                VoiceCallManager manager = null;
+                try {
+                    manager = factory.apply(path);
+                } finally {
+                    synchronized (ModemRegistry.this) {
+                        creating.remove(path);
+                        // Unless the modem went offline meanwhile
+                        if (manager != null && Boolean.TRUE.equals(modems.get(path))
+                                && !managers.containsKey(path)) {
+                            managers.put(path, manager);
+                            final VoiceCallManager added = manager;
+                            notifications.add(() -> ModemRegistry.notify(addedHandler, added));
+                        }
+                    }
+                }
+            }
+            notifications.forEach(Runnable::run);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of an operation run on every modem, keyed by the path of each voice call manager.
+ * A modem that failed or timed out has an error instead of a value, so one bad modem never hides
+ * the results of the others. Both maps keep the order of the modems.
+ * @param <T> the type of value, {@code Void} for operations without one
+ */
+public record ModemResults<T>(Map<String, T> values, Map<String, Throwable> errors) {
+
+    public ModemResults {
+        values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+        errors = Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+    }
+
+    public boolean isComplete() {
+        return errors.isEmpty();
+    }
+
+}
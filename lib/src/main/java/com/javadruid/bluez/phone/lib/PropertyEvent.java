@@ -0,0 +1,78 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.util.Map;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * A property change, decoded in place from its signal. The instance is reused for later signals
+ * once the handler returns, so a handler keeps the values it needs rather than the event.
+ * @see AbstractDBusSupport#onPropertyEvent
+ */
+public final class PropertyEvent {
+
+    private String path;
+    private String name;
+    private VoiceCall.Property property;
+    private Object value;
+
+    PropertyEvent() {
+    }
+
+    /**
+     * @return the path of the object whose property changed
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the call property that changed, or {@code null} for the properties of other objects
+     */
+    public VoiceCall.Property getProperty() {
+        return property;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return the new state, if the state of a call changed
+     */
+    public VoiceCallState getState() {
+        return property == VoiceCall.Property.STATE ? VoiceCallState.get((String) value) : null;
+    }
+
+    /**
+     * @return a copy of this event that may be kept
+     */
+    public Map.Entry<String, Object> toEntry() {
+        return Map.entry(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return path + " " + name + "=" + value;
+    }
+
+    PropertyEvent set(String path, String name, Variant<?> value) {
+        this.path = path;
+        this.name = name;
+        this.property = VoiceCall.Property.get(name);
+        this.value = value != null ? value.getValue() : null;
+        return this;
+    }
+
+    void clear() {
+        path = null;
+        name = null;
+        property = null;
+        value = null;
+    }
+
+}
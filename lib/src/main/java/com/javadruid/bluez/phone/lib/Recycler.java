@@ -0,0 +1,32 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a spare event for a handler, so that decoding a signal does not allocate one. A signal
+ * arriving whilst the spare is taken, e.g. on another delivery thread, gets a new event.
+ */
+final class Recycler<E> {
+
+    private final AtomicReference<E> spare = new AtomicReference<>();
+    private final Supplier<E> factory;
+    private final Consumer<E> clear;
+
+    Recycler(Supplier<E> factory, Consumer<E> clear) {
+        this.factory = factory;
+        this.clear = clear;
+    }
+
+    E take() {
+        final E event = spare.getAndSet(null);
+        return event != null ? event : factory.get();
+    }
+
+    void give(E event) {
+        clear.accept(event);
+        spare.set(event);
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.time.Instant;
+
+/**
+ * A tone group sent by a {@link ToneSequencer} run.
+ * @param tones the tones
+ * @param sent when {@code SendTones} was called
+ * @param acknowledged when oFono replied to it
+ */
+public record SentTones(String tones, Instant sent, Instant acknowledged) {
+}
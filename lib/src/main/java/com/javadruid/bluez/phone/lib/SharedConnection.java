@@ -0,0 +1,246 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.Local;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares one bus connection between its users. The connection is opened by the first
+ * {@link #acquire()} and closed once the last {@link Lease} is closed. If the bus drops whilst
+ * leases are held, a new connection is opened, retrying with a growing delay, and handed to
+ * every lease's reconnect handler.
+ */
+public final class SharedConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedConnection.class);
+    private static final SharedConnection SYSTEM = new SharedConnection(
+        () -> DBusConnection.newConnection(DBusConnection.DBusBusType.SYSTEM));
+    static final long CHECK_INTERVAL_MILLIS = 1000;
+    static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final Opener opener;
+    private final ScheduledExecutorService scheduler;
+    private final Set<Lease> leases = new LinkedHashSet<>();
+    private DBusConnection connection;
+    private ScheduledFuture<?> check;
+    private ScheduledFuture<?> retry;
+    private long retryMillis;
+    private long reconnects;
+
+    SharedConnection(Opener opener) {
+        this(opener, Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "dbus-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    SharedConnection(Opener opener, ScheduledExecutorService scheduler) {
+        this.opener = opener;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the provider of the shared system bus connection
+     */
+    public static SharedConnection getSystem() {
+        return SYSTEM;
+    }
+
+    /**
+     * Registers a new user of the connection, opening it if needed.
+     * @return the lease to close when the connection is no longer needed
+     */
+    public Lease acquire() {
+        final Lease lease = new Lease();
+        final List<Lease> notified;
+        final DBusConnection opened;
+        synchronized (this) {
+            if (connection != null && connection.isConnected()) {
+                leases.add(lease);
+                return lease;
+            }
+            notified = List.copyOf(leases);
+            if (!reopen()) {
+                throw new RuntimeException("Could not open the bus connection");
+            }
+            opened = connection;
+            leases.add(lease);
+            if (check == null) {
+                check = scheduler.scheduleWithFixedDelay(this::checkConnection,
+                    CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        notified.forEach(l -> l.reconnected(opened));
+        return lease;
+    }
+
+    public synchronized int getUserCount() {
+        return leases.size();
+    }
+
+    /**
+     * @return how many times the connection was opened again after dropping
+     */
+    public synchronized long getReconnectCount() {
+        return reconnects;
+    }
+
+    synchronized DBusConnection getConnection() {
+        return connection;
+    }
+
+    private void release(Lease lease) {
+        final DBusConnection closing;
+        synchronized (this) {
+            if (!leases.remove(lease) || !leases.isEmpty()) {
+                return;
+            }
+            cancel(check);
+            cancel(retry);
+            check = null;
+            retry = null;
+            retryMillis = 0;
+            closing = connection;
+            connection = null;
+        }
+        // Outside the monitor, as closing delivers Disconnected to our own handler
+        close(closing);
+    }
+
+    private synchronized void disconnected(DBusConnection dropped) {
+        if (dropped == connection && !leases.isEmpty() && retry == null) {
+            logger.warn("Bus connection dropped, reconnecting");
+            retry = scheduler.schedule(this::retry, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkConnection() {
+        final DBusConnection current = getConnection();
+        if (current != null && !current.isConnected()) {
+            disconnected(current);
+        }
+    }
+
+    private void retry() {
+        final List<Lease> notified;
+        final DBusConnection opened;
+        synchronized (this) {
+            retry = null;
+            if (leases.isEmpty() || connection != null && connection.isConnected()) {
+                return;
+            }
+            if (!reopen()) {
+                retryMillis = Math.min(Math.max(retryMillis * 2, CHECK_INTERVAL_MILLIS), MAX_RETRY_MILLIS);
+                retry = scheduler.schedule(this::retry, retryMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            opened = connection;
+            notified = List.copyOf(leases);
+        }
+        notified.forEach(l -> l.reconnected(opened));
+    }
+
+    /**
+     * Replaces a dropped connection, or opens the first one. Called with the monitor held.
+     * @return whether a connection is open
+     */
+    private boolean reopen() {
+        if (connection != null) {
+            close(connection);
+            connection = null;
+            reconnects++;
+        }
+        try {
+            final DBusConnection opening = opener.open();
+            opening.addSigHandler(Local.Disconnected.class, s -> disconnected(opening));
+            connection = opening;
+            retryMillis = 0;
+            cancel(retry);
+            retry = null;
+            return true;
+        } catch (DBusException | RuntimeException ex) {
+            logger.error("Error opening bus connection", ex);
+            return false;
+        }
+    }
+
+    private static void cancel(ScheduledFuture<?> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private static void close(DBusConnection closing) {
+        if (closing != null) {
+            try {
+                closing.close();
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Error closing bus connection", ex);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        DBusConnection open() throws DBusException;
+    }
+
+    /**
+     * A user's hold on the shared connection.
+     */
+    public final class Lease implements Closeable {
+
+        private volatile Consumer<DBusConnection> reconnectHandler;
+
+        private Lease() {
+        }
+
+        /**
+         * @return the current connection, or {@code null} whilst reconnecting or once closed
+         */
+        public DBusConnection getConnection() {
+            return SharedConnection.this.getConnection();
+        }
+
+        /**
+         * Sets the handler given the new connection after the bus dropped and was reopened.
+         * Remote objects and signal handlers of the old connection have to be set up again.
+         */
+        public void onReconnect(Consumer<DBusConnection> handler) {
+            reconnectHandler = handler;
+        }
+
+        /**
+         * Releases this lease. The connection is closed with the last one.
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void reconnected(DBusConnection opened) {
+            final Consumer<DBusConnection> handler = reconnectHandler;
+            if (handler != null) {
+                try {
+                    handler.accept(opened);
+                } catch (RuntimeException ex) {
+                    logger.error("Error handling reconnect", ex);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Moves signal handling off the D-Bus dispatch threads. Signals are queued per object path:
+ * the signals of one path are handled in order, whilst those of different paths run in parallel
+ * on the configured executor.
+ */
+public class SignalDispatcher {
+
+    /**
+     * Handles signals on the thread that delivers them, as dbus-java does by default.
+     */
+    public static final SignalDispatcher DIRECT = new SignalDispatcher();
+
+    private static final Logger logger = LoggerFactory.getLogger(SignalDispatcher.class);
+    private static final int BATCH_SIZE = 64;
+
+    private final Executor executor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Map<String, KeyQueue> queues = new ConcurrentHashMap<>();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    public SignalDispatcher(Executor executor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    private SignalDispatcher() {
+        this.executor = null;
+        this.queueCapacity = Integer.MAX_VALUE;
+        this.overflowPolicy = OverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Wraps a handler so that the signals it receives are dispatched through this dispatcher.
+     */
+    public <T extends DBusSignal> DBusSigHandler<T> wrap(DBusSigHandler<T> handler) {
+        if (executor == null) {
+            return handler;
+        }
+        return s -> dispatch(s.getPath(), () -> handler.handle(s));
+    }
+
+    public void dispatch(String key, Runnable task) {
+        if (executor == null) {
+            dispatched.increment();
+            task.run();
+            return;
+        }
+        while (true) {
+            final KeyQueue queue = queues.computeIfAbsent(key, KeyQueue::new);
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue;
+                }
+                if (!offer(queue, task)) {
+                    return;
+                }
+                if (!queue.scheduled) {
+                    queue.scheduled = true;
+                    executor.execute(() -> drain(queue));
+                }
+                return;
+            }
+        }
+    }
+
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public int getQueueDepth(String key) {
+        final KeyQueue queue = queues.get(key);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.tasks.size();
+        }
+    }
+
+    public Map<String, Integer> getQueueDepths() {
+        return queues.keySet().stream()
+            .collect(toMap(k -> k, this::getQueueDepth));
+    }
+
+    private boolean offer(KeyQueue queue, Runnable task) {
+        while (queue.tasks.size() >= queueCapacity) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST -> {
+                    dropped.increment();
+                    logger.warn("Signal queue for {} is full, dropping newest signal", queue.key);
+                    return false;
+                }
+                case DROP_OLDEST -> {
+                    queue.tasks.poll();
+                    dropped.increment();
+                    logger.warn("Signal queue for {} is full, dropping oldest signal", queue.key);
+                }
+                case BLOCK -> {
+                    queue.waiters++;
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                        return false;
+                    } finally {
+                        queue.waiters--;
+                    }
+                }
+            }
+        }
+        queue.tasks.add(task);
+        maxQueueDepth.accumulate(queue.tasks.size());
+        return true;
+    }
+
+    private void drain(KeyQueue queue) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Runnable task;
+            synchronized (queue) {
+                task = queue.tasks.poll();
+                if (task == null) {
+                    queue.scheduled = false;
+                    if (queue.waiters == 0) {
+                        queue.retired = true;
+                        queues.remove(queue.key, queue);
+                    }
+                    return;
+                }
+                queue.notifyAll();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                logger.error("Error handling signal for {}", queue.key, ex);
+            }
+            dispatched.increment();
+        }
+        // Give other keys a chance before carrying on with this one
+        executor.execute(() -> drain(queue));
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the signal being dispatched
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest queued signal to make room
+         */
+        DROP_OLDEST,
+        /**
+         * Make the delivering thread wait until there is room
+         */
+        BLOCK
+    }
+
+    private static class KeyQueue {
+        private final String key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+        private int waiters;
+
+        KeyQueue(String key) {
+            this.key = key;
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the events of one signal of one object to any number of subscribers. The signal
+ * handler is registered with the first subscriber and removed once the last one cancels, so
+ * there is a single handler however many subscribe. Each subscriber has its own demand and a
+ * buffer of {@link Flow#defaultBufferSize()} events; an event arriving at a full buffer is
+ * dropped for that subscriber and counted, so a slow subscriber never holds up the bus. Drops
+ * are logged at most every ten seconds. Closing the publisher, once its object is gone,
+ * completes the subscribers.
+ * @param <T> the type of event
+ */
+public final class SignalPublisher<T> implements Flow.Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignalPublisher.class);
+    private static final long DROP_LOG_INTERVAL_SECONDS = 10;
+
+    private final String name;
+    private final Function<Consumer<T>, Runnable> registration;
+    private final SubmissionPublisher<T> publisher;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong nextDropLog = new AtomicLong(System.nanoTime());
+    private int subscribers;
+    private Runnable unregister;
+
+    /**
+     * @param name names the events in log messages
+     * @param registration registers the signal handler feeding the given sink, returning what
+     * removes it
+     */
+    SignalPublisher(String name, Function<Consumer<T>, Runnable> registration) {
+        this(name, registration, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor delivers the events to the subscribers
+     */
+    SignalPublisher(String name, Function<Consumer<T>, Runnable> registration, Executor executor) {
+        this.name = name;
+        this.registration = registration;
+        this.publisher = new SubmissionPublisher<>(executor, Flow.defaultBufferSize());
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        // Completed at once, without registering the handler
+        if (publisher.isClosed()) {
+            publisher.subscribe(subscriber);
+            return;
+        }
+        try {
+            acquire();
+        } catch (RuntimeException ex) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(ex);
+            return;
+        }
+        publisher.subscribe(new CountedSubscriber(subscriber));
+    }
+
+    /**
+     * Registers the signal handler again, if any, e.g. after the service restarted.
+     */
+    synchronized void reregister() {
+        if (unregister != null) {
+            unregister.run();
+            unregister = registration.apply(this::publish);
+        }
+    }
+
+    /**
+     * Completes the current subscribers, which removes the handler, and any later ones at once.
+     */
+    void close() {
+        publisher.close();
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers;
+    }
+
+    /**
+     * @return the number of events published, whether or not any subscriber took them
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * @return the number of events dropped for subscribers whose buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private synchronized void acquire() {
+        if (subscribers == 0) {
+            unregister = registration.apply(this::publish);
+        }
+        subscribers++;
+    }
+
+    private synchronized void release() {
+        if (--subscribers == 0) {
+            final Runnable removing = unregister;
+            unregister = null;
+            try {
+                removing.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Error removing the {} handler", name, ex);
+            }
+        }
+    }
+
+    /**
+     * Offers an event to the current subscribers, e.g. one inferred rather than signalled.
+     */
+    void publish(T event) {
+        published.increment();
+        publisher.offer(event, (subscriber, item) -> {
+            dropped();
+            return false;
+        });
+    }
+
+    private void dropped() {
+        dropped.increment();
+        final long now = System.nanoTime();
+        final long next = nextDropLog.get();
+        if (now - next >= 0
+                && nextDropLog.compareAndSet(next, now + TimeUnit.SECONDS.toNanos(DROP_LOG_INTERVAL_SECONDS))) {
+            logger.warn("Dropping {} events for slow subscribers, {} so far", name, dropped.sum());
+        }
+    }
+
+    /**
+     * Releases the handler registration when its subscriber leaves, whichever way.
+     */
+    private final class CountedSubscriber implements Flow.Subscriber<T> {
+
+        private final Flow.Subscriber<? super T> delegate;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        CountedSubscriber(Flow.Subscriber<? super T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    leave();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(T item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            leave();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            leave();
+            delegate.onComplete();
+        }
+
+        private void leave() {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable DTMF script for {@link ToneSequencer}: waits for call states, tone groups and
+ * pauses, run in order. Every method returns a new script with the step appended, e.g.
+ * {@code ToneScript.create().awaitState(ACTIVE).send("1").pause(Duration.ofSeconds(2)).send("42#")}.
+ */
+public final class ToneScript {
+
+    sealed interface Step permits AwaitState, Send, Pause {
+    }
+
+    record AwaitState(VoiceCallState state, Duration timeout) implements Step {
+    }
+
+    record Send(String tones) implements Step {
+    }
+
+    record Pause(Duration delay) implements Step {
+    }
+
+    private final List<Step> steps;
+
+    private ToneScript(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    public static ToneScript create() {
+        return new ToneScript(List.of());
+    }
+
+    /**
+     * Waits until the call is in the given state, continuing at once if it already is.
+     */
+    public ToneScript awaitState(VoiceCallState state) {
+        return append(new AwaitState(Objects.requireNonNull(state), null));
+    }
+
+    /**
+     * Waits until the call is in the given state, failing the run if it takes longer than the timeout.
+     */
+    public ToneScript awaitState(VoiceCallState state, Duration timeout) {
+        return append(new AwaitState(Objects.requireNonNull(state), positive(timeout)));
+    }
+
+    /**
+     * Sends a group of tones with a single {@code SendTones} call.
+     */
+    public ToneScript send(String tones) {
+        if (tones == null || tones.isEmpty()) {
+            throw new IllegalArgumentException("No tones to send");
+        }
+        return append(new Send(tones));
+    }
+
+    public ToneScript pause(Duration delay) {
+        return append(new Pause(positive(delay)));
+    }
+
+    List<Step> getSteps() {
+        return steps;
+    }
+
+    @Override
+    public String toString() {
+        return steps.toString();
+    }
+
+    private ToneScript append(Step step) {
+        final List<Step> result = new ArrayList<>(steps);
+        result.add(step);
+        return new ToneScript(List.copyOf(result));
+    }
+
+    private static Duration positive(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration);
+        }
+        return duration;
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.ToneScript.AwaitState;
+import com.javadruid.bluez.phone.lib.ToneScript.Pause;
+import com.javadruid.bluez.phone.lib.ToneScript.Send;
+import com.javadruid.bluez.phone.lib.ToneScript.Step;
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs {@link ToneScript}s against calls without holding a thread per call. State waits are
+ * resumed by the {@code PropertyChanged} signals of the calls, and pauses and the following
+ * steps are scheduled on a shared scheduler, so a small pool can drive hundreds of calls.
+ */
+public class ToneSequencer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToneSequencer.class);
+    private static final DBusMetrics metrics = DBusMetrics.getInstance();
+
+    private final DBusConnection connection;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Set<Waiter>> waiting = new ConcurrentHashMap<>();
+    private final Set<Run> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    private final DBusSigHandler<PropertyChanged> stateHandler;
+    private final DBusSigHandler<CallRemoved> removedHandler;
+
+    ToneSequencer(DBusConnection connection, SignalDispatcher dispatcher, ScheduledExecutorService scheduler) {
+        this.connection = connection;
+        this.scheduler = scheduler;
+        this.stateHandler = dispatcher.wrap(this::handlePropertyChanged);
+        this.removedHandler = dispatcher.wrap(this::handleCallRemoved);
+        metrics.countSignals(connection, PropertyChanged.class);
+        metrics.countSignals(connection, CallRemoved.class);
+        try {
+            connection.addSigHandler(PropertyChanged.class, stateHandler);
+            connection.addSigHandler(CallRemoved.class, removedHandler);
+        } catch (DBusException ex) {
+            logger.error("Error adding tone sequencer listeners", ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Starts running a script against a call.
+     * @param manager the manager of the modem holding the call, which sends the tones
+     * @param call the call whose states the script waits for
+     * @return the tones sent, once the script has finished. It fails if a step fails or the call
+     * ends while being waited on, and cancelling it stops the script before its next step.
+     * Closing the sequencer cancels it.
+     */
+    public CompletableFuture<List<SentTones>> run(VoiceCallManager manager, VoiceCall call, ToneScript script) {
+        final Run run = new Run(manager, call, script.getSteps());
+        running.add(run);
+        run.result.whenComplete((r, ex) -> {
+            running.remove(run);
+            removeWaiter(run.waiter);
+            run.cancelScheduled();
+        });
+        // Added first so that a close meanwhile does not miss it
+        if (closed) {
+            run.result.completeExceptionally(new CancellationException("Tone sequencer closed"));
+        } else {
+            scheduler.execute(() -> next(run));
+        }
+        return run.result;
+    }
+
+    /**
+     * Removes the signal handlers and cancels the scripts still running, whose futures fail
+     * with a {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List.copyOf(running).forEach(run ->
+            run.result.completeExceptionally(new CancellationException("Tone sequencer closed")));
+        waiting.clear();
+        try {
+            connection.removeSigHandler(PropertyChanged.class, stateHandler);
+            connection.removeSigHandler(CallRemoved.class, removedHandler);
+        } catch (DBusException ex) {
+            logger.error("Error removing tone sequencer listeners", ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    int getWaitingCount() {
+        return waiting.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void next(Run run) {
+        if (run.result.isDone()) {
+            return;
+        }
+        if (run.index == run.steps.size()) {
+            run.result.complete(List.copyOf(run.sent));
+            return;
+        }
+        try {
+            final Step step = run.steps.get(run.index++);
+            switch (step) {
+                case AwaitState a -> await(run, a);
+                case Send s -> send(run, s);
+                case Pause p -> run.schedule(
+                    scheduler.schedule(() -> next(run), p.delay().toNanos(), TimeUnit.NANOSECONDS));
+            }
+        } catch (RuntimeException ex) {
+            run.result.completeExceptionally(ex);
+        }
+    }
+
+    private void await(Run run, AwaitState step) {
+        final Waiter waiter = new Waiter(run, step.state());
+        run.waiter = waiter;
+        waiting.computeIfAbsent(run.call.getPath(), k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        if (step.timeout() != null) {
+            run.schedule(scheduler.schedule(() -> {
+                if (waiter.claim()) {
+                    run.result.completeExceptionally(new TimeoutException(
+                        "Call " + run.call.getPath() + " not " + step.state().getState() + " within " + step.timeout()));
+                }
+            }, step.timeout().toNanos(), TimeUnit.NANOSECONDS));
+        }
+        // Registered before reading the state so that a transition in between is not missed
+        run.call.snapshotAsync().thenAccept(snapshot -> {
+            if (snapshot.state() == step.state()) {
+                resume(waiter);
+            }
+        })
+        .exceptionally(ex -> {
+            // Otherwise a wait without a timeout would never end
+            if (waiter.claim()) {
+                run.result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                    ? ex.getCause() : ex);
+            }
+            return null;
+        });
+    }
+
+    private void send(Run run, Send step) {
+        final Instant sent = Instant.now();
+        run.manager.sendTonesAsync(step.tones()).whenComplete((r, ex) -> {
+            if (ex != null) {
+                run.result.completeExceptionally(ex);
+            } else {
+                run.sent.add(new SentTones(step.tones(), sent, Instant.now()));
+                scheduler.execute(() -> next(run));
+            }
+        });
+    }
+
+    private void resume(Waiter waiter) {
+        if (waiter.claim()) {
+            scheduler.execute(() -> next(waiter.run));
+        }
+    }
+
+    private void handlePropertyChanged(PropertyChanged s) {
+        if (VoiceCall.STATE.equals(s.getName())) {
+            final VoiceCallState state = VoiceCallState.get((String) s.getValue().getValue());
+            final Set<Waiter> waiters = waiting.get(s.getPath());
+            if (waiters != null) {
+                waiters.stream()
+                    .filter(w -> w.state == state)
+                    .forEach(this::resume);
+            }
+        }
+    }
+
+    private void handleCallRemoved(CallRemoved s) {
+        final String path = s.getCallPath().getPath();
+        final Set<Waiter> waiters = waiting.remove(path);
+        if (waiters != null) {
+            waiters.stream()
+                .filter(Waiter::claim)
+                .forEach(w -> w.run.result.completeExceptionally(new IllegalStateException("Call " + path + " ended")));
+        }
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        if (waiter != null) {
+            waiting.computeIfPresent(waiter.run.call.getPath(), (k, v) -> {
+                v.remove(waiter);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    private static class Run {
+
+        private final VoiceCallManager manager;
+        private final VoiceCall call;
+        private final List<Step> steps;
+        private final List<SentTones> sent = new ArrayList<>();
+        private final CompletableFuture<List<SentTones>> result = new CompletableFuture<>();
+        private int index;
+        private volatile Waiter waiter;
+        // The pause or wait timeout of the current step
+        private volatile ScheduledFuture<?> scheduled;
+
+        Run(VoiceCallManager manager, VoiceCall call, List<Step> steps) {
+            this.manager = manager;
+            this.call = call;
+            this.steps = steps;
+        }
+
+        /**
+         * Keeps the task scheduled for the current step, cancelling the one of an earlier step.
+         */
+        void schedule(ScheduledFuture<?> task) {
+            final ScheduledFuture<?> previous = scheduled;
+            scheduled = task;
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            // Stopped while it was being scheduled
+            if (result.isDone()) {
+                task.cancel(false);
+            }
+        }
+
+        void cancelScheduled() {
+            final ScheduledFuture<?> task = scheduled;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+    }
+
+    private class Waiter {
+
+        private final Run run;
+        private final VoiceCallState state;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Waiter(Run run, VoiceCallState state) {
+            this.run = run;
+            this.state = state;
+        }
+
+        /**
+         * Takes the waiter out of the waiting set, returning whether this caller is the one
+         * that resumes or fails the run.
+         */
+        boolean claim() {
+            if (claimed.compareAndSet(false, true)) {
+                removeWaiter(this);
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -1,19 +1,36 @@
 package com.javadruid.bluez.phone.lib;
 
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallStub;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class VoiceCall extends AbstractDBusSupport {
 
+    private static final Logger logger = LoggerFactory.getLogger(VoiceCall.class);
+    /**
+     * The format of {@code StartTime}, strftime {@code %Y-%m-%dT%H:%M:%S%z} in oFono.
+     */
+    static final DateTimeFormatter START_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXX");
+
     // Method names
     static final String ANSWER = "Answer";
-    static final String DIAL_MEMORY = "DialMemory";
+    static final String DEFLECT = "Deflect";
     static final String HANGUP = "Hangup";
     // Property names
     public static final String LINE_IDENTIFICATION = "LineIdentification";
@@ -28,11 +45,24 @@ public class VoiceCall extends AbstractDBusSupport {
     public static final String REMOTE_HELD = "RemoteHeld";
     public static final String REMOTE_MULTIPARTY = "RemoteMultiparty";
 
+    private final CallerIdResolver callerIds;
     private DBusSigHandler<DisconnectReason> disconnectReasonHandler;
+    private SignalPublisher<Map.Entry<String, String>> disconnectReasonPublisher;
 
     public VoiceCall(DBusConnection connection, String objectPath) {
+        this(connection, objectPath, SignalDispatcher.DIRECT);
+    }
+
+    VoiceCall(DBusConnection connection, String objectPath, SignalDispatcher dispatcher) {
+        this(connection, objectPath, dispatcher, CallerIdResolver.NONE);
+    }
+
+    VoiceCall(DBusConnection connection, String objectPath, SignalDispatcher dispatcher,
+            CallerIdResolver callerIds) {
         super(connection, objectPath, Ofono.BUS_NAME,
-            com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class);
+            com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class, PropertyChanged.class, dispatcher,
+            VoiceCallStub::method);
+        this.callerIds = callerIds;
     }
 
     public void answer() {
@@ -40,13 +70,25 @@ public class VoiceCall extends AbstractDBusSupport {
     }
 
     public void deflect(String number) {
-        callObjectMethod(DIAL_MEMORY, number);
+        callObjectMethod(DEFLECT, number);
     }
 
     public void hangup() {
         callObjectMethod(HANGUP);
     }
 
+    public CompletableFuture<Void> answerAsync() {
+        return callObjectMethodAsync(ANSWER);
+    }
+
+    public CompletableFuture<Void> deflectAsync(String number) {
+        return callObjectMethodAsync(DEFLECT, number);
+    }
+
+    public CompletableFuture<Void> hangupAsync() {
+        return callObjectMethodAsync(HANGUP);
+    }
+
     // Properties
     public String getLineIdentification() {
         return getSingleProperty(LINE_IDENTIFICATION, String.class).get();
@@ -72,7 +114,7 @@ public class VoiceCall extends AbstractDBusSupport {
 
     public Optional<Instant> getStartTime() {
         return getSingleProperty(START_TIME, String.class)
-            .map(Instant::parse);
+            .flatMap(VoiceCall::parseStartTime);
     }
 
     public Optional<String> getInformation() {
@@ -95,6 +137,35 @@ public class VoiceCall extends AbstractDBusSupport {
         return getSingleProperty(REMOTE_MULTIPARTY, Boolean.class).get();
     }
 
+    /**
+     * Returns all the properties of this call at once. At most one {@code GetProperties} call is
+     * made to fill the property cache.
+     * @return the decoded properties of this call
+     */
+    public VoiceCallSnapshot snapshot() {
+        return VoiceCallSnapshot.of(objectPath, getCachedProperties(), callerIds);
+    }
+
+    /**
+     * Returns all the properties of this call without blocking the calling thread.
+     * @return a future of the decoded properties of this call
+     */
+    public CompletableFuture<VoiceCallSnapshot> snapshotAsync() {
+        return mapReply(getPropertiesAsync(), p -> VoiceCallSnapshot.of(objectPath, p, callerIds));
+    }
+
+    /**
+     * @return the start time, or empty if the value is not in oFono's format
+     */
+    static Optional<Instant> parseStartTime(String value) {
+        try {
+            return Optional.of(OffsetDateTime.parse(value, START_TIME_FORMAT).toInstant());
+        } catch (DateTimeParseException ex) {
+            logger.warn("Invalid call start time {}", value);
+            return Optional.empty();
+        }
+    }
+
     public void onDisconnectReason(Consumer<Map.Entry<String, String>> handler){
         disconnectReasonHandler = onSignal(DisconnectReason.class, remoteObject, disconnectReasonHandler, dr -> {
             handler.accept(Map.entry(dr.getPath(), dr.getReason()));
@@ -105,6 +176,18 @@ public class VoiceCall extends AbstractDBusSupport {
         removeSigHandler(DisconnectReason.class, remoteObject, disconnectReasonHandler);
     }
 
+    /**
+     * Returns the disconnect reason of this call, as path and reason, as a stream any number of
+     * subscribers may share, unlike {@link #onDisconnectReason}, which takes a single handler.
+     */
+    public synchronized Flow.Publisher<Map.Entry<String, String>> disconnectReasonEvents() {
+        if (disconnectReasonPublisher == null) {
+            disconnectReasonPublisher = newSignalPublisher("disconnect reason", DisconnectReason.class, remoteObject,
+                (dr, sink) -> sink.accept(Map.entry(dr.getPath(), dr.getReason())));
+        }
+        return disconnectReasonPublisher;
+    }
+
     /**
      * Contains the state of the current call.
      * @see https://github.com/rilmodem/ofono/blob/master/doc/voicecall-api.txt
@@ -164,4 +247,41 @@ public class VoiceCall extends AbstractDBusSupport {
         }
     }
 
+    /**
+     * Identifies the properties of a call, e.g. in a {@link PropertyEvent}.
+     */
+    public enum Property {
+        LINE_IDENTIFICATION(VoiceCall.LINE_IDENTIFICATION),
+        INCOMING_LINE(VoiceCall.INCOMING_LINE),
+        NAME(VoiceCall.NAME),
+        MULTIPARTY(VoiceCall.MULTIPARTY),
+        STATE(VoiceCall.STATE),
+        START_TIME(VoiceCall.START_TIME),
+        INFORMATION(VoiceCall.INFORMATION),
+        ICON(VoiceCall.ICON),
+        EMERGENCY(VoiceCall.EMERGENCY),
+        REMOTE_HELD(VoiceCall.REMOTE_HELD),
+        REMOTE_MULTIPARTY(VoiceCall.REMOTE_MULTIPARTY);
+
+        private static final Map<String, Property> NAME_TO_PROPERTY = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(Property::getName, p -> p));
+
+        private final String name;
+
+        private Property(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the property of that name, or {@code null} if it is not a call property
+         */
+        public static Property get(String name) {
+            return NAME_TO_PROPERTY.get(name);
+        }
+    }
+
 }
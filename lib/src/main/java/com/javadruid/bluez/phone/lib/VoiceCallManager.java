@@ -2,15 +2,23 @@ package com.javadruid.bluez.phone.lib;
 
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManagerStub;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
+import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.ObjectPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
-
-import static java.util.stream.Collectors.toMap;
+import org.freedesktop.dbus.types.Variant;
 
 public class VoiceCallManager extends AbstractDBusSupport {
     // Methods
@@ -31,11 +39,26 @@ public class VoiceCallManager extends AbstractDBusSupport {
     static final String DIAL_MEMORY = "DialMemory";
 
 
+    private final VoiceCallRegistry voiceCalls;
+    private final Set<String> knownCalls = ConcurrentHashMap.newKeySet();
     private DBusSigHandler<CallAdded> callAddedHandler;
     private DBusSigHandler<CallRemoved> callRemovedHandler;
+    private volatile Consumer<Map.Entry<String, Map<String, Object>>> callAddedConsumer;
+    private volatile Consumer<String> callRemovedConsumer;
+    private DBusSigHandler<CallAdded> callAddedEventHandler;
+    private volatile Consumer<CallAddedEvent> callAddedEventConsumer;
+    private SignalPublisher<Map.Entry<String, Map<String, Object>>> callAddedPublisher;
+    private SignalPublisher<String> callRemovedPublisher;
 
     VoiceCallManager(DBusConnection connection, String objectPath) {
-        super(connection, objectPath, Ofono.BUS_NAME, com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class);
+        this(connection, objectPath, VoiceCallRegistry.uncached(connection), SignalDispatcher.DIRECT);
+    }
+
+    VoiceCallManager(DBusConnection connection, String objectPath, VoiceCallRegistry voiceCalls,
+            SignalDispatcher dispatcher) {
+        super(connection, objectPath, Ofono.BUS_NAME, com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class,
+            PropertyChanged.class, dispatcher, VoiceCallManagerStub::method);
+        this.voiceCalls = voiceCalls;
     }
 
     public String[] createMultiparty(){
@@ -61,7 +84,28 @@ public class VoiceCallManager extends AbstractDBusSupport {
     }
 
     public Map<String, Object> getCalls(){
-        return (Map<String, Object>) callMethodReturn(remoteObject, GET_CALLS);
+        return new LinkedHashMap<>(getCallProperties());
+    }
+
+    /**
+     * Returns the properties of every call of this modem, fetched with a single {@code GetCalls} call.
+     * @return the calls, in the order reported by oFono
+     */
+    public List<VoiceCallSnapshot> getCallSnapshots() {
+        return getCallProperties().entrySet().stream()
+            .map(e -> VoiceCallSnapshot.of(e.getKey(), e.getValue(), voiceCalls.getCallerIdResolver()))
+            .toList();
+    }
+
+    /**
+     * Returns every call of this modem with its property cache already filled from a single
+     * {@code GetCalls} call.
+     * @return the calls, in the order reported by oFono
+     */
+    public List<VoiceCall> getVoiceCalls() {
+        return getCallProperties().entrySet().stream()
+            .map(e -> voiceCalls.get(e.getKey(), e.getValue()))
+            .toList();
     }
 
     public void hangupAll(){
@@ -77,7 +121,10 @@ public class VoiceCallManager extends AbstractDBusSupport {
     }
 
     public String privateChat(String[] calls){
-        return (String) callMethodReturn(remoteObject, PRIVATE_CHAT, (Object[]) calls);
+        final ObjectPath[] paths = Arrays.stream(calls)
+            .map(call -> new ObjectPath(Ofono.BUS_NAME, call))
+            .toArray(ObjectPath[]::new);
+        return ((ObjectPath) callMethodReturn(remoteObject, PRIVATE_CHAT, (Object) paths)).getPath();
     }
 
     public void releaseAndAnswer(){
@@ -100,6 +147,73 @@ public class VoiceCallManager extends AbstractDBusSupport {
         callObjectMethod(TRANSFER);
     }
 
+    // Asynchronous methods
+    public CompletableFuture<String[]> createMultipartyAsync(){
+        return mapReply(this.<ObjectPath[]>callMethodAsync(remoteObject, CREATE_MULTIPARTY),
+            paths -> Arrays.stream(paths)
+                .map(ObjectPath::getPath)
+                .toArray(String[]::new));
+    }
+
+    public CompletableFuture<String> dialAsync(String number){
+        return dialAsync(number, HideCallerId.DEFAULT);
+    }
+
+    public CompletableFuture<String> dialAsync(String number, HideCallerId hide_callerid){
+        return mapReply(this.<ObjectPath>callMethodAsync(remoteObject, DIAL, number, hide_callerid.getText()),
+            ObjectPath::getPath);
+    }
+
+    public CompletableFuture<Void> dialLastAsync(){
+        return callObjectMethodAsync(DIAL_LAST);
+    }
+
+    public CompletableFuture<Void> dialMemoryAsync(int memory_location) {
+        return callObjectMethodAsync(DIAL_MEMORY, memory_location);
+    }
+
+    public CompletableFuture<Void> hangupAllAsync(){
+        return callObjectMethodAsync(HANGUP_ALL);
+    }
+
+    /**
+     * Like {@link #getCallSnapshots()}, without blocking on the {@code GetCalls} reply.
+     */
+    public CompletableFuture<List<VoiceCallSnapshot>> getCallSnapshotsAsync() {
+        return mapReply(this.<List<?>>callMethodAsync(remoteObject, GET_CALLS),
+            reply -> toCallProperties(reply).entrySet().stream()
+                .map(e -> VoiceCallSnapshot.of(e.getKey(), e.getValue(), voiceCalls.getCallerIdResolver()))
+                .toList());
+    }
+
+    public CompletableFuture<Void> hangupMultipartyAsync(){
+        return callObjectMethodAsync(HANGUP_MULTIPARTY);
+    }
+
+    public CompletableFuture<Void> holdAndAnswerAsync(){
+        return callObjectMethodAsync(HOLD_AND_ANSWER);
+    }
+
+    public CompletableFuture<Void> releaseAndAnswerAsync(){
+        return callObjectMethodAsync(RELEASE_AND_ANSWER);
+    }
+
+    public CompletableFuture<Void> releaseAndSwapAsync(){
+        return callObjectMethodAsync(RELEASE_AND_SWAP);
+    }
+
+    public CompletableFuture<Void> sendTonesAsync(String tones){
+        return callObjectMethodAsync(SEND_TONES, tones);
+    }
+
+    public CompletableFuture<Void> swapCallsAsync(){
+        return callObjectMethodAsync(SWAP_CALLS);
+    }
+
+    public CompletableFuture<Void> transferAsync(){
+        return callObjectMethodAsync(TRANSFER);
+    }
+
     public String[] getEmergencyNumbers() {
         return getSingleProperty(EMERGENCY_NUMBERS, List.class)
             .map(l -> (List<String>)l)
@@ -108,21 +222,153 @@ public class VoiceCallManager extends AbstractDBusSupport {
     }
 
     public void onCallAdded(Consumer<Map.Entry<String, Map<String, Object>>> handler) {
-        callAddedHandler = onSignal(CallAdded.class, remoteObject, callAddedHandler, s -> handleCallAdded(handler, s));
+        callAddedConsumer = handler;
+        callAddedHandler = onSignal(CallAdded.class, remoteObject, callAddedHandler, s -> {
+            knownCalls.add(s.getCallPath().getPath());
+            handleCallAdded(handler, s);
+        });
     }
 
     public void removeCallAdded() {
+        callAddedConsumer = null;
         removeSigHandler(CallAdded.class, remoteObject, callAddedHandler);
     }
 
+    /**
+     * Like {@link #onCallAdded}, but hands the calls over as {@link CallAddedEvent}s read in
+     * place, which are reused rather than allocated per signal.
+     */
+    public void onCallAddedEvent(Consumer<CallAddedEvent> handler) {
+        callAddedEventConsumer = handler;
+        final Recycler<CallAddedEvent> events = new Recycler<>(CallAddedEvent::new, CallAddedEvent::clear);
+        callAddedEventHandler = onSignal(CallAdded.class, remoteObject, callAddedEventHandler, s -> {
+            knownCalls.add(s.getCallPath().getPath());
+            final CallAddedEvent event = events.take();
+            try {
+                handler.accept(event.set(s));
+            } finally {
+                events.give(event);
+            }
+        });
+    }
+
+    public void removeCallAddedEvent() {
+        callAddedEventConsumer = null;
+        removeSigHandler(CallAdded.class, remoteObject, callAddedEventHandler);
+    }
+
     public void onCallRemoved(Consumer<String> handler) {
-        callRemovedHandler = onSignal(CallRemoved.class, remoteObject, callRemovedHandler, s -> handleCallRemoved(handler, s));
+        callRemovedConsumer = handler;
+        callRemovedHandler = onSignal(CallRemoved.class, remoteObject, callRemovedHandler, s -> {
+            knownCalls.remove(s.getCallPath().getPath());
+            handleCallRemoved(handler, s);
+        });
     }
 
     public void removeCallRemoved() throws RuntimeException {
+        callRemovedConsumer = null;
         removeSigHandler(CallRemoved.class, remoteObject, callRemovedHandler);
     }
 
+    /**
+     * Returns the calls added as a stream any number of subscribers may share, unlike
+     * {@link #onCallAdded}, which takes a single handler.
+     */
+    public synchronized Flow.Publisher<Map.Entry<String, Map<String, Object>>> callAddedEvents() {
+        if (callAddedPublisher == null) {
+            callAddedPublisher = newSignalPublisher("call added", CallAdded.class, remoteObject, (s, sink) -> {
+                knownCalls.add(s.getCallPath().getPath());
+                handleCallAdded(sink, s);
+            });
+        }
+        return callAddedPublisher;
+    }
+
+    /**
+     * Returns the paths of the calls removed as a stream any number of subscribers may share,
+     * unlike {@link #onCallRemoved}, which takes a single handler.
+     */
+    public synchronized Flow.Publisher<String> callRemovedEvents() {
+        if (callRemovedPublisher == null) {
+            callRemovedPublisher = newSignalPublisher("call removed", CallRemoved.class, remoteObject, (s, sink) -> {
+                knownCalls.remove(s.getCallPath().getPath());
+                handleCallRemoved(sink, s);
+            });
+        }
+        return callRemovedPublisher;
+    }
+
+    /**
+     * Brings this manager up to date after oFono restarted: the cached properties are dropped,
+     * the listeners registered again, and the calls added or removed meanwhile are reported to
+     * them as if their signals had been received. The calls compared against are the ones last
+     * listed or signalled by this manager.
+     */
+    void resync() {
+        invalidateProperties();
+        resubscribe();
+        final Set<String> previous = Set.copyOf(knownCalls);
+        final Map<String, Map<String, Object>> current = getCallProperties();
+        final Consumer<String> removed = callRemovedConsumer;
+        final SignalPublisher<String> removedPublisher;
+        final SignalPublisher<Map.Entry<String, Map<String, Object>>> addedPublisher;
+        synchronized (this) {
+            removedPublisher = callRemovedPublisher;
+            addedPublisher = callAddedPublisher;
+        }
+        previous.stream()
+            .filter(path -> !current.containsKey(path))
+            .forEach(path -> {
+                voiceCalls.evict(path);
+                if (removed != null) {
+                    removed.accept(path);
+                }
+                if (removedPublisher != null) {
+                    removedPublisher.publish(path);
+                }
+            });
+        final Consumer<Map.Entry<String, Map<String, Object>>> added = callAddedConsumer;
+        current.entrySet().stream()
+            .filter(e -> !previous.contains(e.getKey()))
+            .forEach(e -> {
+                if (added != null) {
+                    added.accept(e);
+                }
+                if (addedPublisher != null) {
+                    addedPublisher.publish(e);
+                }
+            });
+    }
+
+    @Override
+    protected void resubscribe() {
+        super.resubscribe();
+        final Consumer<Map.Entry<String, Map<String, Object>>> added = callAddedConsumer;
+        if (added != null) {
+            onCallAdded(added);
+        }
+        final Consumer<String> removed = callRemovedConsumer;
+        if (removed != null) {
+            onCallRemoved(removed);
+        }
+        final Consumer<CallAddedEvent> addedEvent = callAddedEventConsumer;
+        if (addedEvent != null) {
+            onCallAddedEvent(addedEvent);
+        }
+        final SignalPublisher<?> addedPublisher;
+        final SignalPublisher<?> removedPublisher;
+        synchronized (this) {
+            addedPublisher = callAddedPublisher;
+            removedPublisher = callRemovedPublisher;
+        }
+        if (addedPublisher != null) {
+            addedPublisher.reregister();
+        }
+        if (removedPublisher != null) {
+            removedPublisher.reregister();
+        }
+    }
+
     public static enum HideCallerId {
         DEFAULT("default"),
         ENABLED("enabled"),
@@ -140,13 +386,37 @@ public class VoiceCallManager extends AbstractDBusSupport {
 
     }
 
-    private static void handleCallAdded(Consumer<Map.Entry<String, Map<String, Object>>> handler, CallAdded s) {
-        handler.accept(
-            Map.entry(
-                s.getCallPath().getPath(),
-                s.getProperties().entrySet().stream()
-                    .map(e -> Map.entry(e.getKey(), getValue(e.getValue())))
-                    .collect(toMap(Map.Entry::getKey, Map.Entry::getValue))));
+    static void handleCallAdded(Consumer<Map.Entry<String, Map<String, Object>>> handler, CallAdded s) {
+        final Map<String, Variant<?>> signalled = s.getProperties();
+        final Map<String, Object> properties = new HashMap<>(signalled.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Variant<?>> e : signalled.entrySet()) {
+            properties.put(e.getKey(), getValue(e.getValue()));
+        }
+        handler.accept(Map.entry(s.getCallPath().getPath(), properties));
+    }
+
+    private Map<String, Map<String, Object>> getCallProperties() {
+        return toCallProperties((List<?>) callMethodReturn(remoteObject, GET_CALLS));
+    }
+
+    /**
+     * Decodes a {@code GetCalls} reply. Read from the message, its paths are object paths and its
+     * values variants; decoded for a callback, they are plain paths and values.
+     */
+    private Map<String, Map<String, Object>> toCallProperties(List<?> reply) {
+        final Map<String, Map<String, Object>> calls = new LinkedHashMap<>();
+        if (reply != null) {
+            for (Object call : reply) {
+                final Object[] struct = (Object[]) call;
+                final Map<String, Object> properties = new LinkedHashMap<>();
+                ((Map<String, ?>) struct[1]).forEach((k, v) ->
+                    properties.put(k, v instanceof Variant<?> variant ? getValue(variant) : v));
+                calls.put(((DBusPath) struct[0]).getPath(), properties);
+            }
+        }
+        knownCalls.retainAll(calls.keySet());
+        knownCalls.addAll(calls.keySet());
+        return calls;
     }
 
     private static void handleCallRemoved(Consumer<String> handler, CallRemoved s) {
@@ -0,0 +1,121 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+
+/**
+ * Keeps a single {@link VoiceCall} per object path for as long as the call exists, as long as
+ * removed calls are evicted. An {@link #uncached} registry creates a new one every time instead.
+ */
+public class VoiceCallRegistry {
+
+    private volatile DBusConnection connection;
+    private final SignalDispatcher dispatcher;
+    private final boolean caching;
+    private final Map<String, VoiceCall> calls = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile CallerIdResolver callerIds = CallerIdResolver.NONE;
+
+    VoiceCallRegistry(DBusConnection connection) {
+        this(connection, SignalDispatcher.DIRECT);
+    }
+
+    VoiceCallRegistry(DBusConnection connection, SignalDispatcher dispatcher) {
+        this(connection, dispatcher, true);
+    }
+
+    private VoiceCallRegistry(DBusConnection connection, SignalDispatcher dispatcher, boolean caching) {
+        this.connection = connection;
+        this.dispatcher = dispatcher;
+        this.caching = caching;
+    }
+
+    /**
+     * For a single manager, which does not watch for removed calls: nothing would evict them.
+     */
+    static VoiceCallRegistry uncached(DBusConnection connection) {
+        return new VoiceCallRegistry(connection, SignalDispatcher.DIRECT, false);
+    }
+
+    public VoiceCall get(String path) {
+        if (!caching) {
+            return newVoiceCall(path);
+        }
+        final VoiceCall voiceCall = calls.get(path);
+        if (voiceCall != null) {
+            hits.increment();
+            return voiceCall;
+        }
+        return calls.computeIfAbsent(path, this::newVoiceCall);
+    }
+
+    VoiceCall get(String path, Map<String, Object> properties) {
+        final VoiceCall voiceCall = get(path);
+        voiceCall.seedProperties(properties);
+        return voiceCall;
+    }
+
+    /**
+     * Forgets a removed call and closes it, so that it stops tracking its properties.
+     */
+    public void evict(String path) {
+        final VoiceCall voiceCall = calls.remove(path);
+        if (voiceCall != null) {
+            evictions.increment();
+            voiceCall.close();
+        }
+    }
+
+    /**
+     * Forgets every call and creates the next ones on another connection, e.g. after a reconnect.
+     * Calls obtained before are left as they are.
+     */
+    void reset(DBusConnection connection) {
+        this.connection = connection;
+        calls.clear();
+    }
+
+    /**
+     * Evicts every call, e.g. when their service restarted.
+     */
+    void evictAll() {
+        calls.keySet().forEach(this::evict);
+    }
+
+    public CallerIdResolver getCallerIdResolver() {
+        return callerIds;
+    }
+
+    /**
+     * Names the callers in the snapshots of every call, including the calls already created.
+     */
+    void setCallerIdResolver(CallerIdResolver callerIds) {
+        this.callerIds = callerIds;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getLiveCount() {
+        return calls.size();
+    }
+
+    private VoiceCall newVoiceCall(String path) {
+        misses.increment();
+        return new VoiceCall(connection, path, dispatcher, number -> callerIds.resolve(number));
+    }
+
+}
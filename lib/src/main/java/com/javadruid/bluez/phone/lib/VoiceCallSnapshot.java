@@ -0,0 +1,76 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.javadruid.bluez.phone.lib.VoiceCall.EMERGENCY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.ICON;
+import static com.javadruid.bluez.phone.lib.VoiceCall.INCOMING_LINE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.INFORMATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.MULTIPARTY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.NAME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_HELD;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_MULTIPARTY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.START_TIME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+
+/**
+ * Immutable view of all the properties of a voice call, decoded from a single property map,
+ * with the name of the caller's contact when a {@link CallerIdResolver} knows the line.
+ * @see https://github.com/rilmodem/ofono/blob/master/doc/voicecall-api.txt
+ */
+public record VoiceCallSnapshot(
+        String path,
+        String lineIdentification,
+        Optional<String> incomingLine,
+        String name,
+        boolean multiparty,
+        VoiceCallState state,
+        Optional<Instant> startTime,
+        Optional<String> information,
+        Optional<Byte> icon,
+        boolean emergency,
+        boolean remoteHeld,
+        boolean remoteMultiparty,
+        Optional<String> contactName) {
+
+    public VoiceCallSnapshot(String path, String lineIdentification, Optional<String> incomingLine, String name,
+            boolean multiparty, VoiceCallState state, Optional<Instant> startTime, Optional<String> information,
+            Optional<Byte> icon, boolean emergency, boolean remoteHeld, boolean remoteMultiparty) {
+        this(path, lineIdentification, incomingLine, name, multiparty, state, startTime, information, icon,
+            emergency, remoteHeld, remoteMultiparty, Optional.empty());
+    }
+
+    public static VoiceCallSnapshot of(String path, Map<String, Object> properties) {
+        return of(path, properties, CallerIdResolver.NONE);
+    }
+
+    public static VoiceCallSnapshot of(String path, Map<String, Object> properties, CallerIdResolver callerIds) {
+        final String lineIdentification = (String) properties.getOrDefault(LINE_IDENTIFICATION, "");
+        return new VoiceCallSnapshot(
+            path,
+            lineIdentification,
+            Optional.ofNullable((String) properties.get(INCOMING_LINE)),
+            (String) properties.getOrDefault(NAME, ""),
+            getBoolean(properties, MULTIPARTY),
+            Optional.ofNullable((String) properties.get(STATE))
+                .map(VoiceCallState::get)
+                .orElse(null),
+            Optional.ofNullable((String) properties.get(START_TIME))
+                .flatMap(VoiceCall::parseStartTime),
+            Optional.ofNullable((String) properties.get(INFORMATION)),
+            Optional.ofNullable((Byte) properties.get(ICON)),
+            getBoolean(properties, EMERGENCY),
+            getBoolean(properties, REMOTE_HELD),
+            getBoolean(properties, REMOTE_MULTIPARTY),
+            callerIds.resolve(lineIdentification));
+    }
+
+    private static boolean getBoolean(Map<String, Object> properties, String name) {
+        return (Boolean) properties.getOrDefault(name, Boolean.FALSE);
+    }
+
+}
@@ -1,97 +1,539 @@
 package com.javadruid.bluez.phone.lib;
 
+import com.javadruid.bluez.phone.lib.DBusMetrics.Outcome;
+import com.javadruid.bluez.phone.lib.interfaces.AbstractPropertyChanged;
 import com.javadruid.bluez.phone.lib.interfaces.Manager;
+import com.javadruid.bluez.phone.lib.interfaces.Manager.ModemAdded;
+import com.javadruid.bluez.phone.lib.interfaces.Manager.ModemRemoved;
+import com.javadruid.bluez.phone.lib.interfaces.ManagerStub;
+import com.javadruid.bluez.phone.lib.interfaces.Modem;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
 import java.io.Closeable;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
-import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.ObjectPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBus.NameOwnerChanged;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.messages.Message;
 import org.freedesktop.dbus.types.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.lang.Boolean.FALSE;
+import static java.util.stream.Collectors.toMap;
 
 public class VoiceCalls implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(VoiceCalls.class);
+    private static final DBusMetrics metrics = DBusMetrics.getInstance();
+    private static final CallTimeouts timeouts = CallTimeouts.getInstance();
     private static final Variant<Boolean> VARIANT_FALSE = new Variant<>(FALSE);
     static final String GET_MODEMS = "GetModems";
+    static final String ONLINE = "Online";
 
-    private final DBusConnection conn;
-    private final Manager remoteObject;
+    private final SharedConnection.Lease lease;
+    private final SignalDispatcher dispatcher;
+    private volatile DBusConnection conn;
+    private volatile Manager remoteObject;
+    private final VoiceCallRegistry voiceCalls;
+    private final ModemRegistry modems = new ModemRegistry(this::voiceCallManager);
+    private final Object modemsLock = new Object();
+    // Runs the resynchronisations one at a time, off the signal handlers and without modemsLock
+    private final BusExecutor resyncs = new BusExecutor(Runnable::run);
+    private final Object resyncLock = new Object();
+    private volatile boolean modemsLoaded;
+    private boolean modemSignalsAdded;
+    private CallJournal journal;
+    private Closeable journalSubscription;
+    // Guarded by modemsLock, like the handlers below
+    private boolean closed;
+    private DBusSigHandler<CallRemoved> callRemovedHandler;
+    private DBusSigHandler<DisconnectReason> disconnectReasonHandler;
+    private DBusSigHandler<NameOwnerChanged> nameOwnerChangedHandler;
+    private DBusSigHandler<ModemAdded> modemAddedHandler;
+    private DBusSigHandler<ModemRemoved> modemRemovedHandler;
+    private DBusSigHandler<Modem.PropertyChanged> modemPropertyChangedHandler;
 
     public VoiceCalls() {
-        this(getConnection());
+        this(SignalDispatcher.DIRECT);
+    }
+
+    /**
+     * Uses a lease on the shared system bus connection, which is released by {@link #close()}.
+     * @param dispatcher dispatches the signals received by this object and the ones it creates
+     */
+    public VoiceCalls(SignalDispatcher dispatcher) {
+        this(SharedConnection.getSystem().acquire(), dispatcher);
+    }
+
+    /**
+     * Follows the leased connection across reconnects: the managers of the dropped connection
+     * are reported removed and the ones listed on the new connection added. The lease is
+     * released by {@link #close()}.
+     * @param dispatcher dispatches the signals received by this object and the ones it creates
+     */
+    public VoiceCalls(SharedConnection.Lease lease, SignalDispatcher dispatcher) {
+        this(lease.getConnection(), lease, dispatcher);
+        lease.onReconnect(this::reconnected);
     }
 
     VoiceCalls(DBusConnection conn) {
+        this(conn, SignalDispatcher.DIRECT);
+    }
+
+    VoiceCalls(DBusConnection conn, SignalDispatcher dispatcher) {
+        this(conn, null, dispatcher);
+    }
+
+    private VoiceCalls(DBusConnection conn, SharedConnection.Lease lease, SignalDispatcher dispatcher) {
+        this.lease = lease;
+        this.dispatcher = dispatcher;
+        voiceCalls = new VoiceCallRegistry(conn, dispatcher);
         try {
-            this.conn = conn;
-            remoteObject = conn.getRemoteObject(Ofono.BUS_NAME, "/", Manager.class);
-        } catch (DBusException ex) {
-            logger.error("Error initialising Voice Calls Manager", ex);
-            throw new RuntimeException(ex);
+            attach(conn);
+        } catch (RuntimeException ex) {
+            if (lease != null) {
+                lease.close();
+            }
+            throw ex;
         }
     }
 
+    /**
+     * Returns a manager for each online modem. The modems are listed once and then tracked
+     * through the oFono ModemAdded, ModemRemoved and Online change signals.
+     * @return the managers of the online modems
+     */
     public Stream<VoiceCallManager> getVoiceCallManagers() {
+        loadModems();
+        return modems.getVoiceCallManagers().stream();
+    }
+
+    /**
+     * Sets the handler notified whenever a modem comes online or is added while online.
+     * If the modems were not listed yet, the handler is also notified of the ones already online.
+     */
+    public void onVoiceCallManagerAdded(Consumer<VoiceCallManager> handler) {
+        modems.onAdded(handler);
+        loadModems();
+    }
+
+    public void removeVoiceCallManagerAdded() {
+        modems.onAdded(null);
+    }
+
+    /**
+     * Sets the handler notified whenever an online modem goes offline or is removed.
+     */
+    public void onVoiceCallManagerRemoved(Consumer<VoiceCallManager> handler) {
+        modems.onRemoved(handler);
+        loadModems();
+    }
+
+    public void removeVoiceCallManagerRemoved() {
+        modems.onRemoved(null);
+    }
+
+    /**
+     * Hangs up every call of every online modem, calling all the modems at once.
+     * @param timeout how long to wait for each modem
+     * @return the modems that failed or did not reply in time, as errors
+     */
+    public CompletableFuture<ModemResults<Void>> hangupAllAsync(Duration timeout) {
+        return forEachVoiceCallManager(VoiceCallManager.HANGUP_ALL, VoiceCallManager::hangupAllAsync, timeout);
+    }
+
+    public ModemResults<Void> hangupAll(Duration timeout) {
+        return hangupAllAsync(timeout).join();
+    }
+
+    /**
+     * Collects the calls of every online modem, calling all the modems at once.
+     * @param timeout how long to wait for each modem
+     * @return the calls of each modem, or the error of the ones that failed or did not reply in time
+     */
+    public CompletableFuture<ModemResults<List<VoiceCallSnapshot>>> getCallSnapshotsAsync(Duration timeout) {
+        return forEachVoiceCallManager(VoiceCallManager.GET_CALLS, VoiceCallManager::getCallSnapshotsAsync, timeout);
+    }
+
+    public ModemResults<List<VoiceCallSnapshot>> getCallSnapshots(Duration timeout) {
+        return getCallSnapshotsAsync(timeout).join();
+    }
+
+    /**
+     * Runs an async operation on every online modem at once, so that the whole takes about as
+     * long as the slowest modem. The returned future never fails because of a single modem:
+     * an operation that throws, fails or is still pending once the timeout passes is reported
+     * as that modem's error, the latter as a {@link DBusTimeoutException}, and is then cancelled.
+     * @param method names the operation in timeout errors
+     * @param timeout how long to wait for each modem
+     */
+    public <T> CompletableFuture<ModemResults<T>> forEachVoiceCallManager(String method,
+            Function<VoiceCallManager, CompletableFuture<T>> operation, Duration timeout) {
+        final List<VoiceCallManager> managers;
         try {
-            return getModems()
-                .map(m -> (List<Object[]>)m)
-                .flatMap(List::stream)
-                .map(o -> toMapEntry(o))
-                .filter(o -> isOnline(o))
-                .map(Map.Entry::getKey)
-                .map(DBusPath::getPath)
-                .map(this::voiceCallManager)
-                .filter(Objects::nonNull);
-        } catch (DBusException ex) {
-            logger.error("Error retrieving objects", ex);
-            throw new RuntimeException(ex);
+            managers = getVoiceCallManagers().toList();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
         }
+        final Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+        for (VoiceCallManager manager : managers) {
+            CompletableFuture<T> result;
+            try {
+                final CompletableFuture<T> call = operation.apply(manager);
+                // Cancelled ahead of the results being collected
+                result = call.copy()
+                    .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                    .whenComplete((value, ex) -> {
+                        if (ex instanceof TimeoutException) {
+                            call.cancel(false);
+                        }
+                    });
+            } catch (RuntimeException ex) {
+                result = CompletableFuture.failedFuture(ex);
+            }
+            pending.put(manager.getPath(), result);
+        }
+        return CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new))
+            .handle((ignored, failure) -> {
+                final Map<String, T> values = new LinkedHashMap<>();
+                final Map<String, Throwable> errors = new LinkedHashMap<>();
+                pending.forEach((path, result) -> result
+                    .thenAccept(value -> values.put(path, value))
+                    .exceptionally(ex -> {
+                        final Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                            ? ex.getCause() : ex;
+                        final Throwable error = cause instanceof TimeoutException
+                            ? new DBusTimeoutException(method, timeout) : cause;
+                        logger.warn("Error calling {} on {}", method, path, error);
+                        errors.put(path, error);
+                        return null;
+                    }));
+                return new ModemResults<>(values, errors);
+            });
     }
 
     public VoiceCall voiceCall(String path) {
-        return new VoiceCall(conn, path);
+        return voiceCalls.get(path);
+    }
+
+    /**
+     * Returns the call for a path, filling its property cache with values already known,
+     * such as the ones carried by {@code CallAdded}.
+     */
+    public VoiceCall voiceCall(String path, Map<String, Object> properties) {
+        return voiceCalls.get(path, properties);
+    }
+
+    /**
+     * Creates a DTMF sequencer on this connection. It should be closed when no longer needed.
+     * @param scheduler runs the script steps and times the pauses
+     */
+    public ToneSequencer newToneSequencer(ScheduledExecutorService scheduler) {
+        return new ToneSequencer(conn, dispatcher, scheduler);
+    }
+
+    /**
+     * Records the calls added and removed, call property changes and disconnect reasons seen on
+     * this connection in a journal, ahead of the dispatcher. The journal follows reconnects.
+     * @param journal the journal to write, or {@code null} to stop journaling
+     */
+    public void setJournal(CallJournal journal) {
+        synchronized (modemsLock) {
+            unsubscribeJournal();
+            this.journal = journal;
+            subscribeJournal();
+        }
+    }
+
+    /**
+     * Names the callers in the call snapshots of every modem, e.g. from an {@link AddressBook}.
+     * The resolver is preloaded, so that an address book starts indexing its file.
+     * @param callerIds the resolver, or {@link CallerIdResolver#NONE}
+     */
+    public void setCallerIdResolver(CallerIdResolver callerIds) {
+        Objects.requireNonNull(callerIds).preload();
+        voiceCalls.setCallerIdResolver(callerIds);
     }
 
+    public VoiceCallRegistry getVoiceCallRegistry() {
+        return voiceCalls;
+    }
+
+    /**
+     * Removes the signal handlers of this object, closes its managers and calls, which completes
+     * their event subscribers, and releases its lease or closes its connection. The shared
+     * connection may stay open for other leases.
+     */
     @Override
     public void close() throws IOException {
-        conn.close();
+        synchronized (modemsLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unsubscribeJournal();
+            removeSigHandler(CallRemoved.class, null, callRemovedHandler);
+            removeSigHandler(DisconnectReason.class, null, disconnectReasonHandler);
+            removeSigHandler(NameOwnerChanged.class, null, nameOwnerChangedHandler);
+            if (modemSignalsAdded) {
+                removeSigHandler(ModemAdded.class, remoteObject, modemAddedHandler);
+                removeSigHandler(ModemRemoved.class, remoteObject, modemRemovedHandler);
+                removeSigHandler(Modem.PropertyChanged.class, null, modemPropertyChangedHandler);
+                modemSignalsAdded = false;
+            }
+            voiceCalls.evictAll();
+            modems.getVoiceCallManagers().forEach(VoiceCallManager::close);
+        }
+        resyncs.close();
+        if (lease != null) {
+            lease.close();
+        } else {
+            conn.close();
+        }
     }
 
-    private static DBusConnection getConnection() {
+    private void attach(DBusConnection conn) {
         try {
-            return DBusConnection.getConnection(DBusConnection.DBusBusType.SYSTEM);
+            this.conn = conn;
+            remoteObject = conn.getRemoteObject(Ofono.BUS_NAME, "/", Manager.class);
+            metrics.countSignals(conn, CallRemoved.class);
+            callRemovedHandler = dispatcher.wrap(s -> voiceCalls.evict(s.getCallPath().getPath()));
+            conn.addSigHandler(CallRemoved.class, callRemovedHandler);
+            metrics.countSignals(conn, DisconnectReason.class);
+            disconnectReasonHandler = dispatcher.wrap(s -> voiceCalls.evict(s.getPath()));
+            conn.addSigHandler(DisconnectReason.class, disconnectReasonHandler);
+            // The bus reports every name change, filter them here as DBusMatchRule has no arg0
+            metrics.countSignals(conn, NameOwnerChanged.class, s -> Ofono.BUS_NAME.equals(s.name));
+            final DBusSigHandler<NameOwnerChanged> ofonoOwnerChanged = dispatcher.wrap(this::handleNameOwnerChanged);
+            nameOwnerChangedHandler = s -> {
+                if (Ofono.BUS_NAME.equals(s.name)) {
+                    ofonoOwnerChanged.handle(s);
+                }
+            };
+            conn.addSigHandler(NameOwnerChanged.class, nameOwnerChangedHandler);
         } catch (DBusException ex) {
-            logger.error("Error creating connection", ex);
+            logger.error("Error initialising Voice Calls Manager", ex);
             throw new RuntimeException(ex);
         }
     }
 
+    private void reconnected(DBusConnection opened) {
+        synchronized (modemsLock) {
+            if (closed) {
+                return;
+            }
+            voiceCalls.reset(opened);
+            attach(opened);
+            // The old subscription went with the dropped connection
+            journalSubscription = null;
+            subscribeJournal();
+            modemSignalsAdded = false;
+            if (modemsLoaded) {
+                modemsLoaded = false;
+                // Managers of the dropped connection are gone even if their modems come back
+                modems.reset(Map.of());
+                loadModems();
+            }
+        }
+    }
+
+    private void subscribeJournal() {
+        if (journal != null) {
+            try {
+                journalSubscription = journal.subscribe(conn);
+            } catch (DBusException ex) {
+                logger.error("Error subscribing the call journal", ex);
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    private void unsubscribeJournal() {
+        if (journalSubscription != null) {
+            try {
+                journalSubscription.close();
+            } catch (IOException ex) {
+                logger.warn("Error unsubscribing the call journal", ex);
+            }
+            journalSubscription = null;
+        }
+    }
+
+    private void loadModems() {
+        if (!modemsLoaded) {
+            synchronized (modemsLock) {
+                if (!modemsLoaded) {
+                    try {
+                        addModemSignals();
+                        modems.reset(getModemListing());
+                        modemsLoaded = true;
+                    } catch (DBusException ex) {
+                        logger.error("Error retrieving objects", ex);
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addModemSignals() throws DBusException {
+        if (!modemSignalsAdded) {
+            metrics.countSignals(conn, ModemAdded.class);
+            metrics.countSignals(conn, ModemRemoved.class);
+            metrics.countSignals(conn, Modem.PropertyChanged.class);
+            modemAddedHandler = dispatcher.wrap(
+                s -> modems.modemAdded(s.getModemPath().getPath(), isOnline(s.getProperties())));
+            conn.addSigHandler(ModemAdded.class, remoteObject, modemAddedHandler);
+            modemRemovedHandler = dispatcher.wrap(s -> modems.modemRemoved(s.getModemPath().getPath()));
+            conn.addSigHandler(ModemRemoved.class, remoteObject, modemRemovedHandler);
+            modemPropertyChangedHandler = dispatcher.wrap(this::handleModemPropertyChanged);
+            conn.addSigHandler(Modem.PropertyChanged.class, modemPropertyChangedHandler);
+            modemSignalsAdded = true;
+        }
+    }
+
+    private <T extends DBusSignal> void removeSigHandler(Class<T> type, DBusInterface object,
+            DBusSigHandler<T> handler) {
+        if (handler == null) {
+            return;
+        }
+        try {
+            if (object != null) {
+                conn.removeSigHandler(type, object, handler);
+            } else {
+                conn.removeSigHandler(type, handler);
+            }
+        } catch (DBusException | RuntimeException ex) {
+            logger.warn("Error removing {} handler", type.getSimpleName(), ex);
+        }
+    }
+
+    private void handleNameOwnerChanged(NameOwnerChanged s) {
+        if (s.newOwner.isEmpty()) {
+            logger.warn("{} stopped", Ofono.BUS_NAME);
+        } else {
+            logger.info("{} started", Ofono.BUS_NAME);
+            resyncs.run(this::resync).exceptionally(ex -> {
+                logger.error("Error resynchronising with {}", Ofono.BUS_NAME, ex);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Reconciles the modems and calls with a restarted oFono: one {@code GetModems} reports the
+     * managers added or removed meanwhile, then each remaining manager reconciles its calls.
+     * The bus calls are made without holding the modems, so that signals and readers go on.
+     */
+    void resync() {
+        synchronized (resyncLock) {
+            final DBusConnection listed;
+            final List<VoiceCallManager> before;
+            synchronized (modemsLock) {
+                voiceCalls.evictAll();
+                if (closed || !modemsLoaded) {
+                    return;
+                }
+                listed = conn;
+                before = modems.getVoiceCallManagers();
+            }
+            final Map<String, Boolean> listing;
+            try {
+                listing = getModemListing();
+            } catch (DBusException | RuntimeException ex) {
+                logger.error("Error resynchronising modems", ex);
+                synchronized (modemsLock) {
+                    if (conn == listed) {
+                        modemsLoaded = false;
+                    }
+                }
+                return;
+            }
+            final List<VoiceCallManager> after;
+            synchronized (modemsLock) {
+                // A reconnect meanwhile listed the modems afresh
+                if (closed || !modemsLoaded || conn != listed) {
+                    return;
+                }
+                modems.reset(listing);
+                after = modems.getVoiceCallManagers();
+            }
+            after.stream()
+                .filter(before::contains)
+                .forEach(m -> {
+                    try {
+                        m.resync();
+                    } catch (RuntimeException ex) {
+                        logger.error("Error resynchronising calls of {}", m.getPath(), ex);
+                    }
+                });
+        }
+    }
+
+    private void handleModemPropertyChanged(AbstractPropertyChanged s) {
+        if (ONLINE.equals(s.getName())) {
+            modems.onlineChanged(s.getPath(), (boolean) s.getValue().getValue());
+        }
+    }
+
+    Map<String, Boolean> getModemListing() throws DBusException {
+        return getModems()
+            .map(m -> (List<Object[]>)m)
+            .flatMap(List::stream)
+            .map(o -> toMapEntry(o))
+            .collect(toMap(e -> e.getKey().getPath(), e -> isOnline(e.getValue()), (a, b) -> b, LinkedHashMap::new));
+    }
+
     private static Map.Entry<ObjectPath, Map<String, Variant<?>>>  toMapEntry(Object[] o) {
         return Map.entry((ObjectPath)o[0], (Map<String, Variant<?>>)o[1]);
     }
 
-    private static boolean isOnline(Map.Entry<ObjectPath, Map<String, Variant<?>>> e) {
-        return (boolean) e.getValue().getOrDefault("Online", VARIANT_FALSE).getValue();
+    private static boolean isOnline(Map<String, Variant<?>> properties) {
+        return (boolean) properties.getOrDefault(ONLINE, VARIANT_FALSE).getValue();
     }
 
     private Stream<Object> getModems() throws DBusException {
-    return Arrays.stream(conn.callMethodAsync(remoteObject, GET_MODEMS)
-            .getCall()
-            .getReply()
-            .getParameters());
+        final Optional<Duration> timeout = timeouts.get(GET_MODEMS);
+        final long start = System.nanoTime();
+        final Message reply;
+        try {
+            reply = AbstractDBusSupport.getReply(ManagerStub.GET_MODEMS.call(conn, Ofono.BUS_NAME, "/"), timeout);
+        } catch (RuntimeException ex) {
+            recordCall(GET_MODEMS, start, Outcome.ERROR);
+            throw ex;
+        }
+        recordCall(GET_MODEMS, start, AbstractDBusSupport.outcome(reply));
+        if (reply == null && timeout.isPresent()) {
+            throw new DBusTimeoutException(GET_MODEMS, timeout.get());
+        }
+        return Arrays.stream(reply.getParameters());
+    }
+
+    private static void recordCall(String methodName, long start, Outcome outcome) {
+        metrics.recordCall(VoiceCalls.class.getSimpleName(), methodName, System.nanoTime() - start, outcome);
     }
 
     private VoiceCallManager voiceCallManager(String string) {
-        return new VoiceCallManager(conn, string);
+        return new VoiceCallManager(conn, string, voiceCalls, dispatcher);
     }
 }
@@ -0,0 +1,30 @@
+package com.javadruid.bluez.phone.lib.interfaces;
+
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.messages.DBusSignal;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * Base class of the {@code PropertyChanged(string, variant)} signal emitted by the oFono interfaces.
+ * Subclasses must be declared inside the interface that emits them.
+ */
+public abstract class AbstractPropertyChanged extends DBusSignal {
+
+    private final String name;
+    private final Variant<?> value;
+
+    protected AbstractPropertyChanged(String path, String name, Variant<?> value) throws DBusException {
+        super(path, name, value);
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Variant<?> getValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.javadruid.bluez.phone.lib.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a D-Bus interface for which the build generates an {@code <Interface>Stub} of
+ * {@link StubMethod}s.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateStub {
+}
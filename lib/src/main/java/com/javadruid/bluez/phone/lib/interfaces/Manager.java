@@ -1,19 +1,58 @@
 package com.javadruid.bluez.phone.lib.interfaces;
 
-import org.freedesktop.dbus.DBusMap;
-import org.freedesktop.dbus.ObjectPath;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.annotations.DBusInterfaceName;
+import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.messages.DBusSignal;
 import org.freedesktop.dbus.types.Variant;
 
 /**
  * @see https://github.com/rilmodem/ofono/blob/master/doc/manager-api.txt
  */
+@GenerateStub
 @DBusInterfaceName(Manager.DBUS_INTERFACE_NAME)
 public interface Manager extends DBusInterface {
 
     static final String DBUS_INTERFACE_NAME = "org.ofono.Manager";
 
-    DBusMap<ObjectPath, DBusMap<String, Variant<?>>> GetModems();
+    List<PathProperties> GetModems();
+
+    public static class ModemAdded extends DBusSignal {
+        private final Map<String, Variant<?>> properties;
+        private final DBusPath modemPath;
+
+        public ModemAdded(String path, DBusPath modemPath, Map<String, Variant<?>> properties) throws DBusException {
+            super(path, modemPath, properties);
+            this.properties = properties;
+            this.modemPath = modemPath;
+        }
+
+        public Map<String, Variant<?>> getProperties() {
+            return Collections.unmodifiableMap(properties);
+        }
+
+        public DBusPath getModemPath() {
+            return modemPath;
+        }
+
+    }
+
+    public static class ModemRemoved extends DBusSignal {
+        private final DBusPath modemPath;
+
+        public ModemRemoved(String path, DBusPath modemPath) throws DBusException {
+            super(path, modemPath);
+            this.modemPath = modemPath;
+        }
+
+        public DBusPath getModemPath() {
+            return modemPath;
+        }
+
+    }
 
 }
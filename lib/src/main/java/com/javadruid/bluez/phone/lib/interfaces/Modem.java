@@ -0,0 +1,29 @@
+package com.javadruid.bluez.phone.lib.interfaces;
+
+import java.util.Map;
+import org.freedesktop.dbus.annotations.DBusInterfaceName;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * @see https://github.com/rilmodem/ofono/blob/master/doc/modem-api.txt
+ */
+@DBusInterfaceName(Modem.DBUS_INTERFACE_NAME)
+public interface Modem extends DBusInterface {
+
+    static final String DBUS_INTERFACE_NAME = "org.ofono.Modem";
+
+    Map<String, Variant<?>> GetProperties();
+
+    void SetProperty(String property, Variant<?> value);
+
+    public static class PropertyChanged extends AbstractPropertyChanged {
+
+        public PropertyChanged(String path, String name, Variant<?> value) throws DBusException {
+            super(path, name, value);
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.javadruid.bluez.phone.lib.interfaces;
+
+import java.util.Collections;
+import java.util.Map;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.Struct;
+import org.freedesktop.dbus.annotations.Position;
+import org.freedesktop.dbus.types.Variant;
+
+/**
+ * An object path with its properties, the {@code (oa{sv})} element of the
+ * {@code GetModems} and {@code GetCalls} replies.
+ */
+public class PathProperties extends Struct {
+
+    @Position(0)
+    private final ObjectPath path;
+    @Position(1)
+    private final Map<String, Variant<?>> properties;
+
+    public PathProperties(ObjectPath path, Map<String, Variant<?>> properties) {
+        this.path = path;
+        this.properties = properties;
+    }
+
+    public ObjectPath getPath() {
+        return path;
+    }
+
+    public Map<String, Variant<?>> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+}
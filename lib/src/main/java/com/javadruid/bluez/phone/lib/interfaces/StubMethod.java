@@ -0,0 +1,90 @@
+package com.javadruid.bluez.phone.lib.interfaces;
+
+import java.lang.reflect.Method;
+import org.freedesktop.dbus.connections.AbstractConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+
+/**
+ * A D-Bus method with its signature computed at build time. Sending a call builds the message
+ * directly, where a proxy call looks the method up and derives the signature from its generic
+ * parameter types every time. The messages are the same as the ones sent through a proxy.
+ */
+public final class StubMethod {
+
+    private final String interfaceName;
+    private final String member;
+    private final String signature;
+    private final int parameterCount;
+    private final Method method;
+
+    /**
+     * @param signature the signature of the parameters, empty if there are none
+     * @param parameterTypes find the interface method, whose return type decodes callback replies
+     */
+    public StubMethod(Class<? extends DBusInterface> type, String interfaceName, String member, String signature,
+            Class<?>... parameterTypes) {
+        this.interfaceName = interfaceName;
+        this.member = member;
+        this.signature = signature.isEmpty() ? null : signature;
+        this.parameterCount = parameterTypes.length;
+        try {
+            this.method = type.getMethod(member, parameterTypes);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Stub out of date with " + type.getName(), ex);
+        }
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public String getSignature() {
+        return signature == null ? "" : signature;
+    }
+
+    /**
+     * Sends a call, whose reply is then read from the returned call.
+     * @throws DBusExecutionException if the parameters do not match the signature or the
+     * connection is closed
+     */
+    public MethodCall call(AbstractConnection connection, String busName, String objectPath, Object... parameters) {
+        final MethodCall call = newCall(busName, objectPath, Message.Flags.ASYNC, parameters);
+        connection.sendMessage(call);
+        return call;
+    }
+
+    /**
+     * Sends a call whose reply, decoded with the interface method's return type, or error is
+     * handed to the handler.
+     * @throws DBusExecutionException if the parameters do not match the signature or the
+     * connection is closed
+     */
+    public void callWithCallback(AbstractConnection connection, String busName, String objectPath,
+            CallbackHandler<?> handler, Object... parameters) {
+        final MethodCall call = newCall(busName, objectPath, (byte) 0, parameters);
+        connection.queueCallback(call, method, handler);
+        connection.sendMessage(call);
+    }
+
+    private MethodCall newCall(String busName, String objectPath, byte flags, Object... parameters) {
+        if (parameters.length != parameterCount) {
+            throw new DBusExecutionException("Wrong number of parameters for " + this + ": " + parameters.length);
+        }
+        try {
+            return new MethodCall(busName, objectPath, interfaceName, member, flags, signature, parameters);
+        } catch (DBusException ex) {
+            throw new DBusExecutionException("Failed to construct outgoing method call: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return interfaceName + "." + member + "(" + getSignature() + ")";
+    }
+
+}
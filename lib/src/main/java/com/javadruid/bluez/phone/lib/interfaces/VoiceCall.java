@@ -1,6 +1,6 @@
 package com.javadruid.bluez.phone.lib.interfaces;
 
-import org.freedesktop.dbus.DBusMap;
+import java.util.Map;
 import org.freedesktop.dbus.annotations.DBusInterfaceName;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.freedesktop.dbus.interfaces.DBusInterface;
@@ -10,6 +10,7 @@ import org.freedesktop.dbus.types.Variant;
 /**
  * @see https://github.com/rilmodem/ofono/blob/master/doc/voicecall-api.txt
  */
+@GenerateStub
 @DBusInterfaceName(VoiceCall.DBUS_INTERFACE_NAME)
 public interface VoiceCall extends DBusInterface {
 
@@ -20,7 +21,7 @@ public interface VoiceCall extends DBusInterface {
 
     void Deflect(String number);
 
-    DBusMap<String, Variant<?>> GetProperties();
+    Map<String, Variant<?>> GetProperties();
 
     void Hangup();
 
@@ -62,4 +63,11 @@ public interface VoiceCall extends DBusInterface {
         }
     }
 
+    public static class PropertyChanged extends AbstractPropertyChanged {
+
+        public PropertyChanged(String path, String name, Variant<?> value) throws DBusException {
+            super(path, name, value);
+        }
+    }
+
 }
@@ -1,8 +1,8 @@
 package com.javadruid.bluez.phone.lib.interfaces;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import org.freedesktop.dbus.DBusMap;
 import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.ObjectPath;
 import org.freedesktop.dbus.annotations.DBusInterfaceName;
@@ -13,6 +13,7 @@ import org.freedesktop.dbus.types.Variant;
 /**
  * @see https://github.com/rilmodem/ofono/blob/master/doc/voicecallmanager-api.txt
  */
+@GenerateStub
 @DBusInterfaceName(VoiceCallManager.DBUS_INTERFACE_NAME)
 public interface VoiceCallManager extends DBusInterface {
 
@@ -26,9 +27,9 @@ public interface VoiceCallManager extends DBusInterface {
 
     void DialMemory(int memory_location);
 
-    DBusMap<ObjectPath, Variant<?>> GetCalls();
+    List<PathProperties> GetCalls();
 
-    DBusMap<String, Variant<?>> GetProperties();
+    Map<String, Variant<?>> GetProperties();
 
     void HangupAll();
 
@@ -53,7 +54,7 @@ public interface VoiceCallManager extends DBusInterface {
         private final DBusPath callPath;
 
         public CallAdded(String path, DBusPath callPath, Map<String, Variant<?>> properties) throws DBusException {
-            super(path, callPath);
+            super(path, callPath, properties);
             this.properties = properties;
             this.callPath = callPath;
         }
@@ -62,6 +63,13 @@ public interface VoiceCallManager extends DBusInterface {
             return Collections.unmodifiableMap(properties);
         }
 
+        /**
+         * @return one of the properties, without the view {@link #getProperties()} creates
+         */
+        public Variant<?> getProperty(String name) {
+            return properties.get(name);
+        }
+
         public DBusPath getCallPath() {
             return callPath;
         }
@@ -82,4 +90,12 @@ public interface VoiceCallManager extends DBusInterface {
 
     }
 
+    public static class PropertyChanged extends AbstractPropertyChanged {
+
+        public PropertyChanged(String path, String name, Variant<?> value) throws DBusException {
+            super(path, name, value);
+        }
+
+    }
+
 }
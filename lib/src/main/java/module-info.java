@@ -1,5 +1,6 @@
 module com.javadruid.bluez.phone.lib {
     requires java.base;
+    requires java.management;
     requires org.freedesktop.dbus;
 
     exports com.javadruid.bluez.phone.lib.interfaces;
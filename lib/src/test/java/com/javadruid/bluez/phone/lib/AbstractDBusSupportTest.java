@@ -1,13 +1,23 @@
 package com.javadruid.bluez.phone.lib;
 
+import com.javadruid.bluez.phone.lib.DBusMetrics.Outcome;
 import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.freedesktop.dbus.DBusAsyncReply;
 import org.freedesktop.dbus.DBusMap;
+import org.freedesktop.dbus.DBusMatchRule;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Properties;
@@ -16,8 +26,11 @@ import org.freedesktop.dbus.messages.Message;
 import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.UInt32;
 import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -31,7 +44,9 @@ import static com.javadruid.bluez.phone.lib.OfonoTests.KEY;
 import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
 import static java.util.stream.Collectors.toMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,8 +55,10 @@ import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +78,17 @@ public class AbstractDBusSupportTest {
     @Mock
     private Message message;
 
+    @AfterEach
+    public void tearDown() {
+        CallTimeouts.getInstance().clear();
+    }
+
+    @BeforeEach
+    public void setUp() throws DBusException {
+        // The signal counters, registered once per signal class
+        lenient().doNothing().when(connection).addSigHandler(any(DBusMatchRule.class), any());
+    }
+
     @Test
     public void testConstructorException() throws DBusException {
         when(connection.getRemoteObject(BUS_NAME, PATH, DBusInterface.class))
@@ -108,6 +136,210 @@ public class AbstractDBusSupportTest {
         assertEquals(value, result);
     }
 
+    @Test
+    public void testGetSinglePropertyCached() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value")));
+        final AbstractDBusSupport instance = newTestInstance();
+
+        instance.getSingleProperty(KEY, String.class);
+        instance.getSingleProperty(KEY, String.class);
+        final List<String> keys = instance.getProperties().map(Map.Entry::getKey).toList();
+
+        assertEquals(List.of(KEY), keys);
+        verify(connection, times(1)).callMethodAsync(remoteObject, GET_PROPERTIES);
+        verify(connection, times(1)).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+    }
+
+    @Test
+    public void testGetSinglePropertyMissing() throws DBusException {
+        mockGetProperties(Map.of());
+        final AbstractDBusSupport instance = newTestInstance();
+
+        assertTrue(instance.getSingleProperty(KEY, String.class).isEmpty());
+    }
+
+    @Test
+    public void testGetSinglePropertyError() throws DBusException {
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenReturn(new org.freedesktop.dbus.errors.Error());
+        final AbstractDBusSupport instance = newTestInstance();
+
+        assertTrue(instance.getSingleProperty(KEY, String.class).isEmpty());
+        assertTrue(instance.getSingleProperty(KEY, String.class).isEmpty());
+        verify(connection, times(2)).callMethodAsync(remoteObject, GET_PROPERTIES);
+    }
+
+    @Test
+    public void testPropertyCacheUpdatedFromSignal() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value"), "removed", new Variant<>("old")));
+        final AbstractDBusSupport instance = newTestInstance();
+        final ArgumentCaptor<DBusSigHandler<PropertiesChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+
+        instance.getSingleProperty(KEY, String.class);
+        verify(connection).addSigHandler(same(PropertiesChanged.class), eq(properties), captor.capture());
+        captor.getValue().handle(new PropertiesChanged(
+            PATH, INTERFACE, Map.of(KEY, new Variant<>("newValue")), List.of("removed")));
+
+        assertEquals("newValue", instance.getSingleProperty(KEY, String.class).get());
+        assertTrue(instance.getSingleProperty("removed", String.class).isEmpty());
+        verify(connection, times(1)).callMethodAsync(remoteObject, GET_PROPERTIES);
+    }
+
+    @Test
+    public void testPropertyCacheUpdatedDuringRefresh() throws DBusException {
+        final List<DBusSigHandler<PropertiesChanged>> handlers = new ArrayList<>();
+        doAnswer(i -> handlers.add(i.getArgument(2)))
+            .when(connection).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenAnswer(i -> {
+            // Signalled after the reply was sent, handled before it is read
+            handlers.get(0).handle(new PropertiesChanged(
+                PATH, INTERFACE, Map.of(KEY, new Variant<>("newValue")), List.of("removed")));
+            return message;
+        });
+        when(message.getParameters()).thenReturn(new Object[]{
+            Map.of(KEY, new Variant<>("value"), "removed", new Variant<>("old"))});
+        final AbstractDBusSupport instance = newTestInstance();
+
+        assertEquals("newValue", instance.getSingleProperty(KEY, String.class).get());
+        assertTrue(instance.getSingleProperty("removed", String.class).isEmpty());
+    }
+
+    @Test
+    public void testPropertyCacheNotDispatched() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value")));
+        when(connection.getRemoteObject(BUS_NAME, PATH, DBusInterface.class)).thenReturn(remoteObject);
+        when(connection.getRemoteObject(BUS_NAME, PATH, Properties.class)).thenReturn(properties);
+        // Never runs what it is given, as if every signal were dropped
+        final SignalDispatcher dispatcher = new SignalDispatcher(task -> { }, 1,
+            SignalDispatcher.OverflowPolicy.DROP_OLDEST);
+        final AbstractDBusSupport instance = new TestDBusSupport(connection, dispatcher);
+        final ArgumentCaptor<DBusSigHandler<PropertiesChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+
+        instance.getSingleProperty(KEY, String.class);
+        verify(connection).addSigHandler(same(PropertiesChanged.class), eq(properties), captor.capture());
+        captor.getValue().handle(new PropertiesChanged(PATH, INTERFACE, Map.of(KEY, new Variant<>("newValue")),
+            List.of()));
+
+        assertEquals("newValue", instance.getSingleProperty(KEY, String.class).get());
+    }
+
+    @Test
+    public void testGetPropertiesAsyncDuringRefresh() throws Exception {
+        final CountDownLatch replying = new CountDownLatch(1);
+        final CountDownLatch reply = new CountDownLatch(1);
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenAnswer(i -> {
+            replying.countDown();
+            reply.await();
+            return message;
+        });
+        when(message.getParameters()).thenReturn(new Object[]{Map.of(KEY, new Variant<>("new"))});
+        final AbstractDBusSupport instance = newTestInstance();
+        instance.seedProperties(Map.of(KEY, "old"));
+
+        final CompletableFuture<Void> refresh = CompletableFuture.runAsync(instance::refreshProperties);
+        replying.await();
+        final CompletableFuture<Map<String, Object>> result;
+        try {
+            // Would time out if it waited for the refresh
+            result = CompletableFuture.supplyAsync(instance::getPropertiesAsync).get(5, TimeUnit.SECONDS);
+        } finally {
+            reply.countDown();
+        }
+        refresh.get();
+
+        assertEquals(Map.of(KEY, "old"), result.getNow(null));
+        assertEquals("new", instance.getSingleProperty(KEY, String.class).get());
+    }
+
+    @Test
+    public void testGetSinglePropertyDuringRefresh() throws Exception {
+        final CountDownLatch replying = new CountDownLatch(1);
+        final CountDownLatch reply = new CountDownLatch(1);
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenAnswer(i -> {
+            replying.countDown();
+            reply.await();
+            return message;
+        });
+        when(message.getParameters()).thenReturn(new Object[]{Map.of(KEY, new Variant<>("new"))});
+        final AbstractDBusSupport instance = newTestInstance();
+        instance.seedProperties(Map.of(KEY, "old"));
+
+        final CompletableFuture<Void> refresh = CompletableFuture.runAsync(instance::refreshProperties);
+        replying.await();
+        final Optional<String> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> instance.getSingleProperty(KEY, String.class))
+                .get(5, TimeUnit.SECONDS);
+        } finally {
+            reply.countDown();
+        }
+        refresh.get();
+
+        assertEquals(Optional.of("old"), result);
+        assertEquals("new", instance.getSingleProperty(KEY, String.class).get());
+    }
+
+    @Test
+    public void testRefreshPropertiesErrorKeepsCache() throws DBusException {
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenReturn(null);
+        final AbstractDBusSupport instance = newTestInstance();
+        instance.seedProperties(Map.of(KEY, "old"));
+
+        instance.refreshProperties();
+
+        assertEquals("old", instance.getSingleProperty(KEY, String.class).get());
+    }
+
+    @Test
+    public void testRefreshProperties() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value")));
+        final AbstractDBusSupport instance = newTestInstance();
+
+        instance.getSingleProperty(KEY, String.class);
+        instance.refreshProperties();
+        instance.getSingleProperty(KEY, String.class);
+
+        verify(connection, times(2)).callMethodAsync(remoteObject, GET_PROPERTIES);
+        verify(connection, times(1)).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+    }
+
+    @Test
+    public void testInvalidateProperties() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value")));
+        final InOrder inOrder = inOrder(connection);
+        final AbstractDBusSupport instance = newTestInstance();
+
+        instance.getSingleProperty(KEY, String.class);
+        instance.invalidateProperties();
+        instance.getSingleProperty(KEY, String.class);
+
+        inOrder.verify(connection).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        inOrder.verify(connection).removeSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        inOrder.verify(connection).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        verify(connection, times(2)).callMethodAsync(remoteObject, GET_PROPERTIES);
+    }
+
+    @Test
+    public void testClose() throws DBusException {
+        mockGetProperties(Map.of(KEY, new Variant<>("value")));
+        final AbstractDBusSupport instance = newTestInstance();
+
+        instance.getSingleProperty(KEY, String.class);
+        instance.close();
+
+        assertTrue(instance.isClosed());
+        assertThrows(IllegalStateException.class, () -> instance.getSingleProperty(KEY, String.class));
+        assertThrows(IllegalStateException.class, instance::refreshProperties);
+        assertTrue(instance.getPropertiesAsync().isCompletedExceptionally());
+        verify(connection).removeSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        verify(connection, times(1)).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        verify(connection, times(1)).callMethodAsync(remoteObject, GET_PROPERTIES);
+    }
+
     @Test
     public void testOnPropertyChange() throws DBusException {
         final AbstractDBusSupport instance = newTestInstance();
@@ -129,6 +361,34 @@ public class AbstractDBusSupportTest {
         verify(handler).accept(Map.entry(propertyName, value));
     }
 
+    @Test
+    public void testOnPropertyEvent() throws DBusException {
+        final AbstractDBusSupport instance = newTestInstance();
+        final List<String> handled = new ArrayList<>();
+        final List<PropertyEvent> events = new ArrayList<>();
+        doAnswer(i -> {
+            final DBusSigHandler<PropertiesChanged> signalhandler = i.getArgument(2);
+            for (int n = 0; n < 2; n++) {
+                signalhandler.handle(new PropertiesChanged(
+                    PATH, INTERFACE, Map.of("propertyChanged", new Variant<>("value" + n)), List.of()));
+            }
+            return null;
+        })
+        .when(connection)
+            .addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+
+        instance.onPropertyEvent(e -> {
+            handled.add(e.getPath() + " " + e.getName() + "=" + e.getValue());
+            events.add(e);
+            assertNull(e.getProperty());
+        });
+
+        assertEquals(List.of(PATH + " propertyChanged=value0", PATH + " propertyChanged=value1"), handled);
+        // The event is reused, and cleared between signals
+        assertSame(events.get(0), events.get(1));
+        assertNull(events.get(0).getName());
+    }
+
     @Test
     public void testOnPropertyChangeException() throws DBusException {
         final AbstractDBusSupport instance = newTestInstance();
@@ -283,6 +543,95 @@ public class AbstractDBusSupportTest {
         assertNull(result);
     }
 
+    @Test
+    public void testCallMethodMetrics() throws DBusException {
+        final String methodName = "metricsMethod";
+        final DBusMetrics metrics = DBusMetrics.getInstance();
+        final String type = TestDBusSupport.class.getSimpleName();
+        final long calls = metrics.getLatency(methodName).getCount();
+        final long successes = metrics.getCount(type, Outcome.SUCCESS);
+        final long errors = metrics.getCount(type, Outcome.ERROR);
+        final long timeouts = metrics.getCount(type, Outcome.TIMEOUT);
+        mockObjectCall(remoteObject, methodName);
+        when(call.getReply()).thenReturn(message, new org.freedesktop.dbus.errors.Error(), null);
+        final AbstractDBusSupport instance = newTestInstance();
+
+        instance.callObjectMethod(methodName);
+        instance.callObjectMethod(methodName);
+        instance.callObjectMethod(methodName);
+
+        assertEquals(calls + 3, metrics.getLatency(methodName).getCount());
+        assertEquals(successes + 1, metrics.getCount(type, Outcome.SUCCESS));
+        assertEquals(errors + 1, metrics.getCount(type, Outcome.ERROR));
+        assertEquals(timeouts + 1, metrics.getCount(type, Outcome.TIMEOUT));
+    }
+
+    @Test
+    public void testSignalMetrics() throws DBusException {
+        final DBusMetrics metrics = DBusMetrics.getInstance();
+        final long received = metrics.getSignalCount(PropertiesChanged.class);
+        final AbstractDBusSupport instance = newTestInstance();
+        final ArgumentCaptor<DBusSigHandler<PropertiesChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        instance.onPropertyChange(e -> {});
+        instance.onPropertyEvent(e -> {});
+        // Counted once however many handlers receive it
+        verify(connection).addSigHandler(any(DBusMatchRule.class), captor.capture());
+
+        captor.getValue().handle(new PropertiesChanged(PATH, INTERFACE, Map.of(), List.of()));
+
+        assertEquals(received + 1, metrics.getSignalCount(PropertiesChanged.class));
+    }
+
+    @Test
+    public void testCallMethodDeadline() throws DBusException {
+        final String methodName = "deadlineMethod";
+        CallTimeouts.getInstance().set(methodName, Duration.ofMillis(50));
+        mockObjectCall(remoteObject, methodName);
+        final AbstractDBusSupport instance = newTestInstance();
+
+        final DBusTimeoutException result = assertThrows(DBusTimeoutException.class,
+            () -> instance.callObjectMethod(methodName));
+
+        verify(call).getReply(50);
+        assertEquals(methodName, result.getMethod());
+        assertEquals(Duration.ofMillis(50), result.getTimeout());
+    }
+
+    @Test
+    public void testCallMethodAsyncDeadline() throws DBusException {
+        final String methodName = "asyncDeadlineMethod";
+        CallTimeouts.getInstance().set(methodName, Duration.ofMillis(20));
+        final AbstractDBusSupport instance = newTestInstance();
+
+        final CompletableFuture<Void> result = instance.callObjectMethodAsync(methodName);
+
+        final CompletionException ex = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(DBusTimeoutException.class, ex.getCause());
+    }
+
+    @Test
+    public void testCallMethodAsyncCancel() throws DBusException {
+        final String methodName = "cancelledMethod";
+        final AbstractDBusSupport instance = newTestInstance();
+        final ArgumentCaptor<CallbackHandler<Void>> captor = ArgumentCaptor.forClass(CallbackHandler.class);
+
+        final CompletableFuture<Void> result = instance.callObjectMethodAsync(methodName);
+        verify(connection).callWithCallback(same(remoteObject), eq(methodName), captor.capture());
+        result.cancel(true);
+        captor.getValue().handle(null);
+
+        assertTrue(result.isCancelled());
+    }
+
+    @Test
+    public void testMapReplyCancel() {
+        final CompletableFuture<String> call = new CompletableFuture<>();
+
+        AbstractDBusSupport.mapReply(call, String::length).cancel(true);
+
+        assertTrue(call.isCancelled());
+    }
+
     @Test
     public void testGetValue() {
         final Object value = new Object();
@@ -328,6 +677,12 @@ public class AbstractDBusSupportTest {
         return new TestDBusSupport(connection);
     }
 
+    private void mockGetProperties(Map<String, Variant<?>> values) throws DBusException {
+        mockObjectCall(remoteObject, GET_PROPERTIES);
+        when(call.getReply()).thenReturn(message);
+        when(message.getParameters()).thenReturn(new Object[]{values});
+    }
+
     private void mockObjectCall(final String methodName, Object result, Type type,
             DBusInterface remoteObject, Object... parameters) throws DBusException {
         mockObjectCall(remoteObject, methodName, parameters);
@@ -348,6 +703,10 @@ public class AbstractDBusSupportTest {
         public TestDBusSupport(DBusConnection connection) {
             super(connection, PATH, BUS_NAME, DBusInterface.class);
         }
+
+        public TestDBusSupport(DBusConnection connection, SignalDispatcher dispatcher) {
+            super(connection, PATH, BUS_NAME, DBusInterface.class, null, dispatcher);
+        }
     }
 
 }
@@ -0,0 +1,216 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AddressBookTest {
+
+    private static final String ALICE = """
+        BEGIN:VCARD
+        VERSION:3.0
+        FN:Alice Example
+        TEL;TYPE=CELL:+44 7700 900123
+        TEL;TYPE=HOME:020 7946 0018
+        END:VCARD
+        """;
+    private static final String BOB = """
+        BEGIN:VCARD
+        VERSION:2.1
+        N:Example;Bob;;Dr.;
+        item1.TEL:tel:+33-1-23-45-67-89
+        END:VCARD
+        """;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testResolve() throws IOException {
+        final AddressBook instance = addressBook(ALICE + BOB);
+
+        assertEquals(Optional.of("Alice Example"), instance.resolve("+447700900123"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("07700 900123"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("00447700900123"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("7700900123"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("+44 20 7946 0018"));
+        assertEquals(Optional.of("Dr. Bob Example"), instance.resolve("0123456789"));
+        assertEquals(Optional.of("Dr. Bob Example"), instance.resolve("+33123456789,123"));
+        assertEquals(3, instance.size());
+    }
+
+    @Test
+    public void testResolveUnknown() throws IOException {
+        final AddressBook instance = addressBook(ALICE + BOB);
+
+        // Another country with the same national number
+        assertEquals(Optional.empty(), instance.resolve("+337700900123"));
+        // Too few digits in common
+        assertEquals(Optional.empty(), instance.resolve("900123"));
+        assertEquals(Optional.empty(), instance.resolve("+44 7800 900123"));
+        assertEquals(Optional.empty(), instance.resolve(""));
+        assertEquals(Optional.empty(), instance.resolve("withheld"));
+    }
+
+    @Test
+    public void testResolveShortNumber() throws IOException {
+        final AddressBook instance = addressBook("""
+            BEGIN:VCARD
+            FN:Voicemail
+            TEL:123
+            END:VCARD
+            BEGIN:VCARD
+            FN:Directory
+            TEL:118 118
+            END:VCARD
+            """);
+
+        assertEquals(Optional.of("Voicemail"), instance.resolve("123"));
+        assertEquals(Optional.of("Directory"), instance.resolve("118118"));
+        assertEquals(Optional.empty(), instance.resolve("0123"));
+        assertEquals(Optional.empty(), instance.resolve("23"));
+    }
+
+    @Test
+    public void testResolveLongestMatch() throws IOException {
+        final AddressBook instance = addressBook(ALICE + """
+            BEGIN:VCARD
+            FN:Office
+            TEL:+1 555 770 0900 123
+            END:VCARD
+            """);
+
+        assertEquals(Optional.of("Office"), instance.resolve("+15557700900123"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("+447700900123"));
+    }
+
+    @Test
+    public void testFoldedLines() throws IOException {
+        final AddressBook instance = addressBook("""
+            BEGIN:VCARD\r
+            FN:Carol\r
+              Example\r
+            TEL:+44 7700\r
+             900456\r
+            END:VCARD\r
+            """);
+
+        assertEquals(Optional.of("Carol Example"), instance.resolve("07700900456"));
+    }
+
+    @Test
+    public void testMissingFile() {
+        final AddressBook instance = new AddressBook(directory.resolve("missing.vcf"), Runnable::run, Duration.ZERO);
+
+        assertEquals(Optional.empty(), instance.resolve("+447700900123"));
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testResolveWhileLoading() throws IOException {
+        final List<Runnable> tasks = new ArrayList<>();
+        final AddressBook instance = new AddressBook(write(ALICE), tasks::add, Duration.ofHours(1));
+
+        instance.preload();
+        assertEquals(Optional.empty(), instance.resolve("07700900123"));
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertEquals(Optional.of("Alice Example"), instance.resolve("07700900123"));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        final Path file = write(ALICE);
+        final AddressBook instance = new AddressBook(file, Runnable::run, Duration.ZERO);
+        assertEquals(Optional.empty(), instance.resolve("0123456789"));
+        assertEquals(1, instance.getLastParsed());
+
+        write(ALICE + BOB);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(1)));
+        instance.resolve("");
+
+        assertEquals(Optional.of("Dr. Bob Example"), instance.resolve("0123456789"));
+        assertEquals(Optional.of("Alice Example"), instance.resolve("07700900123"));
+        assertEquals(1, instance.getLastParsed());
+    }
+
+    @Test
+    public void testReloadRemoved() throws IOException {
+        final Path file = write(ALICE);
+        final AddressBook instance = new AddressBook(file, Runnable::run, Duration.ZERO);
+        assertEquals(Optional.of("Alice Example"), instance.resolve("07700900123"));
+
+        Files.delete(file);
+        instance.resolve("");
+
+        assertEquals(Optional.empty(), instance.resolve("07700900123"));
+    }
+
+    @Test
+    public void testReloadNotDue() throws IOException {
+        final Path file = write(ALICE);
+        final AddressBook instance = new AddressBook(file, Runnable::run, Duration.ofHours(1));
+        instance.resolve("");
+        instance.resolve("");
+
+        write(BOB);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(1)));
+
+        assertEquals(Optional.empty(), instance.resolve("0123456789"));
+        instance.reload();
+        assertEquals(Optional.of("Dr. Bob Example"), instance.resolve("0123456789"));
+    }
+
+    @Test
+    public void testPack() {
+        assertEquals(AddressBook.pack("+44 7700 900123"), AddressBook.pack("0044-7700-900123"));
+        assertEquals(-1, AddressBook.pack("+"));
+        assertEquals(-1, AddressBook.pack("123456789012345678"));
+        assertEquals(AddressBook.pack("07700900123"), AddressBook.pack("07700900123p1234"));
+        assertTrue(AddressBook.match(AddressBook.pack("+447700900123"), AddressBook.pack("07700900123")) >= 10);
+    }
+
+    @Test
+    public void testLargeAddressBook() throws IOException {
+        final int count = 20_000;
+        final StringBuilder cards = new StringBuilder();
+        final String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            final String subscriber = Integer.toString(1_000_000 + i).substring(1);
+            cards.append("BEGIN:VCARD\nFN:Contact ").append(i).append("\nTEL:+44 7700 ").append(subscriber)
+                .append("\nEND:VCARD\n");
+            numbers[i] = "07700" + subscriber;
+        }
+        final AddressBook instance = addressBook(cards.toString());
+        assertEquals(count, instance.size());
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            assertEquals(Optional.of("Contact " + i), instance.resolve(numbers[i]));
+        }
+        // Generous enough for a slow build machine, see AddressBookBenchmark for the actual cost
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private AddressBook addressBook(String content) throws IOException {
+        return new AddressBook(write(content), Runnable::run, Duration.ofHours(1));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(directory.resolve("contacts.vcf"), content);
+    }
+
+}
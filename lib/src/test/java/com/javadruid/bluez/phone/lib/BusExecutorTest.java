@@ -0,0 +1,93 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BusExecutorTest {
+
+    private final List<Runnable> callerTasks = new ArrayList<>();
+    private final BusExecutor instance = new BusExecutor(this::submit);
+
+    @AfterEach
+    public void tearDown() {
+        instance.close();
+    }
+
+    @Test
+    public void testSupply() throws Exception {
+        final AtomicBoolean virtual = new AtomicBoolean();
+
+        final CompletableFuture<String> result = instance.supply(() -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            return "done";
+        });
+
+        runCallerTask();
+        assertTrue(virtual.get());
+        assertEquals("done", result.getNow(null));
+    }
+
+    @Test
+    public void testCompletesOnCallerExecutor() throws Exception {
+        final CompletableFuture<String> result = instance.supply(() -> "done");
+
+        Thread.sleep(50);
+        assertFalse(result.isDone());
+        runCallerTask();
+        assertTrue(result.isDone());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final DBusTimeoutException failure = new DBusTimeoutException("Dial", Duration.ofSeconds(1));
+
+        final CompletableFuture<Void> result = instance.run(() -> {
+            throw failure;
+        });
+
+        runCallerTask();
+        final ExecutionException ex = assertThrows(ExecutionException.class, result::get);
+        assertSame(failure, ex.getCause());
+    }
+
+    @Test
+    public void testClosed() {
+        instance.close();
+
+        final CompletableFuture<String> result = instance.supply(() -> "done");
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+    }
+
+    private synchronized void submit(Runnable task) {
+        callerTasks.add(task);
+        notifyAll();
+    }
+
+    private synchronized void runCallerTask() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (callerTasks.isEmpty()) {
+            final long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            assertTrue(left > 0, "No task for the caller executor");
+            wait(left);
+        }
+        callerTasks.remove(0).run();
+    }
+
+}
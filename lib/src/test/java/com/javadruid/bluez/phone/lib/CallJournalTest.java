@@ -0,0 +1,216 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.types.UInt32;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class CallJournalTest {
+
+    private static final String MODEM = "/modem";
+
+    @TempDir
+    private Path directory;
+    @Mock
+    private DBusConnection connection;
+
+    @Test
+    public void testReplay() throws Exception {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put(VoiceCall.STATE, "incoming");
+        properties.put(VoiceCall.LINE_IDENTIFICATION, "1234567890");
+        properties.put(VoiceCall.MULTIPARTY, false);
+        properties.put(VoiceCall.ICON, (byte) 3);
+        final Instant start = Instant.now().minusSeconds(1);
+        try (CallJournal instance = new CallJournal(directory)) {
+            instance.callAdded(MODEM, PATH, properties);
+            instance.propertyChanged(PATH, VoiceCall.STATE, "active");
+            instance.propertyChanged(PATH, "Strength", new UInt32(80));
+            instance.disconnectReason(PATH, "remote");
+            instance.callRemoved(MODEM, PATH);
+            assertEquals(9, instance.getRecordCount());
+        }
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<Object> events = new ArrayList<>();
+        final List<Instant> times = new ArrayList<>();
+        reader.onCallAdded(MODEM, e -> {
+            events.add(e);
+            times.add(reader.getEventTime());
+            reader.onPropertyChange(e.getKey(), events::add);
+        });
+        reader.onCallRemoved(MODEM, events::add);
+        reader.onDisconnectReason(null, events::add);
+
+        assertEquals(5, reader.replay());
+
+        assertEquals(List.of(
+            Map.entry(PATH, Map.of(VoiceCall.STATE, "incoming", VoiceCall.LINE_IDENTIFICATION, "1234567890",
+                VoiceCall.MULTIPARTY, false, VoiceCall.ICON, (byte) 3)),
+            Map.entry(VoiceCall.STATE, "active"),
+            Map.entry("Strength", 80L),
+            Map.entry(PATH, "remote"),
+            PATH), events);
+        assertTrue(Duration.between(start, times.get(0)).toSeconds() < 60);
+    }
+
+    @Test
+    public void testReplayUnregisteredPath() throws Exception {
+        try (CallJournal instance = new CallJournal(directory)) {
+            instance.propertyChanged(PATH, VoiceCall.STATE, "active");
+            instance.propertyChanged(PATH + "2", VoiceCall.STATE, null);
+        }
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<Map.Entry<String, Object>> events = new ArrayList<>();
+        reader.onPropertyChange(PATH + "2", events::add);
+
+        assertEquals(2, reader.replay());
+
+        assertEquals(1, events.size());
+        assertEquals(VoiceCall.STATE, events.get(0).getKey());
+        assertNull(events.get(0).getValue());
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        try (CallJournal instance = new CallJournal(directory, 8 * CallJournal.SLOT)) {
+            for (int i = 0; i < 10; i++) {
+                instance.propertyChanged(PATH, VoiceCall.STATE, i % 2 == 0 ? "active" : "held");
+            }
+        }
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<Object> values = new ArrayList<>();
+        reader.onPropertyChange(PATH, e -> values.add(e.getValue()));
+
+        assertEquals(10, reader.replay());
+
+        assertTrue(CallJournal.segments(directory).size() > 1);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 2 == 0 ? "active" : "held", values.get(i));
+        }
+    }
+
+    @Test
+    public void testReopenAppends() throws Exception {
+        try (CallJournal instance = new CallJournal(directory)) {
+            instance.callRemoved(MODEM, PATH);
+        }
+        try (CallJournal instance = new CallJournal(directory)) {
+            instance.callRemoved(MODEM, PATH + "2");
+        }
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<String> removed = new ArrayList<>();
+        reader.onCallRemoved(null, removed::add);
+
+        reader.replay();
+
+        assertEquals(2, CallJournal.segments(directory).size());
+        assertEquals(List.of(PATH, PATH + "2"), removed);
+    }
+
+    @Test
+    public void testEventTooLarge() throws Exception {
+        try (CallJournal instance = new CallJournal(directory, 4 * CallJournal.SLOT)) {
+            final Map<String, Object> properties = Map.of("A", 1, "B", 2, "C", 3);
+
+            assertThrows(IllegalArgumentException.class, () -> instance.callAdded(MODEM, PATH, properties));
+            assertThrows(IllegalArgumentException.class, () -> instance.propertyChanged(PATH, "Name", "x".repeat(200)));
+        }
+    }
+
+    @Test
+    public void testInvalidSegmentSize() {
+        assertThrows(IllegalArgumentException.class, () -> new CallJournal(directory, 100));
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+        final CallJournal instance = new CallJournal(directory);
+        instance.close();
+        instance.close();
+
+        assertThrows(IllegalStateException.class, () -> instance.callRemoved(MODEM, PATH));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubscribe() throws Exception {
+        final ArgumentCaptor<DBusSigHandler<CallAdded>> added = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> removed = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusSigHandler<PropertyChanged>> changed = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusSigHandler<DisconnectReason>> reason = ArgumentCaptor.forClass(DBusSigHandler.class);
+        try (CallJournal instance = new CallJournal(directory)) {
+            final Closeable subscription = instance.subscribe(connection);
+            verify(connection).addSigHandler(same(CallAdded.class), added.capture());
+            verify(connection).addSigHandler(same(CallRemoved.class), removed.capture());
+            verify(connection).addSigHandler(same(PropertyChanged.class), changed.capture());
+            verify(connection).addSigHandler(same(DisconnectReason.class), reason.capture());
+
+            added.getValue().handle(new CallAdded(MODEM, new ObjectPath("", PATH),
+                Map.of(VoiceCall.STATE, new Variant<>("incoming"))));
+            changed.getValue().handle(new PropertyChanged(PATH, VoiceCall.STATE, new Variant<>("active")));
+            reason.getValue().handle(new DisconnectReason(PATH, "local"));
+            removed.getValue().handle(new CallRemoved(MODEM, new DBusPath(PATH)));
+            subscription.close();
+
+            assertEquals(5, instance.getRecordCount());
+            verify(connection).removeSigHandler(CallAdded.class, added.getValue());
+            verify(connection).removeSigHandler(DisconnectReason.class, reason.getValue());
+        }
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<Object> events = new ArrayList<>();
+        reader.onCallAdded(null, events::add);
+        reader.onPropertyChange(null, events::add);
+
+        assertEquals(4, reader.replay());
+
+        assertEquals(List.of(
+            Map.entry(PATH, Map.of(VoiceCall.STATE, "incoming")),
+            Map.entry(VoiceCall.STATE, "active")), events);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubscribeClosedJournal() throws Exception {
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> removed = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final CallJournal instance = new CallJournal(directory);
+        instance.subscribe(connection);
+        verify(connection).addSigHandler(same(CallRemoved.class), removed.capture());
+        instance.close();
+
+        // Logged rather than thrown at the signal thread
+        removed.getValue().handle(new CallRemoved(MODEM, new DBusPath(PATH)));
+
+        assertEquals(0, instance.getRecordCount());
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CallTimeoutsTest {
+
+    private final CallTimeouts instance = CallTimeouts.getInstance();
+
+    @AfterEach
+    public void tearDown() {
+        instance.clear();
+    }
+
+    @Test
+    public void testNoDeadline() {
+        assertEquals(Optional.empty(), instance.get(VoiceCallManager.DIAL));
+    }
+
+    @Test
+    public void testDefault() {
+        instance.setDefault(Duration.ofSeconds(5));
+
+        assertEquals(Optional.of(Duration.ofSeconds(5)), instance.get(VoiceCallManager.DIAL));
+    }
+
+    @Test
+    public void testPerMethod() {
+        instance.setDefault(Duration.ofSeconds(5));
+        instance.set(VoiceCallManager.DIAL, Duration.ofSeconds(30));
+
+        assertEquals(Optional.of(Duration.ofSeconds(30)), instance.get(VoiceCallManager.DIAL));
+        assertEquals(Optional.of(Duration.ofSeconds(5)), instance.get(AbstractDBusSupport.GET_PROPERTIES));
+    }
+
+    @Test
+    public void testUnset() {
+        instance.setDefault(Duration.ofSeconds(5));
+        instance.set(VoiceCallManager.DIAL, Duration.ofSeconds(30));
+
+        instance.set(VoiceCallManager.DIAL, null);
+        assertEquals(Optional.of(Duration.ofSeconds(5)), instance.get(VoiceCallManager.DIAL));
+
+        instance.setDefault(null);
+        assertEquals(Optional.empty(), instance.get(VoiceCallManager.DIAL));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> instance.setDefault(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> instance.set(VoiceCallManager.DIAL, Duration.ofSeconds(-1)));
+    }
+
+}
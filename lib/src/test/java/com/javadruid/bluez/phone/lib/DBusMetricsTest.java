@@ -0,0 +1,87 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.DBusMetrics.Outcome;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.freedesktop.dbus.DBusMatchRule;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class DBusMetricsTest {
+
+    private final DBusMetrics instance = DBusMetrics.getInstance();
+
+    @Test
+    public void testRecordCall() {
+        final long successes = instance.getCount("DBusMetricsTest", Outcome.SUCCESS);
+
+        instance.recordCall("DBusMetricsTest", "recordCall", 2_000_000, Outcome.SUCCESS);
+        instance.recordCall("DBusMetricsTest", "recordCall", 4_000_000, Outcome.TIMEOUT);
+
+        assertEquals(successes + 1, instance.getCount("DBusMetricsTest", Outcome.SUCCESS));
+        assertTrue(instance.getTimeouts().get("DBusMetricsTest") >= 1);
+        assertTrue(instance.getMethodCalls().get("recordCall") >= 2);
+        assertTrue(instance.getMethodLatencyMax().get("recordCall") >= 4);
+    }
+
+    @Test
+    public void testCountSignals() throws DBusException {
+        final DBusConnection connection = mock(DBusConnection.class);
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final long received = instance.getSignalCount(CallRemoved.class);
+
+        instance.countSignals(connection, CallRemoved.class);
+        instance.countSignals(connection, CallRemoved.class);
+        verify(connection).addSigHandler(any(DBusMatchRule.class), captor.capture());
+        captor.getValue().handle(new CallRemoved(PATH, new ObjectPath("", PATH)));
+
+        assertEquals(received + 1, instance.getSignalCount(CallRemoved.class));
+        assertTrue(instance.getSignalsReceived().containsKey("VoiceCallManager.CallRemoved"));
+    }
+
+    @Test
+    public void testCountSignalsFiltered() throws DBusException {
+        final DBusConnection connection = mock(DBusConnection.class);
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final long received = instance.getSignalCount(CallRemoved.class);
+
+        instance.countSignals(connection, CallRemoved.class, s -> s.getCallPath().getPath().equals(PATH));
+        verify(connection).addSigHandler(any(DBusMatchRule.class), captor.capture());
+        captor.getValue().handle(new CallRemoved(PATH, new ObjectPath("", PATH + "2")));
+
+        assertEquals(received, instance.getSignalCount(CallRemoved.class));
+    }
+
+    @Test
+    public void testUnknownCounts() {
+        assertEquals(0, instance.getCount("unknown", Outcome.ERROR));
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        instance.recordCall("DBusMetricsTest", "registerMBean", 1_000, Outcome.SUCCESS);
+
+        instance.registerMBean();
+        instance.registerMBean();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final TabularData calls = (TabularData) server.getAttribute(new ObjectName(DBusMetrics.OBJECT_NAME), "MethodCalls");
+        assertNotNull(calls.get(new Object[]{"registerMBean"}));
+    }
+
+}
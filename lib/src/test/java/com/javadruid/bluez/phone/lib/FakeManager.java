@@ -0,0 +1,79 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.Manager;
+import com.javadruid.bluez.phone.lib.interfaces.PathProperties;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * The {@code org.ofono.Manager} of a {@link FakeOfono}.
+ */
+class FakeManager implements Manager {
+
+    private final FakeOfono ofono;
+    private final Map<String, FakeModem> modems = new LinkedHashMap<>();
+
+    FakeManager(FakeOfono ofono) {
+        this.ofono = ofono;
+    }
+
+    @Override
+    public synchronized List<PathProperties> GetModems() {
+        return modems.values().stream()
+            .map(m -> new PathProperties(new ObjectPath("", m.getObjectPath()), m.getProperties()))
+            .toList();
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String getObjectPath() {
+        return "/";
+    }
+
+    FakeModem addModem(String path, boolean online) {
+        final FakeModem modem = new FakeModem(ofono, path, online);
+        synchronized (this) {
+            modems.put(path, modem);
+        }
+        ofono.export(path, modem);
+        try {
+            ofono.send(new ModemAdded(getObjectPath(), new DBusPath(path), modem.getProperties()));
+        } catch (DBusException ex) {
+            throw new RuntimeException(ex);
+        }
+        return modem;
+    }
+
+    void removeModem(String path) {
+        final FakeModem modem;
+        synchronized (this) {
+            modem = modems.remove(path);
+        }
+        if (modem != null) {
+            modem.hangupAll("local");
+            ofono.unexport(path);
+            try {
+                ofono.send(new ModemRemoved(getObjectPath(), new DBusPath(path)));
+            } catch (DBusException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    synchronized FakeModem getModem(String path) {
+        final FakeModem modem = modems.get(path);
+        if (modem == null) {
+            throw new IllegalArgumentException("Unknown modem " + path);
+        }
+        return modem;
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import com.javadruid.bluez.phone.lib.interfaces.Modem;
+import com.javadruid.bluez.phone.lib.interfaces.PathProperties;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.freedesktop.dbus.DBusPath;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.errors.InvalidMethodArgument;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.types.Variant;
+
+import static com.javadruid.bluez.phone.lib.VoiceCalls.ONLINE;
+
+/**
+ * A modem of a {@link FakeOfono}. It is exported once and serves both {@code org.ofono.Modem}
+ * and {@code org.ofono.VoiceCallManager}, as a single path can only hold one object.
+ */
+class FakeModem implements Modem, VoiceCallManager {
+
+    private final FakeOfono ofono;
+    private final String path;
+    private final Map<String, Variant<?>> properties = new LinkedHashMap<>();
+    private final Map<String, FakeVoiceCall> calls = new LinkedHashMap<>();
+    private final List<String> tones = new ArrayList<>();
+    private int lastCall;
+    private volatile Duration replyDelay = Duration.ZERO;
+
+    FakeModem(FakeOfono ofono, String path, boolean online) {
+        this.ofono = ofono;
+        this.path = path;
+        properties.put("Powered", new Variant<>(true));
+        properties.put(ONLINE, new Variant<>(online));
+        properties.put("Name", new Variant<>("Fake " + path));
+        properties.put("Manufacturer", new Variant<>("javadruid"));
+        properties.put("Type", new Variant<>("test"));
+    }
+
+    /**
+     * Adds a call in the given state and announces it with {@code CallAdded}.
+     */
+    FakeVoiceCall addCall(String number, VoiceCallState state, Map<String, Variant<?>> extra) {
+        final FakeVoiceCall call;
+        synchronized (this) {
+            call = new FakeVoiceCall(ofono, this, String.format("%s/voicecall%02d", path, ++lastCall), number, state);
+            calls.put(call.getObjectPath(), call);
+        }
+        extra.forEach(call::putProperty);
+        ofono.export(call.getObjectPath(), call);
+        try {
+            ofono.send(new CallAdded(path, new DBusPath(call.getObjectPath()), call.getProperties()));
+        } catch (DBusException ex) {
+            throw new RuntimeException(ex);
+        }
+        return call;
+    }
+
+    /**
+     * Ends a call, announcing it with {@code DisconnectReason} and {@code CallRemoved}.
+     */
+    void removeCall(FakeVoiceCall call, String reason) {
+        synchronized (this) {
+            if (calls.remove(call.getObjectPath()) == null) {
+                return;
+            }
+        }
+        try {
+            ofono.send(new com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason(call.getObjectPath(), reason));
+            ofono.unexport(call.getObjectPath());
+            ofono.send(new CallRemoved(path, new DBusPath(call.getObjectPath())));
+        } catch (DBusException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    void hangupAll(String reason) {
+        final List<FakeVoiceCall> current;
+        synchronized (this) {
+            current = List.copyOf(calls.values());
+        }
+        current.forEach(c -> removeCall(c, reason));
+    }
+
+    synchronized FakeVoiceCall getCall(String callPath) {
+        return calls.get(callPath);
+    }
+
+    synchronized List<FakeVoiceCall> getCallList() {
+        return List.copyOf(calls.values());
+    }
+
+    synchronized List<String> getTones() {
+        return List.copyOf(tones);
+    }
+
+    synchronized Map<String, Variant<?>> getProperties() {
+        return Map.copyOf(properties);
+    }
+
+    /**
+     * Delays the replies to {@code Dial}, {@code GetCalls} and {@code SendTones}, as a stalled HFP link would.
+     */
+    void setReplyDelay(Duration delay) {
+        replyDelay = delay;
+    }
+
+    void setOnline(boolean online) {
+        setProperty(ONLINE, new Variant<>(online));
+    }
+
+    // Modem
+
+    @Override
+    public Map<String, Variant<?>> GetProperties() {
+        return getProperties();
+    }
+
+    @Override
+    public void SetProperty(String property, Variant<?> value) {
+        synchronized (this) {
+            if (!properties.containsKey(property)) {
+                throw new InvalidMethodArgument("Unknown property " + property);
+            }
+        }
+        setProperty(property, value);
+    }
+
+    // VoiceCallManager
+
+    @Override
+    public ObjectPath[] CreateMultiparty() {
+        final List<FakeVoiceCall> current = getCallList();
+        current.forEach(c -> c.putProperty(VoiceCall.MULTIPARTY, new Variant<>(true)));
+        return current.stream()
+            .map(c -> new ObjectPath("", c.getObjectPath()))
+            .toArray(ObjectPath[]::new);
+    }
+
+    @Override
+    public ObjectPath Dial(String number, String hide_callerid) {
+        stall();
+        return new ObjectPath("", addCall(number, VoiceCallState.DIALING, Map.of()).getObjectPath());
+    }
+
+    @Override
+    public void DialLast() {
+        // No call history
+    }
+
+    @Override
+    public void DialMemory(int memory_location) {
+        // No memory
+    }
+
+    @Override
+    public List<PathProperties> GetCalls() {
+        stall();
+        return getCallList().stream()
+            .map(c -> new PathProperties(new ObjectPath("", c.getObjectPath()), c.getProperties()))
+            .toList();
+    }
+
+    @Override
+    public void HangupAll() {
+        hangupAll("local");
+    }
+
+    @Override
+    public void HangupMultiparty() {
+        getCallList().stream()
+            .filter(FakeVoiceCall::isMultiparty)
+            .forEach(c -> removeCall(c, "local"));
+    }
+
+    @Override
+    public void HoldAndAnswer() {
+        transition(VoiceCallState.ACTIVE, VoiceCallState.HELD);
+        transition(VoiceCallState.WAITING, VoiceCallState.ACTIVE);
+    }
+
+    @Override
+    public ObjectPath PrivateChat(ObjectPath[] calls) {
+        return calls[0];
+    }
+
+    @Override
+    public void ReleaseAndAnswer() {
+        getCallList().stream()
+            .filter(c -> c.getState() == VoiceCallState.ACTIVE)
+            .forEach(c -> removeCall(c, "local"));
+        transition(VoiceCallState.WAITING, VoiceCallState.ACTIVE);
+    }
+
+    @Override
+    public void ReleaseAndSwap() {
+        getCallList().stream()
+            .filter(c -> c.getState() == VoiceCallState.ACTIVE)
+            .forEach(c -> removeCall(c, "local"));
+        transition(VoiceCallState.HELD, VoiceCallState.ACTIVE);
+    }
+
+    @Override
+    public void SendTones(String SendTones) {
+        stall();
+        synchronized (this) {
+            tones.add(SendTones);
+        }
+    }
+
+    @Override
+    public void SwapCalls() {
+        final List<FakeVoiceCall> current = getCallList();
+        current.forEach(c -> {
+            switch (c.getState()) {
+                case ACTIVE -> c.setState(VoiceCallState.HELD);
+                case HELD -> c.setState(VoiceCallState.ACTIVE);
+                default -> { }
+            }
+        });
+    }
+
+    @Override
+    public void Transfer() {
+        hangupAll("local");
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String getObjectPath() {
+        return path;
+    }
+
+    private void setProperty(String property, Variant<?> value) {
+        synchronized (this) {
+            properties.put(property, value);
+        }
+        try {
+            ofono.send(new Modem.PropertyChanged(path, property, value));
+        } catch (DBusException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void stall() {
+        try {
+            Thread.sleep(replyDelay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void transition(VoiceCallState from, VoiceCallState to) {
+        getCallList().stream()
+            .filter(c -> c.getState() == from)
+            .forEach(c -> c.setState(to));
+    }
+
+}
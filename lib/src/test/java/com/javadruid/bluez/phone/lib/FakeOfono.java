@@ -0,0 +1,184 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.freedesktop.dbus.bin.EmbeddedDBusDaemon;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.freedesktop.dbus.messages.DBusSignal;
+
+/**
+ * An oFono service on a private bus for end to end tests. It starts an embedded D-Bus daemon on
+ * a local TCP port, claims {@link Ofono#BUS_NAME} there and exports a {@link FakeManager} at
+ * {@code /}. Modems and calls are then scripted through this class and the objects it returns,
+ * and every change is announced with the same signals oFono sends.
+ */
+final class FakeOfono implements Closeable {
+
+    private static final long CONNECT_TIMEOUT = 5000;
+
+    private final EmbeddedDBusDaemon daemon;
+    private final String address;
+    private final FakeManager manager;
+    private final Map<String, DBusInterface> exported = new LinkedHashMap<>();
+    private DBusConnection service;
+
+    private FakeOfono(EmbeddedDBusDaemon daemon, String address) {
+        this.daemon = daemon;
+        this.address = address;
+        this.manager = new FakeManager(this);
+        exported.put(manager.getObjectPath(), manager);
+    }
+
+    static FakeOfono start() throws DBusException {
+        final String address = "tcp:host=127.0.0.1,port=" + freePort();
+        final EmbeddedDBusDaemon daemon = new EmbeddedDBusDaemon();
+        daemon.setAddress(address + ",listen=true");
+        daemon.startInBackground();
+        try {
+            final FakeOfono ofono = new FakeOfono(daemon, address);
+            ofono.restart();
+            return ofono;
+        } catch (DBusException | RuntimeException ex) {
+            close(daemon);
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a new client connection to the private bus.
+     */
+    DBusConnection connect() throws DBusException {
+        return connect(address);
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    FakeManager getManager() {
+        return manager;
+    }
+
+    FakeModem addModem(String path, boolean online) {
+        return manager.addModem(path, online);
+    }
+
+    void removeModem(String path) {
+        manager.removeModem(path);
+    }
+
+    FakeModem getModem(String path) {
+        return manager.getModem(path);
+    }
+
+    /**
+     * Raises an incoming call on a modem.
+     */
+    FakeVoiceCall incomingCall(String modemPath, String number) {
+        return manager.getModem(modemPath).addCall(number, VoiceCall.VoiceCallState.INCOMING, Map.of());
+    }
+
+    /**
+     * Stops the service as if oFono exited: {@link Ofono#BUS_NAME} loses its owner. Modems and
+     * calls can still be changed, silently, until {@link #restart()}.
+     */
+    synchronized void stop() {
+        if (service != null) {
+            close(service);
+            service = null;
+        }
+    }
+
+    /**
+     * Starts the service again on a new connection, so {@link Ofono#BUS_NAME} gets a new owner,
+     * and exports the current modems and calls.
+     */
+    synchronized void restart() throws DBusException {
+        stop();
+        service = connect(address);
+        for (Map.Entry<String, DBusInterface> e : exported.entrySet()) {
+            service.exportObject(e.getKey(), e.getValue());
+        }
+        service.requestBusName(Ofono.BUS_NAME);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            stop();
+        } finally {
+            daemon.close();
+        }
+    }
+
+    synchronized void export(String path, DBusInterface object) {
+        exported.put(path, object);
+        if (service != null) {
+            try {
+                service.exportObject(path, object);
+            } catch (DBusException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    synchronized void unexport(String path) {
+        exported.remove(path);
+        if (service != null) {
+            service.unExportObject(path);
+        }
+    }
+
+    synchronized void send(DBusSignal signal) {
+        if (service != null) {
+            service.sendMessage(signal);
+        }
+    }
+
+    private static DBusConnection connect(String address) throws DBusException {
+        final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (true) {
+            try {
+                return DBusConnection.getConnection(address, true, false);
+            } catch (DBusException ex) {
+                // The daemon may still be binding its socket
+                if (System.currentTimeMillis() > deadline) {
+                    throw ex;
+                }
+                pause();
+            }
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
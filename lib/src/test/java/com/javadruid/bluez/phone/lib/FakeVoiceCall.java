@@ -0,0 +1,177 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.types.Variant;
+
+import static com.javadruid.bluez.phone.lib.VoiceCall.EMERGENCY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.ICON;
+import static com.javadruid.bluez.phone.lib.VoiceCall.INFORMATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.MULTIPARTY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.NAME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_HELD;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_MULTIPARTY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.START_TIME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+
+/**
+ * A call of a {@link FakeModem}. State transitions are driven either by the client through
+ * {@code Answer} and {@code Hangup} or by the test through {@link #setState} and {@link #remoteHangup}.
+ */
+class FakeVoiceCall implements com.javadruid.bluez.phone.lib.interfaces.VoiceCall {
+
+    private final FakeOfono ofono;
+    private final FakeModem modem;
+    private final String path;
+    private final Map<String, Variant<?>> properties = new LinkedHashMap<>();
+
+    FakeVoiceCall(FakeOfono ofono, FakeModem modem, String path, String number, VoiceCallState state) {
+        this.ofono = ofono;
+        this.modem = modem;
+        this.path = path;
+        properties.put(LINE_IDENTIFICATION, new Variant<>(number));
+        properties.put(NAME, new Variant<>(""));
+        properties.put(MULTIPARTY, new Variant<>(false));
+        properties.put(STATE, new Variant<>(state.getState()));
+        properties.put(INFORMATION, new Variant<>(""));
+        properties.put(ICON, new Variant<>((byte) 0));
+        properties.put(EMERGENCY, new Variant<>(false));
+        properties.put(REMOTE_HELD, new Variant<>(false));
+        properties.put(REMOTE_MULTIPARTY, new Variant<>(false));
+    }
+
+    /**
+     * Moves the call to a new state, announcing it with {@code PropertyChanged}. The start
+     * time is set the first time the call becomes active.
+     */
+    void setState(VoiceCallState state) {
+        if (state == VoiceCallState.ACTIVE && !hasProperty(START_TIME)) {
+            putProperty(START_TIME, new Variant<>(VoiceCall.START_TIME_FORMAT.format(OffsetDateTime.now())));
+        }
+        putProperty(STATE, new Variant<>(state.getState()));
+    }
+
+    /**
+     * Ends the call from the remote side.
+     */
+    void remoteHangup() {
+        modem.removeCall(this, "remote");
+    }
+
+    VoiceCallState getState() {
+        return VoiceCallState.get((String) getProperties().get(STATE).getValue());
+    }
+
+    boolean isMultiparty() {
+        return (Boolean) getProperties().get(MULTIPARTY).getValue();
+    }
+
+    synchronized Map<String, Variant<?>> getProperties() {
+        return Map.copyOf(properties);
+    }
+
+    void putProperty(String property, Variant<?> value) {
+        synchronized (this) {
+            properties.put(property, value);
+        }
+        try {
+            ofono.send(new PropertyChanged(path, property, value));
+        } catch (DBusException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void Answer() {
+        setState(VoiceCallState.ACTIVE);
+    }
+
+    @Override
+    public void Deflect(String number) {
+        modem.removeCall(this, "local");
+    }
+
+    @Override
+    public Map<String, Variant<?>> GetProperties() {
+        return getProperties();
+    }
+
+    @Override
+    public void Hangup() {
+        modem.removeCall(this, "local");
+    }
+
+    @Override
+    public String LineIdentification() {
+        return (String) getProperties().get(LINE_IDENTIFICATION).getValue();
+    }
+
+    @Override
+    public String IncomingLine() {
+        return "";
+    }
+
+    @Override
+    public String Name() {
+        return (String) getProperties().get(NAME).getValue();
+    }
+
+    @Override
+    public boolean Multiparty() {
+        return isMultiparty();
+    }
+
+    @Override
+    public String State() {
+        return getState().getState();
+    }
+
+    @Override
+    public String StartTime() {
+        return hasProperty(START_TIME) ? (String) getProperties().get(START_TIME).getValue() : "";
+    }
+
+    @Override
+    public String Information() {
+        return "";
+    }
+
+    @Override
+    public byte Icon() {
+        return 0;
+    }
+
+    @Override
+    public boolean Emergency() {
+        return false;
+    }
+
+    @Override
+    public boolean RemoteHeld() {
+        return false;
+    }
+
+    @Override
+    public boolean RemoteMultiparty() {
+        return false;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String getObjectPath() {
+        return path;
+    }
+
+    private synchronized boolean hasProperty(String property) {
+        return properties.containsKey(property);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.javadruid.bluez.phone.lib;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            final int bucket = LatencyHistogram.bucket(value);
+
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            instance.record(i * 1000);
+        }
+
+        assertEquals(1000, instance.getCount());
+        assertEquals(1_000_000, instance.getMax());
+        assertWithin(500_000, instance.getValueAtPercentile(50));
+        assertWithin(990_000, instance.getValueAtPercentile(99));
+        assertWithin(999_000, instance.getValueAtPercentile(99.9));
+        assertEquals(1_000_000, instance.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testNegative() {
+        final LatencyHistogram instance = new LatencyHistogram();
+
+        instance.record(-5);
+
+        assertEquals(0, instance.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().getValueAtPercentile(101));
+    }
+
+    @Test
+    public void testReset() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        instance.record(42);
+
+        instance.reset();
+
+        assertEquals(0, instance.getCount());
+        assertEquals(0, instance.getMax());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, () -> actual + " not within 12.5% of " + expected);
+    }
+
+}
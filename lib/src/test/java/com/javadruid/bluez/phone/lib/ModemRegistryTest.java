@@ -0,0 +1,69 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ModemRegistryTest {
+
+    private final VoiceCallManager manager = mock(VoiceCallManager.class);
+
+    @Test
+    public void testOnlineChanged() {
+        final List<VoiceCallManager> added = new ArrayList<>();
+        final List<VoiceCallManager> removed = new ArrayList<>();
+        final ModemRegistry instance = new ModemRegistry(path -> manager);
+        instance.onAdded(added::add);
+        instance.onRemoved(removed::add);
+
+        instance.modemAdded(PATH, false);
+        instance.onlineChanged(PATH, true);
+        instance.onlineChanged(PATH, true);
+        instance.modemRemoved(PATH);
+
+        assertEquals(List.of(manager), added);
+        assertEquals(List.of(manager), removed);
+        assertTrue(instance.getVoiceCallManagers().isEmpty());
+    }
+
+    @Test
+    public void testHandlerOutsideLock() {
+        final ModemRegistry instance = new ModemRegistry(path -> manager);
+        final List<List<VoiceCallManager>> seen = new ArrayList<>();
+        // Would time out if the handler ran with the registry locked
+        instance.onAdded(m -> seen.add(CompletableFuture.supplyAsync(instance::getVoiceCallManagers)
+            .orTimeout(5, TimeUnit.SECONDS)
+            .join()));
+
+        instance.reset(Map.of(PATH, true));
+
+        assertEquals(List.of(List.of(manager)), seen);
+    }
+
+    @Test
+    public void testOfflineWhileCreating() {
+        final List<VoiceCallManager> added = new ArrayList<>();
+        final ModemRegistry[] instance = new ModemRegistry[1];
+        instance[0] = new ModemRegistry(path -> {
+            CompletableFuture.runAsync(() -> instance[0].onlineChanged(path, false))
+                .orTimeout(5, TimeUnit.SECONDS)
+                .join();
+            return manager;
+        });
+        instance[0].onAdded(added::add);
+
+        instance[0].modemAdded(PATH, true);
+
+        assertTrue(added.isEmpty());
+        assertTrue(instance[0].getVoiceCallManagers().isEmpty());
+    }
+
+}
@@ -0,0 +1,344 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs the library against a {@link FakeOfono} on a private bus, so that serialization,
+ * signal delivery and round trips are real.
+ */
+public class OfonoEndToEndTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfonoEndToEndTest.class);
+    private static final String MODEM = "/hfp/org/bluez/hci0/dev_00_11_22_33_44_55";
+    private static final String OFFLINE_MODEM = "/hfp/org/bluez/hci0/dev_66_77_88_99_AA_BB";
+    private static final long TIMEOUT = 10;
+    private static final int CALLS = 500;
+    private static final int SCRIPTS = 100;
+
+    private FakeOfono ofono;
+    private VoiceCalls voiceCalls;
+
+    @BeforeEach
+    public void setUp() throws DBusException {
+        ofono = FakeOfono.start();
+        ofono.addModem(MODEM, true);
+        ofono.addModem(OFFLINE_MODEM, false);
+        voiceCalls = new VoiceCalls(ofono.connect());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        CallTimeouts.getInstance().clear();
+        voiceCalls.close();
+        ofono.close();
+    }
+
+    @Test
+    public void testGetVoiceCallManagers() {
+        final List<VoiceCallManager> result = voiceCalls.getVoiceCallManagers().toList();
+
+        assertEquals(1, result.size());
+        assertEquals(MODEM, result.get(0).getPath());
+    }
+
+    @Test
+    public void testModemSignals() throws InterruptedException {
+        final CountDownLatch added = new CountDownLatch(2);
+        final CountDownLatch removed = new CountDownLatch(1);
+        voiceCalls.onVoiceCallManagerAdded(m -> added.countDown());
+        voiceCalls.onVoiceCallManagerRemoved(m -> removed.countDown());
+
+        ofono.getModem(OFFLINE_MODEM).setOnline(true);
+        ofono.removeModem(MODEM);
+
+        assertTrue(added.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(removed.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(List.of(OFFLINE_MODEM),
+            voiceCalls.getVoiceCallManagers().map(VoiceCallManager::getPath).toList());
+    }
+
+    @Test
+    public void testIncomingCall() throws InterruptedException {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+        final AtomicReference<Map.Entry<String, Map<String, Object>>> added = new AtomicReference<>();
+        final CountDownLatch addedLatch = new CountDownLatch(1);
+        final CountDownLatch removedLatch = new CountDownLatch(1);
+        manager.onCallAdded(e -> {
+            added.set(e);
+            addedLatch.countDown();
+        });
+        manager.onCallRemoved(p -> removedLatch.countDown());
+
+        final FakeVoiceCall fake = ofono.incomingCall(MODEM, "+441234567890");
+        assertTrue(addedLatch.await(TIMEOUT, TimeUnit.SECONDS));
+        final VoiceCall call = voiceCalls.voiceCall(added.get().getKey(), added.get().getValue());
+        assertEquals("+441234567890", call.getLineIdentification());
+        assertEquals(VoiceCallState.INCOMING, call.getState());
+
+        call.answer();
+        assertEquals(VoiceCallState.ACTIVE, fake.getState());
+        await(() -> call.getState() == VoiceCallState.ACTIVE);
+        await(() -> call.getStartTime().isPresent());
+
+        fake.remoteHangup();
+        assertTrue(removedLatch.await(TIMEOUT, TimeUnit.SECONDS));
+        await(() -> voiceCalls.getVoiceCallRegistry().getLiveCount() == 0);
+    }
+
+    @Test
+    public void testJournal(@TempDir Path directory) throws Exception {
+        final CallJournal journal = new CallJournal(directory);
+        voiceCalls.setJournal(journal);
+
+        // Each step waits for the last, as signals of different objects may be handled out of order
+        final FakeVoiceCall fake = ofono.incomingCall(MODEM, "+441234567890");
+        final int properties = fake.getProperties().size();
+        await(() -> journal.getRecordCount() == 1 + properties);
+        fake.setState(VoiceCallState.ACTIVE);
+        await(() -> journal.getRecordCount() == 3 + properties);
+        fake.remoteHangup();
+        await(() -> journal.getRecordCount() == 5 + properties);
+        voiceCalls.setJournal(null);
+        journal.close();
+
+        final CallJournalReader reader = new CallJournalReader(directory);
+        final List<Object> states = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        reader.onCallAdded(MODEM, e -> {
+            assertEquals("+441234567890", e.getValue().get(VoiceCall.LINE_IDENTIFICATION));
+            states.add(e.getValue().get(VoiceCall.STATE));
+        });
+        reader.onPropertyChange(null, e -> {
+            if (VoiceCall.STATE.equals(e.getKey())) {
+                states.add(e.getValue());
+            }
+        });
+        reader.onDisconnectReason(null, e -> removed.add(e.getValue()));
+        reader.onCallRemoved(MODEM, removed::add);
+
+        assertEquals(5, reader.replay());
+
+        assertEquals(List.of("incoming", "active"), states);
+        assertTrue(removed.containsAll(List.of("remote", fake.getObjectPath())));
+    }
+
+    @Test
+    public void testDialAndGetCalls() {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+
+        final String path = manager.dial("+449876543210");
+        ofono.incomingCall(MODEM, "+441234567890");
+        final List<VoiceCallSnapshot> snapshots = manager.getCallSnapshots();
+
+        assertEquals(2, snapshots.size());
+        assertEquals(path, snapshots.get(0).path());
+        assertEquals("+449876543210", snapshots.get(0).lineIdentification());
+        assertEquals(VoiceCallState.DIALING, snapshots.get(0).state());
+        assertEquals(VoiceCallState.INCOMING, snapshots.get(1).state());
+
+        manager.hangupAll();
+        assertEquals(List.of(), manager.getCallSnapshots());
+    }
+
+    @Test
+    public void testFanOut() {
+        final String second = MODEM.replace("55", "56");
+        final String slow = MODEM.replace("55", "57");
+        ofono.addModem(second, true);
+        ofono.addModem(slow, true);
+        ofono.getModem(MODEM).setReplyDelay(Duration.ofMillis(300));
+        ofono.getModem(second).setReplyDelay(Duration.ofMillis(300));
+        ofono.getModem(slow).setReplyDelay(Duration.ofSeconds(2));
+        voiceCalls.getVoiceCallManagers().filter(m -> m.getPath().equals(MODEM)).findFirst().orElseThrow()
+            .dial("+449876543210");
+
+        final long start = System.nanoTime();
+        final ModemResults<List<VoiceCallSnapshot>> result = voiceCalls.getCallSnapshots(Duration.ofMillis(800));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(Set.of(MODEM, second), result.values().keySet());
+        assertEquals("+449876543210", result.values().get(MODEM).get(0).lineIdentification());
+        assertEquals(List.of(), result.values().get(second));
+        assertInstanceOf(DBusTimeoutException.class, result.errors().get(slow));
+    }
+
+    @Test
+    public void testSendTones() {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+
+        manager.sendTonesAsync("123").join();
+        manager.sendTones("#");
+
+        assertEquals(List.of("123", "#"), ofono.getModem(MODEM).getTones());
+    }
+
+    @Test
+    public void testDeadline() {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+        ofono.getModem(MODEM).setReplyDelay(Duration.ofMillis(500));
+        CallTimeouts.getInstance().set(VoiceCallManager.DIAL, Duration.ofMillis(100));
+
+        final long start = System.nanoTime();
+        assertThrows(DBusTimeoutException.class, () -> manager.dial("+449876543210"));
+        final CompletionException ex = assertThrows(CompletionException.class,
+            () -> manager.dialAsync("+449876543210").join());
+
+        assertInstanceOf(DBusTimeoutException.class, ex.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void testToneScripts() throws Exception {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final ToneScript script = ToneScript.create()
+            .awaitState(VoiceCallState.ACTIVE, Duration.ofSeconds(TIMEOUT))
+            .send("1")
+            .pause(Duration.ofMillis(50))
+            .send("2#");
+        final List<FakeVoiceCall> fakes = new ArrayList<>();
+        final List<CompletableFuture<List<SentTones>>> runs = new ArrayList<>();
+        try (ToneSequencer sequencer = voiceCalls.newToneSequencer(scheduler)) {
+            for (int i = 0; i < SCRIPTS; i++) {
+                final FakeVoiceCall fake = ofono.incomingCall(MODEM, String.format("+44%010d", i));
+                fakes.add(fake);
+                runs.add(sequencer.run(manager, voiceCalls.voiceCall(fake.getObjectPath()), script));
+            }
+            fakes.forEach(FakeVoiceCall::Answer);
+
+            for (CompletableFuture<List<SentTones>> run : runs) {
+                final List<SentTones> sent = run.get(TIMEOUT, TimeUnit.SECONDS);
+                assertEquals(List.of("1", "2#"), sent.stream().map(SentTones::tones).toList());
+                assertTrue(Duration.between(sent.get(0).acknowledged(), sent.get(1).sent()).toMillis() >= 50);
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        assertEquals(SCRIPTS * 2, ofono.getModem(MODEM).getTones().size());
+    }
+
+    @Test
+    public void testCallRate() throws InterruptedException {
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().orElseThrow();
+        final Set<String> added = ConcurrentHashMap.newKeySet();
+        final CountDownLatch addedLatch = new CountDownLatch(CALLS);
+        final CountDownLatch removedLatch = new CountDownLatch(CALLS);
+        manager.onCallAdded(e -> {
+            added.add(e.getKey());
+            addedLatch.countDown();
+        });
+        manager.onCallRemoved(p -> removedLatch.countDown());
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            ofono.incomingCall(MODEM, String.format("+44%010d", i)).remoteHangup();
+        }
+        assertTrue(addedLatch.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(removedLatch.await(TIMEOUT, TimeUnit.SECONDS));
+        final long elapsed = System.nanoTime() - start;
+
+        assertEquals(CALLS, added.size());
+        logger.info("{} calls added and removed in {} ms", CALLS, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met in " + TIMEOUT + " seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        final SharedConnection shared = new SharedConnection(() -> DBusConnection.getConnection(ofono.getAddress(), true, false));
+        final List<String> added = new CopyOnWriteArrayList<>();
+        final List<String> removed = new CopyOnWriteArrayList<>();
+        final SharedConnection.Lease lease = shared.acquire();
+        try (VoiceCalls instance = new VoiceCalls(lease, SignalDispatcher.DIRECT)) {
+            instance.onVoiceCallManagerAdded(m -> added.add(m.getPath()));
+            instance.onVoiceCallManagerRemoved(m -> removed.add(m.getPath()));
+            assertEquals(List.of(MODEM), added);
+
+            // Its handlers could not be removed once the daemon is gone
+            voiceCalls.close();
+            ofono.close();
+            ofono = FakeOfono.start();
+            ofono.addModem(MODEM, true);
+            // The embedded daemon leaves its clients' sockets open, so drop ours as a bus restart would
+            lease.getConnection().disconnect();
+
+            await(() -> added.size() == 2);
+            assertEquals(List.of(MODEM), removed);
+            assertEquals(1, shared.getReconnectCount());
+            final VoiceCallManager manager = instance.getVoiceCallManagers().findFirst().get();
+            manager.dial("0123456789");
+            assertEquals(1, ofono.getModem(MODEM).getCallList().size());
+        }
+        assertEquals(0, shared.getUserCount());
+    }
+
+    @Test
+    public void testOfonoRestart() throws Exception {
+        final String otherModem = "/hfp/org/bluez/hci0/dev_CC_DD_EE_FF_00_11";
+        final VoiceCallManager manager = voiceCalls.getVoiceCallManagers().findFirst().get();
+        final FakeVoiceCall ended = ofono.incomingCall(MODEM, "+441111111111");
+        final FakeVoiceCall kept = ofono.incomingCall(MODEM, "+442222222222");
+        assertEquals(2, manager.getCalls().size());
+        final List<String> added = new CopyOnWriteArrayList<>();
+        final List<String> removed = new CopyOnWriteArrayList<>();
+        final List<String> managers = new CopyOnWriteArrayList<>();
+        manager.onCallAdded(e -> added.add(e.getKey()));
+        manager.onCallRemoved(removed::add);
+        voiceCalls.onVoiceCallManagerAdded(m -> managers.add(m.getPath()));
+
+        ofono.stop();
+        ofono.getModem(MODEM).removeCall(ended, "local");
+        final FakeVoiceCall started = ofono.incomingCall(MODEM, "+443333333333");
+        ofono.addModem(otherModem, true);
+        ofono.restart();
+
+        await(() -> !removed.isEmpty() && !added.isEmpty() && !managers.isEmpty());
+        assertEquals(List.of(ended.getObjectPath()), removed);
+        assertEquals(List.of(started.getObjectPath()), added);
+        assertEquals(List.of(otherModem), managers);
+        assertEquals(Set.of(kept.getObjectPath(), started.getObjectPath()), manager.getCalls().keySet());
+
+        ofono.incomingCall(MODEM, "+444444444444");
+        await(() -> added.size() == 2);
+    }
+
+}
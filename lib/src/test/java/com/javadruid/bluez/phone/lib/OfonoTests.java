@@ -1,9 +1,14 @@
 package com.javadruid.bluez.phone.lib;
 
+import java.time.Instant;
+
 public class OfonoTests {
 
     static final String KEY = "key";
     static final String PATH = "/foo/bar";
     static final String INTERFACE = "interface";
+    // A StartTime as sent by oFono
+    static final String START_TIME_VALUE = "2026-10-18T05:12:31+0100";
+    static final Instant START_TIME_INSTANT = Instant.parse("2026-10-18T04:12:31Z");
 
 }
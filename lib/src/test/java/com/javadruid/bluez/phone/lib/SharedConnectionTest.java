@@ -0,0 +1,182 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.interfaces.Local;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SharedConnectionTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Mock
+    private SharedConnection.Opener opener;
+    @Mock
+    private DBusConnection connection;
+    @Mock
+    private DBusConnection reopened;
+    @Mock
+    private Consumer<DBusConnection> reconnectHandler;
+
+    private ScheduledExecutorService scheduler;
+    private SharedConnection instance;
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        instance = new SharedConnection(opener, scheduler);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testAcquireShares() throws Exception {
+        when(opener.open()).thenReturn(connection);
+        when(connection.isConnected()).thenReturn(true);
+
+        final SharedConnection.Lease first = instance.acquire();
+        final SharedConnection.Lease second = instance.acquire();
+
+        assertSame(connection, first.getConnection());
+        assertSame(connection, second.getConnection());
+        assertEquals(2, instance.getUserCount());
+        verify(opener, times(1)).open();
+    }
+
+    @Test
+    public void testCloseLast() throws Exception {
+        when(opener.open()).thenReturn(connection);
+        when(connection.isConnected()).thenReturn(true);
+        final SharedConnection.Lease first = instance.acquire();
+        final SharedConnection.Lease second = instance.acquire();
+
+        first.close();
+        first.close();
+        verify(connection, never()).close();
+        assertEquals(1, instance.getUserCount());
+
+        second.close();
+        verify(connection).close();
+        assertEquals(0, instance.getUserCount());
+        assertNull(second.getConnection());
+    }
+
+    @Test
+    public void testAcquireAfterClose() throws Exception {
+        when(opener.open()).thenReturn(connection, reopened);
+        instance.acquire().close();
+
+        final SharedConnection.Lease result = instance.acquire();
+
+        assertSame(reopened, result.getConnection());
+        assertEquals(0, instance.getReconnectCount());
+    }
+
+    @Test
+    public void testAcquireFailure() throws Exception {
+        when(opener.open()).thenThrow(new DBusException("No bus"));
+
+        assertThrows(RuntimeException.class, () -> instance.acquire());
+        assertEquals(0, instance.getUserCount());
+    }
+
+    @Test
+    public void testReconnectOnDisconnected() throws Exception {
+        when(opener.open()).thenReturn(connection, reopened);
+        final SharedConnection.Lease lease = instance.acquire();
+        lease.onReconnect(reconnectHandler);
+
+        disconnectHandler(connection).handle(null);
+
+        verify(reconnectHandler, timeout(TIMEOUT)).accept(reopened);
+        verify(connection).close();
+        assertSame(reopened, lease.getConnection());
+        assertEquals(1, instance.getReconnectCount());
+    }
+
+    @Test
+    public void testReconnectOnCheck() throws Exception {
+        when(opener.open()).thenReturn(connection, reopened);
+        when(connection.isConnected()).thenReturn(false);
+        final SharedConnection.Lease lease = instance.acquire();
+        lease.onReconnect(reconnectHandler);
+
+        verify(reconnectHandler, timeout(TIMEOUT)).accept(reopened);
+        assertSame(reopened, lease.getConnection());
+    }
+
+    @Test
+    public void testReconnectRetries() throws Exception {
+        when(opener.open())
+            .thenReturn(connection)
+            .thenThrow(new DBusException("No bus"))
+            .thenReturn(reopened);
+        final SharedConnection.Lease lease = instance.acquire();
+        lease.onReconnect(reconnectHandler);
+
+        disconnectHandler(connection).handle(null);
+
+        verify(reconnectHandler, timeout(TIMEOUT)).accept(reopened);
+        verify(opener, times(3)).open();
+    }
+
+    @Test
+    public void testAcquireReopens() throws Exception {
+        when(opener.open()).thenReturn(connection, reopened);
+        when(connection.isConnected()).thenReturn(false);
+        final SharedConnection.Lease lease = instance.acquire();
+        lease.onReconnect(reconnectHandler);
+
+        final SharedConnection.Lease result = instance.acquire();
+
+        assertSame(reopened, result.getConnection());
+        verify(reconnectHandler).accept(reopened);
+    }
+
+    @Test
+    public void testNoReconnectAfterClose() throws Exception {
+        when(opener.open()).thenReturn(connection);
+        final SharedConnection.Lease lease = instance.acquire();
+        final DBusSigHandler<Local.Disconnected> handler = disconnectHandler(connection);
+        lease.close();
+
+        handler.handle(null);
+
+        scheduler.submit(() -> null).get();
+        verify(opener, times(1)).open();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DBusSigHandler<Local.Disconnected> disconnectHandler(DBusConnection connection) throws DBusException {
+        final ArgumentCaptor<DBusSigHandler<Local.Disconnected>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        verify(connection).addSigHandler(eq(Local.Disconnected.class), captor.capture());
+        return captor.getValue();
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.SignalDispatcher.OverflowPolicy;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.junit.jupiter.api.Test;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignalDispatcherTest {
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    @Test
+    public void testDirect() {
+        final List<String> handled = new ArrayList<>();
+        final DBusSigHandler<DisconnectReason> handler = s -> handled.add(s.getReason());
+
+        assertSame(handler, SignalDispatcher.DIRECT.wrap(handler));
+        SignalDispatcher.DIRECT.dispatch(PATH, () -> handled.add("direct"));
+        assertEquals(List.of("direct"), handled);
+    }
+
+    @Test
+    public void testWrap() throws DBusException {
+        final SignalDispatcher instance = new SignalDispatcher(scheduled::add, 4, OverflowPolicy.BLOCK);
+        final List<String> handled = new ArrayList<>();
+
+        instance.<DisconnectReason>wrap(s -> handled.add(s.getReason()))
+            .handle(new DisconnectReason(PATH, "reason"));
+
+        assertEquals(1, instance.getQueueDepth(PATH));
+        runScheduled();
+        assertEquals(List.of("reason"), handled);
+        assertEquals(0, instance.getQueueDepth(PATH));
+    }
+
+    @Test
+    public void testOrderPerKey() {
+        final SignalDispatcher instance = new SignalDispatcher(scheduled::add, 4, OverflowPolicy.BLOCK);
+        final List<String> handled = new ArrayList<>();
+
+        instance.dispatch("a", () -> handled.add("a1"));
+        instance.dispatch("b", () -> handled.add("b1"));
+        instance.dispatch("a", () -> handled.add("a2"));
+
+        assertEquals(2, scheduled.size());
+        assertEquals(Map.of("a", 2, "b", 1), instance.getQueueDepths());
+        runScheduled();
+        assertEquals(List.of("a1", "a2", "b1"), handled);
+        assertEquals(3, instance.getDispatched());
+        assertEquals(2, instance.getMaxQueueDepth());
+    }
+
+    @Test
+    public void testDropNewest() {
+        final SignalDispatcher instance = new SignalDispatcher(scheduled::add, 2, OverflowPolicy.DROP_NEWEST);
+        final List<String> handled = new ArrayList<>();
+
+        instance.dispatch(PATH, () -> handled.add("1"));
+        instance.dispatch(PATH, () -> handled.add("2"));
+        instance.dispatch(PATH, () -> handled.add("3"));
+        runScheduled();
+
+        assertEquals(List.of("1", "2"), handled);
+        assertEquals(1, instance.getDropped());
+    }
+
+    @Test
+    public void testDropOldest() {
+        final SignalDispatcher instance = new SignalDispatcher(scheduled::add, 2, OverflowPolicy.DROP_OLDEST);
+        final List<String> handled = new ArrayList<>();
+
+        instance.dispatch(PATH, () -> handled.add("1"));
+        instance.dispatch(PATH, () -> handled.add("2"));
+        instance.dispatch(PATH, () -> handled.add("3"));
+        runScheduled();
+
+        assertEquals(List.of("2", "3"), handled);
+        assertEquals(1, instance.getDropped());
+    }
+
+    @Test
+    public void testHandlerException() {
+        final SignalDispatcher instance = new SignalDispatcher(scheduled::add, 2, OverflowPolicy.BLOCK);
+        final List<String> handled = new ArrayList<>();
+
+        instance.dispatch(PATH, () -> {
+            throw new IllegalStateException();
+        });
+        instance.dispatch(PATH, () -> handled.add("2"));
+        runScheduled();
+
+        assertEquals(List.of("2"), handled);
+    }
+
+    @Test
+    public void testBlockParallel() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final SignalDispatcher instance = new SignalDispatcher(executor, 1, OverflowPolicy.BLOCK);
+            final int count = 1000;
+            final CountDownLatch done = new CountDownLatch(2 * count);
+            final List<Integer> a = new ArrayList<>();
+            final List<Integer> b = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final int value = i;
+                instance.dispatch("a", () -> {
+                    a.add(value);
+                    done.countDown();
+                });
+                instance.dispatch("b", () -> {
+                    b.add(value);
+                    done.countDown();
+                });
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, a.get(i));
+                assertEquals(i, b.get(i));
+            }
+            assertEquals(0, instance.getDropped());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new SignalDispatcher(Runnable::run, 0, OverflowPolicy.BLOCK));
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+}
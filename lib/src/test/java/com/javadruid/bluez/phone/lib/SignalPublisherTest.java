@@ -0,0 +1,225 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignalPublisherTest {
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<Consumer<String>> sinks = new ArrayList<>();
+    private int unregistered;
+
+    @Test
+    public void testFanOut() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder first = new Recorder(Long.MAX_VALUE);
+        final Recorder second = new Recorder(Long.MAX_VALUE);
+
+        instance.subscribe(first);
+        instance.subscribe(second);
+        runScheduled();
+        sinks.get(0).accept("a");
+        sinks.get(0).accept("b");
+        runScheduled();
+
+        assertEquals(1, sinks.size());
+        assertEquals(2, instance.getSubscriberCount());
+        assertEquals(List.of("a", "b"), first.items);
+        assertEquals(List.of("a", "b"), second.items);
+        assertEquals(2, instance.getPublishedCount());
+    }
+
+    @Test
+    public void testDemand() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder recorder = new Recorder(1);
+        instance.subscribe(recorder);
+        runScheduled();
+
+        sinks.get(0).accept("a");
+        sinks.get(0).accept("b");
+        runScheduled();
+        assertEquals(List.of("a"), recorder.items);
+
+        recorder.subscription.request(1);
+        runScheduled();
+        assertEquals(List.of("a", "b"), recorder.items);
+    }
+
+    @Test
+    public void testDropsForSlowSubscriber() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder slow = new Recorder(0);
+        final Recorder fast = new Recorder(Long.MAX_VALUE);
+        instance.subscribe(slow);
+        instance.subscribe(fast);
+        runScheduled();
+
+        final int events = 2 * Flow.defaultBufferSize();
+        for (int i = 0; i < events; i++) {
+            sinks.get(0).accept(Integer.toString(i));
+            if (i % 16 == 0) {
+                runScheduled();
+            }
+        }
+        runScheduled();
+        slow.subscription.request(Long.MAX_VALUE);
+        runScheduled();
+
+        assertEquals(events, fast.items.size());
+        assertTrue(instance.getDroppedCount() > 0);
+        assertEquals(events - instance.getDroppedCount(), slow.items.size());
+        assertEquals("0", slow.items.get(0));
+    }
+
+    @Test
+    public void testUnregisterAfterLastCancel() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder first = new Recorder(Long.MAX_VALUE);
+        final Recorder second = new Recorder(Long.MAX_VALUE);
+        instance.subscribe(first);
+        instance.subscribe(second);
+        runScheduled();
+
+        first.subscription.cancel();
+        first.subscription.cancel();
+        assertEquals(0, unregistered);
+        second.subscription.cancel();
+        assertEquals(1, unregistered);
+        assertEquals(0, instance.getSubscriberCount());
+
+        instance.subscribe(new Recorder(1));
+        assertEquals(2, sinks.size());
+    }
+
+    @Test
+    public void testSubscriberFailure() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder recorder = new Recorder(Long.MAX_VALUE) {
+            @Override
+            public void onNext(String item) {
+                throw new IllegalStateException(item);
+            }
+        };
+        instance.subscribe(recorder);
+        runScheduled();
+
+        sinks.get(0).accept("a");
+        runScheduled();
+
+        assertInstanceOf(IllegalStateException.class, recorder.error);
+        assertEquals(1, unregistered);
+    }
+
+    @Test
+    public void testRegistrationFailure() {
+        final SignalPublisher<String> instance = new SignalPublisher<>("test", sink -> {
+            throw new RuntimeException("No bus");
+        }, scheduled::add);
+        final Recorder recorder = new Recorder(1);
+
+        instance.subscribe(recorder);
+
+        assertEquals("No bus", recorder.error.getMessage());
+        assertEquals(0, instance.getSubscriberCount());
+    }
+
+    @Test
+    public void testReregister() {
+        final SignalPublisher<String> instance = newInstance();
+        instance.reregister();
+        assertEquals(0, sinks.size());
+        final Recorder recorder = new Recorder(Long.MAX_VALUE);
+        instance.subscribe(recorder);
+        runScheduled();
+
+        instance.reregister();
+        sinks.get(1).accept("a");
+        runScheduled();
+
+        assertEquals(1, unregistered);
+        assertEquals(List.of("a"), recorder.items);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void testClose() {
+        final SignalPublisher<String> instance = newInstance();
+        final Recorder first = new Recorder(Long.MAX_VALUE);
+        final Recorder second = new Recorder(Long.MAX_VALUE);
+        instance.subscribe(first);
+        instance.subscribe(second);
+        runScheduled();
+
+        instance.close();
+        runScheduled();
+
+        assertTrue(first.completed);
+        assertTrue(second.completed);
+        assertEquals(1, unregistered);
+        assertEquals(0, instance.getSubscriberCount());
+        final Recorder late = new Recorder(1);
+        instance.subscribe(late);
+        runScheduled();
+        assertTrue(late.completed);
+        assertEquals(1, sinks.size());
+    }
+
+    private SignalPublisher<String> newInstance() {
+        return new SignalPublisher<>("test", sink -> {
+            sinks.add(sink);
+            return () -> unregistered++;
+        }, scheduled::add);
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+    private static class Recorder implements Flow.Subscriber<String> {
+
+        private final long initialDemand;
+        private final List<String> items = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Arrays;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Matches and answers the calls sent through the generated stubs on a mocked connection.
+ */
+final class StubCalls {
+
+    private StubCalls() {
+    }
+
+    /**
+     * Matches a call to a member with the given parameters, for both {@code sendMessage} and
+     * {@code queueCallback}.
+     */
+    static MethodCall call(String member, Object... parameters) {
+        argThat((Message m) -> m instanceof MethodCall c && member.equals(c.getName())
+            && Arrays.deepEquals(parameters(c), parameters));
+        return null;
+    }
+
+    /**
+     * Sets the reply of a matching call as soon as it is sent.
+     */
+    static void reply(DBusConnection connection, Message reply, String member, Object... parameters) {
+        doAnswer(i -> {
+            i.<MethodCall>getArgument(0).setReply(reply);
+            return null;
+        })
+        .when(connection).sendMessage(call(member, parameters));
+    }
+
+    private static Object[] parameters(MethodCall call) {
+        try {
+            final Object[] parameters = call.getParameters();
+            return parameters == null ? new Object[0] : parameters;
+        } catch (DBusException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.StubMethod;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManagerStub;
+import java.lang.reflect.Method;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.messages.Message;
+import org.freedesktop.dbus.messages.MethodCall;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class StubMethodTest {
+
+    @Mock
+    private DBusConnection connection;
+    @Mock
+    private CallbackHandler<Object> handler;
+
+    @Test
+    public void testCall() throws DBusException {
+        final MethodCall result = VoiceCallManagerStub.DIAL.call(connection, Ofono.BUS_NAME, PATH,
+            "1234567890", "default");
+
+        verify(connection).sendMessage(result);
+        assertEquals(Ofono.BUS_NAME, result.getDestination());
+        assertEquals(PATH, result.getPath());
+        assertEquals("org.ofono.VoiceCallManager", result.getInterface());
+        assertEquals("Dial", result.getName());
+        assertEquals("ss", result.getSig());
+        assertEquals(Message.Flags.ASYNC, result.getFlags() & Message.Flags.ASYNC);
+        assertArrayEquals(new Object[]{"1234567890", "default"}, result.getParameters());
+    }
+
+    @Test
+    public void testCallNoParameters() {
+        final MethodCall result = new VoiceCallManagerStub(connection, Ofono.BUS_NAME, PATH).hangupAll();
+
+        verify(connection).sendMessage(result);
+        assertEquals("HangupAll", result.getName());
+        assertNull(result.getSig());
+    }
+
+    @Test
+    public void testCallWithCallback() throws NoSuchMethodException {
+        final ArgumentCaptor<MethodCall> captor = ArgumentCaptor.forClass(MethodCall.class);
+        final InOrder inOrder = inOrder(connection);
+        final Method method = VoiceCallManager.class.getMethod("GetCalls");
+
+        VoiceCallManagerStub.GET_CALLS.callWithCallback(connection, Ofono.BUS_NAME, PATH, handler);
+
+        inOrder.verify(connection).queueCallback(captor.capture(), eq(method), eq(handler));
+        inOrder.verify(connection).sendMessage(captor.getValue());
+        assertEquals(0, captor.getValue().getFlags() & Message.Flags.ASYNC);
+    }
+
+    @Test
+    public void testCallArray() throws DBusException {
+        final ObjectPath[] calls = {new ObjectPath(Ofono.BUS_NAME, PATH), new ObjectPath(Ofono.BUS_NAME, PATH + "2")};
+
+        final MethodCall result = new VoiceCallManagerStub(connection, Ofono.BUS_NAME, PATH).privateChat(calls);
+
+        verify(connection).sendMessage(result);
+        assertEquals("ao", result.getSig());
+        assertEquals(1, result.getParameters().length);
+        assertArrayEquals(calls, (Object[]) result.getParameters()[0]);
+    }
+
+    @Test
+    public void testCallWrongParameters() {
+        assertThrows(DBusExecutionException.class,
+            () -> VoiceCallManagerStub.DIAL.call(connection, Ofono.BUS_NAME, PATH, "1234567890"));
+    }
+
+    @Test
+    public void testMethod() {
+        assertSame(VoiceCallManagerStub.SEND_TONES, VoiceCallManagerStub.method("SendTones"));
+        assertNull(VoiceCallManagerStub.method("Unknown"));
+        assertEquals("org.ofono.VoiceCallManager.SendTones(s)", VoiceCallManagerStub.SEND_TONES.toString());
+    }
+
+    @Test
+    public void testOutOfDate() {
+        assertThrows(IllegalStateException.class,
+            () -> new StubMethod(VoiceCallManager.class, "org.ofono.VoiceCallManager", "Dial", "s", String.class));
+    }
+
+}
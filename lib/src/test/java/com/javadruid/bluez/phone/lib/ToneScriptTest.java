@@ -0,0 +1,46 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.ToneScript.AwaitState;
+import com.javadruid.bluez.phone.lib.ToneScript.Pause;
+import com.javadruid.bluez.phone.lib.ToneScript.Send;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.ACTIVE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ToneScriptTest {
+
+    @Test
+    public void testSteps() {
+        final ToneScript empty = ToneScript.create();
+
+        final ToneScript result = empty
+            .awaitState(ACTIVE)
+            .send("1")
+            .pause(Duration.ofSeconds(2))
+            .send("42#")
+            .awaitState(ACTIVE, Duration.ofSeconds(30));
+
+        assertEquals(List.of(
+            new AwaitState(ACTIVE, null),
+            new Send("1"),
+            new Pause(Duration.ofSeconds(2)),
+            new Send("42#"),
+            new AwaitState(ACTIVE, Duration.ofSeconds(30))), result.getSteps());
+        assertEquals(List.of(), empty.getSteps());
+    }
+
+    @Test
+    public void testInvalid() {
+        final ToneScript instance = ToneScript.create();
+
+        assertThrows(IllegalArgumentException.class, () -> instance.send(""));
+        assertThrows(IllegalArgumentException.class, () -> instance.pause(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> instance.awaitState(ACTIVE, Duration.ofSeconds(-1)));
+        assertThrows(NullPointerException.class, () -> instance.awaitState(null));
+    }
+
+}
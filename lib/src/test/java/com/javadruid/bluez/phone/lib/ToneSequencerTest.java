@@ -0,0 +1,235 @@
+package com.javadruid.bluez.phone.lib;
+
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.freedesktop.dbus.ObjectPath;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
+import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.ACTIVE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ToneSequencerTest {
+
+    private static final long TIMEOUT = 5;
+
+    @Mock
+    private DBusConnection connection;
+    @Mock
+    private VoiceCallManager manager;
+    @Mock
+    private VoiceCall call;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ToneSequencer instance;
+    private DBusSigHandler<PropertyChanged> stateHandler;
+    private DBusSigHandler<CallRemoved> removedHandler;
+
+    @BeforeEach
+    public void setUp() throws DBusException {
+        instance = new ToneSequencer(connection, SignalDispatcher.DIRECT, scheduler);
+        final ArgumentCaptor<DBusSigHandler<PropertyChanged>> stateCaptor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> removedCaptor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        verify(connection).addSigHandler(same(PropertyChanged.class), stateCaptor.capture());
+        verify(connection).addSigHandler(same(CallRemoved.class), removedCaptor.capture());
+        stateHandler = stateCaptor.getValue();
+        removedHandler = removedCaptor.getValue();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        when(manager.sendTonesAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        final List<SentTones> result = instance.run(manager, call,
+            ToneScript.create().send("1").pause(Duration.ofMillis(50)).send("2#"))
+            .get(TIMEOUT, TimeUnit.SECONDS);
+
+        assertEquals(List.of("1", "2#"), result.stream().map(SentTones::tones).toList());
+        assertTrue(Duration.between(result.get(0).sent(), result.get(1).sent()).toMillis() >= 50);
+    }
+
+    @Test
+    public void testAwaitState() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("incoming")));
+        when(manager.sendTonesAsync("1")).thenReturn(CompletableFuture.completedFuture(null));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE).send("1"));
+        verify(call, timeout(TIMEOUT * 1000)).snapshotAsync();
+        stateHandler.handle(new PropertyChanged(PATH, STATE, new Variant<>("alerting")));
+        assertFalse(result.isDone());
+        stateHandler.handle(new PropertyChanged(PATH, STATE, new Variant<>("active")));
+
+        assertEquals(1, result.get(TIMEOUT, TimeUnit.SECONDS).size());
+        assertEquals(0, instance.getWaitingCount());
+    }
+
+    @Test
+    public void testAwaitStateAlreadyReached() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("active")));
+
+        final List<SentTones> result = instance.run(manager, call, ToneScript.create().awaitState(ACTIVE))
+            .get(TIMEOUT, TimeUnit.SECONDS);
+
+        assertEquals(List.of(), result);
+    }
+
+    @Test
+    public void testAwaitStateTimeout() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("incoming")));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE, Duration.ofMillis(20)).send("1"));
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        verify(manager, never()).sendTonesAsync(any());
+        assertEquals(0, instance.getWaitingCount());
+    }
+
+    @Test
+    public void testAwaitStateSnapshotError() {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE).send("1"));
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+        verify(manager, never()).sendTonesAsync(any());
+        assertEquals(0, instance.getWaitingCount());
+    }
+
+    @Test
+    public void testCallRemoved() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("incoming")));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE));
+        verify(call, timeout(TIMEOUT * 1000)).snapshotAsync();
+        removedHandler.handle(new CallRemoved("/modem", new ObjectPath("", PATH)));
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+
+    @Test
+    public void testSendError() {
+        when(manager.sendTonesAsync("1")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().send("1").send("2"));
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+        verify(manager, never()).sendTonesAsync("2");
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("incoming")));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE).send("1"));
+        verify(call, timeout(TIMEOUT * 1000)).snapshotAsync();
+        result.cancel(false);
+        stateHandler.handle(new PropertyChanged(PATH, STATE, new Variant<>("active")));
+        scheduler.submit(() -> {}).get(TIMEOUT, TimeUnit.SECONDS);
+
+        verify(manager, never()).sendTonesAsync(any());
+        assertEquals(0, instance.getWaitingCount());
+    }
+
+    @Test
+    public void testCancelPause() throws Exception {
+        final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1);
+        pool.setRemoveOnCancelPolicy(true);
+        try {
+            final ToneSequencer sequencer = new ToneSequencer(connection, SignalDispatcher.DIRECT, pool);
+            final CompletableFuture<List<SentTones>> result = sequencer.run(manager, call,
+                ToneScript.create().pause(Duration.ofMinutes(1)));
+            pool.submit(() -> {}).get(TIMEOUT, TimeUnit.SECONDS);
+            assertEquals(1, pool.getQueue().size());
+
+            result.cancel(false);
+
+            assertEquals(0, pool.getQueue().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClose() throws DBusException {
+        instance.close();
+
+        verify(connection).removeSigHandler(same(PropertyChanged.class), any(DBusSigHandler.class));
+        verify(connection).removeSigHandler(same(CallRemoved.class), any(DBusSigHandler.class));
+    }
+
+    @Test
+    public void testCloseCancelsRuns() throws Exception {
+        when(call.getPath()).thenReturn(PATH);
+        when(call.snapshotAsync()).thenReturn(CompletableFuture.completedFuture(snapshot("incoming")));
+
+        final CompletableFuture<List<SentTones>> result = instance.run(manager, call,
+            ToneScript.create().awaitState(ACTIVE).send("1"));
+        verify(call, timeout(TIMEOUT * 1000)).snapshotAsync();
+        instance.close();
+
+        assertThrows(CancellationException.class, () -> result.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, instance.getWaitingCount());
+        final CompletableFuture<List<SentTones>> late = instance.run(manager, call, ToneScript.create().send("2"));
+        assertThrows(CancellationException.class, () -> late.get(TIMEOUT, TimeUnit.SECONDS));
+        verify(manager, never()).sendTonesAsync(any());
+    }
+
+    private static VoiceCallSnapshot snapshot(String state) {
+        return VoiceCallSnapshot.of(PATH, Map.of(STATE, state));
+    }
+
+}
@@ -1,26 +1,38 @@
 package com.javadruid.bluez.phone.lib;
 
+import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallAdded;
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.PropertyChanged;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import org.freedesktop.dbus.DBusAsyncReply;
 import org.freedesktop.dbus.DBusMap;
+import org.freedesktop.dbus.DBusMatchRule;
 import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.ObjectPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusInterface;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Properties;
 import org.freedesktop.dbus.messages.Message;
-import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.DBusListType;
 import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -28,24 +40,42 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static com.javadruid.bluez.phone.lib.AbstractDBusSupport.GET_PROPERTIES;
 import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
 import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.StubCalls.call;
+import static com.javadruid.bluez.phone.lib.StubCalls.reply;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.ACTIVE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.HELD;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.INCOMING;
 import static com.javadruid.bluez.phone.lib.VoiceCallManager.EMERGENCY_NUMBERS;
 import static com.javadruid.bluez.phone.lib.VoiceCallManager.HideCallerId.DEFAULT;
 import static com.javadruid.bluez.phone.lib.VoiceCallManager.HideCallerId.ENABLED;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class VoiceCallManagerTest {
 
+    private static final String CALL_PATH = PATH + "/voicecall01";
+
     @Mock
     private DBusConnection connection;
     @Mock
@@ -53,30 +83,42 @@ public class VoiceCallManagerTest {
     @Mock
     private Properties properties;
     @Mock
-    private DBusAsyncReply reply;
-    @Mock
-    private MethodCall call;
-    @Mock
     private Message message;
     @Mock
     private DBusSigHandler<CallAdded> callAddedhandler;
     @Mock
     private DBusSigHandler<CallRemoved> callRemovedhandler;
 
+    @BeforeEach
+    public void setUp() throws DBusException {
+        // The signal counters, registered once per signal class
+        lenient().doNothing().when(connection).addSigHandler(any(DBusMatchRule.class), any());
+    }
+
     @Test
     public void testCreateMultiparty() throws DBusException {
         final VoiceCallManager instance = newTestInstance();
-        mockObjectCall(VoiceCallManager.CREATE_MULTIPARTY, new ObjectPath[]{new ObjectPath("SYSTEM", PATH)}, null, remoteObject);
+        mockObjectCall(VoiceCallManager.CREATE_MULTIPARTY, new ObjectPath[]{new ObjectPath("SYSTEM", PATH)}, null);
         final String[] result = instance.createMultiparty();
 
         assertArrayEquals(new String[]{PATH}, result);
     }
 
+    @Test
+    public void testPrivateChat() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        mockObjectCall(VoiceCallManager.PRIVATE_CHAT, new ObjectPath("SYSTEM", PATH), null,
+            (Object) new ObjectPath[]{new ObjectPath("SYSTEM", PATH), new ObjectPath("SYSTEM", PATH + "2")});
+        final String result = instance.privateChat(new String[]{PATH, PATH + "2"});
+
+        assertEquals(PATH, result);
+    }
+
     @Test
     public void testDialDefault() throws DBusException {
         final VoiceCallManager instance = newTestInstance();
         final String phoneNumber = "1234567890";
-        mockObjectCall(VoiceCallManager.DIAL, new ObjectPath("SYSTEM", PATH), null, remoteObject,
+        mockObjectCall(VoiceCallManager.DIAL, new ObjectPath("SYSTEM", PATH), null,
             phoneNumber, DEFAULT.getText());
         final String result = instance.dial(phoneNumber);
 
@@ -87,19 +129,158 @@ public class VoiceCallManagerTest {
     public void testDial() throws DBusException {
         final VoiceCallManager instance = newTestInstance();
         final String phoneNumber = "1234567890";
-        mockObjectCall(VoiceCallManager.DIAL, new ObjectPath("SYSTEM", PATH), null, remoteObject,
+        mockObjectCall(VoiceCallManager.DIAL, new ObjectPath("SYSTEM", PATH), null,
             phoneNumber, ENABLED.getText());
         final String result = instance.dial(phoneNumber, ENABLED);
 
         assertEquals(PATH, result);
     }
 
+    @Test
+    public void testDialAsync() throws Exception {
+        final VoiceCallManager instance = newTestInstance();
+        final String phoneNumber = "1234567890";
+        doAnswer(i -> {
+            final CallbackHandler<ObjectPath> callback = i.getArgument(2);
+            callback.handle(new ObjectPath("SYSTEM", PATH));
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCallManager.DIAL, phoneNumber, ENABLED.getText()), any(), any());
+
+        final String result = instance.dialAsync(phoneNumber, ENABLED).get();
+
+        assertEquals(PATH, result);
+    }
+
+    @Test
+    public void testDialAsyncError() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        final String phoneNumber = "1234567890";
+        final DBusExecutionException error = new DBusExecutionException("error");
+        doAnswer(i -> {
+            final CallbackHandler<ObjectPath> callback = i.getArgument(2);
+            callback.handleError(error);
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCallManager.DIAL, phoneNumber, DEFAULT.getText()), any(), any());
+
+        final CompletableFuture<String> result = instance.dialAsync(phoneNumber);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertSame(error, exception.getCause());
+    }
+
+    @Test
+    public void testHangupAllAsync() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        doAnswer(i -> {
+            final CallbackHandler<Object> callback = i.getArgument(2);
+            callback.handle(null);
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCallManager.HANGUP_ALL), any(), any());
+
+        final CompletableFuture<Void> result = instance.hangupAllAsync();
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testSendTonesAsyncNotSent() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        doThrow(DBusExecutionException.class)
+            .when(connection)
+            .queueCallback(call(VoiceCallManager.SEND_TONES, "123"), any(), any());
+
+        final CompletableFuture<Void> result = instance.sendTonesAsync("123");
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testGetCallSnapshots() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        mockGetCalls();
+
+        final List<VoiceCallSnapshot> result = instance.getCallSnapshots();
+
+        assertEquals(2, result.size());
+        assertEquals(CALL_PATH, result.get(0).path());
+        assertEquals(ACTIVE, result.get(0).state());
+        assertEquals("1234567890", result.get(0).lineIdentification());
+        assertEquals(CALL_PATH + "2", result.get(1).path());
+        assertEquals(HELD, result.get(1).state());
+    }
+
+    @Test
+    public void testGetCallSnapshotsAsync() throws Exception {
+        final VoiceCallManager instance = newTestInstance();
+        doAnswer(i -> {
+            final CallbackHandler<List<Object[]>> handler = i.getArgument(2);
+            handler.handle(List.<Object[]>of(
+                new Object[]{new DBusPath(CALL_PATH), Map.of(STATE, ACTIVE.getState())}));
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCallManager.GET_CALLS), any(), any());
+
+        final List<VoiceCallSnapshot> result = instance.getCallSnapshotsAsync().get();
+
+        assertEquals(1, result.size());
+        assertEquals(CALL_PATH, result.get(0).path());
+        assertEquals(ACTIVE, result.get(0).state());
+    }
+
+    @Test
+    public void testGetCalls() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        mockGetCalls();
+
+        final Map<String, Object> result = instance.getCalls();
+
+        assertEquals(Map.of(STATE, ACTIVE.getState(), LINE_IDENTIFICATION, "1234567890"), result.get(CALL_PATH));
+        assertEquals(Map.of(STATE, HELD.getState()), result.get(CALL_PATH + "2"));
+    }
+
+    @Test
+    public void testGetCallsError() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        reply(connection, new org.freedesktop.dbus.errors.Error(), VoiceCallManager.GET_CALLS);
+
+        assertTrue(instance.getCallSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testGetVoiceCalls() throws DBusException {
+        final com.javadruid.bluez.phone.lib.interfaces.VoiceCall callObject =
+            mock(com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class);
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH, com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class))
+            .thenReturn(callObject);
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH + "2", com.javadruid.bluez.phone.lib.interfaces.VoiceCall.class))
+            .thenReturn(callObject);
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH, Properties.class))
+            .thenReturn(properties);
+        when(connection.getRemoteObject(BUS_NAME, CALL_PATH + "2", Properties.class))
+            .thenReturn(properties);
+        final VoiceCallManager instance = newTestInstance();
+        mockGetCalls();
+
+        final List<VoiceCall> result = instance.getVoiceCalls();
+
+        assertEquals(CALL_PATH, result.get(0).getPath());
+        assertEquals(ACTIVE, result.get(0).getState());
+        assertEquals("1234567890", result.get(0).getLineIdentification());
+        assertEquals(HELD, result.get(1).getState());
+        verify(connection, never()).sendMessage(call(GET_PROPERTIES));
+    }
+
     @Test
     public void testGetEmergencyNumbers() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_PROPERTIES))
-            .thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_PROPERTIES);
         when(message.getParameters())
             .thenReturn(new Object[]{
                 new DBusMap<>(
@@ -119,10 +300,7 @@ public class VoiceCallManagerTest {
 
     @Test
     public void testGetEmergencyNumbersMissing() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_PROPERTIES))
-            .thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_PROPERTIES);
         when(message.getParameters())
             .thenReturn(new Object[]{
                 new DBusMap<>(
@@ -156,6 +334,42 @@ public class VoiceCallManagerTest {
         verify(handler).accept(Map.entry(PATH, Map.of(propertyName, value)));
     }
 
+    @Test
+    public void testOnCallAddedEvent() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        final List<String> handled = new ArrayList<>();
+        final List<Map<String, Object>> kept = new ArrayList<>();
+        doAnswer(i -> {
+            final DBusSigHandler<CallAdded> signalhandler = i.getArgument(2);
+            signalhandler.handle(new CallAdded(PATH, new DBusPath(CALL_PATH),
+                Map.of(STATE, new Variant<>(INCOMING.getState()), LINE_IDENTIFICATION, new Variant<>("1234567890"))));
+            return null;
+        })
+        .when(connection)
+            .addSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+
+        instance.onCallAddedEvent(e -> {
+            handled.add(e.getManagerPath() + " " + e.getPath() + " " + e.getState() + " " + e.getLineIdentification());
+            assertNull(e.getValue(VoiceCall.Property.NAME));
+            kept.add(e.getProperties());
+        });
+
+        assertEquals(List.of(PATH + " " + CALL_PATH + " INCOMING 1234567890"), handled);
+        assertEquals(List.of(Map.of(STATE, INCOMING.getState(), LINE_IDENTIFICATION, "1234567890")), kept);
+    }
+
+    @Test
+    public void testRemoveCallAddedEvent() throws DBusException {
+        final InOrder inOrder = inOrder(connection);
+        final VoiceCallManager instance = newTestInstance();
+
+        instance.onCallAddedEvent(System.out::println);
+        instance.removeCallAddedEvent();
+
+        inOrder.verify(connection).addSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+        inOrder.verify(connection).removeSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+    }
+
     @Test
     public void testRemoveCallAdded() throws DBusException {
         final InOrder inOrder = inOrder(connection);
@@ -200,6 +414,88 @@ public class VoiceCallManagerTest {
         inOrder.verify(connection).removeSigHandler(same(CallRemoved.class), eq(remoteObject), any(DBusSigHandler.class));
     }
 
+    @Test
+    public void testOnPropertyChange() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        final Consumer<Map.Entry<String, Object>> handler = mock(Consumer.class);
+        final List<String> numbers = List.of("112");
+        doAnswer(i -> {
+            final DBusSigHandler<PropertyChanged> signalhandler = i.getArgument(2);
+            signalhandler.handle(new PropertyChanged(PATH, EMERGENCY_NUMBERS, new Variant<>(numbers, new DBusListType(String.class))));
+            return null;
+        })
+        .when(connection)
+            .addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+        instance.onPropertyChange(handler);
+
+        verify(connection).addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+        verify(handler).accept(Map.entry(EMERGENCY_NUMBERS, numbers));
+    }
+
+    @Test
+    public void testResync() throws DBusException {
+        final VoiceCallManager instance = newTestInstance();
+        mockGetCalls();
+        when(message.getParameters())
+            .thenReturn(new Object[]{List.of(callEntry(CALL_PATH, ACTIVE), callEntry(CALL_PATH + "2", HELD))})
+            .thenReturn(new Object[]{List.of(callEntry(CALL_PATH + "2", HELD), callEntry(CALL_PATH + "3", INCOMING))});
+        final Consumer<Map.Entry<String, Map<String, Object>>> added = mock(Consumer.class);
+        final Consumer<String> removed = mock(Consumer.class);
+        instance.getCalls();
+        instance.onCallAdded(added);
+        instance.onCallRemoved(removed);
+
+        instance.resync();
+
+        verify(removed).accept(CALL_PATH);
+        verify(added).accept(Map.entry(CALL_PATH + "3", Map.of(STATE, INCOMING.getState())));
+        verifyNoMoreInteractions(added, removed);
+        verify(connection, times(2)).addSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+        verify(connection, times(2)).addSigHandler(same(CallRemoved.class), eq(remoteObject), any(DBusSigHandler.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCallAddedEvents() throws Exception {
+        final VoiceCallManager instance = newTestInstance();
+        final ArgumentCaptor<DBusSigHandler<CallAdded>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Collector<Map.Entry<String, Map<String, Object>>> first = new Collector<>(1);
+        final Collector<Map.Entry<String, Map<String, Object>>> second = new Collector<>(1);
+
+        instance.callAddedEvents().subscribe(first);
+        instance.callAddedEvents().subscribe(second);
+        verify(connection).addSigHandler(same(CallAdded.class), eq(remoteObject), captor.capture());
+        captor.getValue().handle(new CallAdded(PATH, new DBusPath(CALL_PATH), Map.of(STATE, new Variant<>("incoming"))));
+
+        final Map.Entry<String, Map<String, Object>> expected = Map.entry(CALL_PATH, Map.of(STATE, "incoming"));
+        assertEquals(List.of(expected), first.await());
+        assertEquals(List.of(expected), second.await());
+        first.cancel();
+        verify(connection, never()).removeSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+        second.cancel();
+        verify(connection).removeSigHandler(CallAdded.class, remoteObject, captor.getValue());
+    }
+
+    @Test
+    public void testResyncPublishes() throws Exception {
+        final VoiceCallManager instance = newTestInstance();
+        mockGetCalls();
+        when(message.getParameters())
+            .thenReturn(new Object[]{List.<Object[]>of(callEntry(CALL_PATH, ACTIVE))})
+            .thenReturn(new Object[]{List.<Object[]>of(callEntry(CALL_PATH + "2", HELD))});
+        final Collector<Map.Entry<String, Map<String, Object>>> added = new Collector<>(1);
+        final Collector<String> removed = new Collector<>(1);
+        instance.getCalls();
+        instance.callAddedEvents().subscribe(added);
+        instance.callRemovedEvents().subscribe(removed);
+
+        instance.resync();
+
+        assertEquals(List.of(Map.entry(CALL_PATH + "2", Map.of(STATE, HELD.getState()))), added.await());
+        assertEquals(List.of(CALL_PATH), removed.await());
+        verify(connection, times(2)).addSigHandler(same(CallAdded.class), eq(remoteObject), any(DBusSigHandler.class));
+    }
+
     private VoiceCallManager newTestInstance() throws DBusException {
         when(connection.getRemoteObject(BUS_NAME, PATH, com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class))
             .thenReturn(remoteObject);
@@ -208,19 +504,86 @@ public class VoiceCallManagerTest {
         return new VoiceCallManager(connection, PATH);
     }
 
+    /**
+     * Takes every event and lets the test wait for a number of them.
+     */
+    static class Collector<T> implements Flow.Subscriber<T> {
+
+        private final List<T> items = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+        private Flow.Subscription subscription;
+
+        Collector(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        List<T> await() throws InterruptedException {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            return items;
+        }
+
+        void cancel() {
+            subscription.cancel();
+        }
+    }
+
+    private void mockGetCalls() throws DBusException {
+        reply(connection, message, VoiceCallManager.GET_CALLS);
+        when(message.getParameters())
+            .thenReturn(new Object[]{
+                List.of(
+                    new Object[]{
+                        new ObjectPath("SYSTEM", CALL_PATH), new DBusMap<String, Variant<?>>(
+                            new Object[][]{
+                                {STATE, new Variant<>(ACTIVE.getState())},
+                                {LINE_IDENTIFICATION, new Variant<>("1234567890")}
+                            })
+                    },
+                    new Object[]{
+                        new ObjectPath("SYSTEM", CALL_PATH + "2"), new DBusMap<String, Variant<?>>(
+                            new Object[][]{
+                                {STATE, new Variant<>(HELD.getState())}
+                            })
+                    })
+            });
+    }
+
+    private static Object[] callEntry(String path, VoiceCallState state) {
+        return new Object[]{
+            new ObjectPath("SYSTEM", path), new DBusMap<String, Variant<?>>(
+                new Object[][]{
+                    {STATE, new Variant<>(state.getState())}
+                })
+        };
+    }
+
     private void mockObjectCall(final String methodName, Object result, Type type,
-            DBusInterface remoteObject, Object... parameters) throws DBusException {
-        mockObjectCall(remoteObject, methodName, parameters);
-        when(call.getReply()).thenReturn(message);
+            Object... parameters) throws DBusException {
+        reply(connection, message, methodName, parameters);
         if (result != null) {
             final Variant<?> variant = type != null? new Variant<>(result, type): new Variant<>(result);
             when(message.getParameters()).thenReturn(new Object[]{variant});
         }
     }
 
-    private void mockObjectCall(DBusInterface remoteObject, final String methodName, Object... parameters) {
-        when(connection.callMethodAsync(remoteObject, methodName, parameters)).thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-    }
-
 }
@@ -0,0 +1,92 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Map;
+import java.util.Optional;
+import org.freedesktop.dbus.connections.impl.DBusConnection;
+import org.freedesktop.dbus.exceptions.DBusException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.ACTIVE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+public class VoiceCallRegistryTest {
+
+    @Mock
+    private DBusConnection connection;
+
+    @Test
+    public void testGet() throws DBusException {
+        final VoiceCallRegistry instance = new VoiceCallRegistry(connection);
+
+        final VoiceCall first = instance.get(PATH);
+        final VoiceCall second = instance.get(PATH);
+
+        assertSame(first, second);
+        assertEquals(PATH, first.getPath());
+        assertEquals(1, instance.getMisses());
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getLiveCount());
+    }
+
+    @Test
+    public void testGetSeeded() throws DBusException {
+        final VoiceCallRegistry instance = new VoiceCallRegistry(connection);
+
+        final VoiceCall result = instance.get(PATH, Map.of(STATE, ACTIVE.getState()));
+
+        assertEquals(ACTIVE, result.getState());
+    }
+
+    @Test
+    public void testGetUncached() throws DBusException {
+        final VoiceCallRegistry instance = VoiceCallRegistry.uncached(connection);
+
+        final VoiceCall first = instance.get(PATH);
+        final VoiceCall second = instance.get(PATH, Map.of(STATE, ACTIVE.getState()));
+
+        assertNotSame(first, second);
+        assertEquals(ACTIVE, second.getState());
+        assertEquals(2, instance.getMisses());
+        assertEquals(0, instance.getLiveCount());
+    }
+
+    @Test
+    public void testCallerIdResolver() throws DBusException {
+        final VoiceCallRegistry instance = new VoiceCallRegistry(connection);
+        final VoiceCall voiceCall = instance.get(PATH, Map.of(LINE_IDENTIFICATION, "1234567890"));
+
+        instance.setCallerIdResolver(number -> Optional.of("Name of " + number));
+
+        assertEquals(Optional.of("Name of 1234567890"), voiceCall.snapshot().contactName());
+    }
+
+    @Test
+    public void testEvict() throws DBusException {
+        final VoiceCallRegistry instance = new VoiceCallRegistry(connection);
+
+        final VoiceCall first = instance.get(PATH);
+        instance.evict(PATH);
+        instance.evict(PATH);
+        final VoiceCall second = instance.get(PATH);
+
+        assertNotSame(first, second);
+        assertTrue(first.isClosed());
+        assertThrows(IllegalStateException.class, first::snapshot);
+        assertEquals(2, instance.getMisses());
+        assertEquals(0, instance.getHits());
+        assertEquals(1, instance.getEvictions());
+        assertEquals(1, instance.getLiveCount());
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.javadruid.bluez.phone.lib;
+
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.OfonoTests.START_TIME_INSTANT;
+import static com.javadruid.bluez.phone.lib.OfonoTests.START_TIME_VALUE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.INCOMING_LINE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.INFORMATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.START_TIME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
+import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.INCOMING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VoiceCallSnapshotTest {
+
+    @Test
+    public void testOf() {
+        final VoiceCallSnapshot result = VoiceCallSnapshot.of(PATH, Map.of(
+            STATE, INCOMING.getState(),
+            START_TIME, START_TIME_VALUE,
+            INCOMING_LINE, "line",
+            INFORMATION, "information"));
+
+        assertEquals(PATH, result.path());
+        assertEquals(INCOMING, result.state());
+        assertEquals(Optional.of(START_TIME_INSTANT), result.startTime());
+        assertEquals(Optional.of("line"), result.incomingLine());
+        assertEquals(Optional.of("information"), result.information());
+    }
+
+    @Test
+    public void testOfMissingProperties() {
+        final VoiceCallSnapshot result = VoiceCallSnapshot.of(PATH, Map.of());
+
+        assertEquals("", result.lineIdentification());
+        assertEquals("", result.name());
+        assertNull(result.state());
+        assertTrue(result.startTime().isEmpty());
+        assertTrue(result.icon().isEmpty());
+        assertFalse(result.multiparty());
+        assertFalse(result.emergency());
+        assertFalse(result.remoteHeld());
+        assertFalse(result.remoteMultiparty());
+        assertTrue(result.contactName().isEmpty());
+    }
+
+    @Test
+    public void testOfInvalidStartTime() {
+        final VoiceCallSnapshot result = VoiceCallSnapshot.of(PATH, Map.of(
+            STATE, INCOMING.getState(),
+            START_TIME, "18/10/2026 05:12"));
+
+        assertEquals(INCOMING, result.state());
+        assertTrue(result.startTime().isEmpty());
+    }
+
+    @Test
+    public void testOfCallerId() {
+        final VoiceCallSnapshot result = VoiceCallSnapshot.of(PATH, Map.of(LINE_IDENTIFICATION, "1234567890"),
+            number -> Optional.of("Name of " + number));
+
+        assertEquals(Optional.of("Name of 1234567890"), result.contactName());
+    }
+
+}
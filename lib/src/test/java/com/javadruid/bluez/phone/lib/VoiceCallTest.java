@@ -2,20 +2,29 @@ package com.javadruid.bluez.phone.lib;
 
 import com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState;
 import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.PropertyChanged;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
-import org.freedesktop.dbus.DBusAsyncReply;
 import org.freedesktop.dbus.DBusMap;
+import org.freedesktop.dbus.DBusMatchRule;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
 import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.interfaces.Properties;
+import org.freedesktop.dbus.interfaces.Properties.PropertiesChanged;
 import org.freedesktop.dbus.messages.Message;
-import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.Variant;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -23,17 +32,32 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static com.javadruid.bluez.phone.lib.AbstractDBusSupport.GET_PROPERTIES;
 import static com.javadruid.bluez.phone.lib.Ofono.BUS_NAME;
 import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.OfonoTests.START_TIME_INSTANT;
+import static com.javadruid.bluez.phone.lib.OfonoTests.START_TIME_VALUE;
+import static com.javadruid.bluez.phone.lib.StubCalls.call;
+import static com.javadruid.bluez.phone.lib.StubCalls.reply;
+import static com.javadruid.bluez.phone.lib.VoiceCall.EMERGENCY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.ICON;
+import static com.javadruid.bluez.phone.lib.VoiceCall.LINE_IDENTIFICATION;
+import static com.javadruid.bluez.phone.lib.VoiceCall.MULTIPARTY;
+import static com.javadruid.bluez.phone.lib.VoiceCall.NAME;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_HELD;
+import static com.javadruid.bluez.phone.lib.VoiceCall.REMOTE_MULTIPARTY;
 import static com.javadruid.bluez.phone.lib.VoiceCall.START_TIME;
 import static com.javadruid.bluez.phone.lib.VoiceCall.STATE;
 import static com.javadruid.bluez.phone.lib.VoiceCall.VoiceCallState.ACTIVE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,18 +71,17 @@ public class VoiceCallTest {
     @Mock
     private Properties properties;
     @Mock
-    private DBusAsyncReply reply;
-    @Mock
-    private MethodCall call;
-    @Mock
     private Message message;
 
+    @BeforeEach
+    public void setUp() throws DBusException {
+        // The signal counters, registered once per signal class
+        lenient().doNothing().when(connection).addSigHandler(any(DBusMatchRule.class), any());
+    }
+
     @Test
     public void testGetState() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_PROPERTIES))
-            .thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_PROPERTIES);
         when(message.getParameters())
             .thenReturn(new Object[]{
                 new DBusMap<>(
@@ -76,16 +99,12 @@ public class VoiceCallTest {
 
     @Test
     public void testGetStartTime() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_PROPERTIES))
-            .thenReturn(reply);
-        final Instant now = Instant.now();
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_PROPERTIES);
         when(message.getParameters())
             .thenReturn(new Object[]{
                 new DBusMap<>(
                     new Object[][]{
-                        {START_TIME, new Variant<>(now.toString())}
+                        {START_TIME, new Variant<>(START_TIME_VALUE)}
                     }
                 )
             });
@@ -93,7 +112,109 @@ public class VoiceCallTest {
 
         final Instant result = instance.getStartTime().get();
 
-        assertEquals(now, result);
+        assertEquals(START_TIME_INSTANT, result);
+    }
+
+    @Test
+    public void testGetStartTimeInvalid() throws DBusException {
+        reply(connection, message, GET_PROPERTIES);
+        when(message.getParameters())
+            .thenReturn(new Object[]{Map.of(START_TIME, new Variant<>("2026-10-18T04:12:31.123Z"))});
+        final VoiceCall instance = newTestInstance();
+
+        assertTrue(instance.getStartTime().isEmpty());
+    }
+
+    @Test
+    public void testAnswerAsync() throws DBusException {
+        final VoiceCall instance = newTestInstance();
+        doAnswer(i -> {
+            final CallbackHandler<Object> callback = i.getArgument(2);
+            callback.handle(null);
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCall.ANSWER), any(), any());
+
+        final CompletableFuture<Void> result = instance.answerAsync();
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testDeflect() throws DBusException {
+        final VoiceCall instance = newTestInstance();
+        reply(connection, message, VoiceCall.DEFLECT, "1234567890");
+
+        instance.deflect("1234567890");
+
+        verify(connection).sendMessage(call(VoiceCall.DEFLECT, "1234567890"));
+    }
+
+    @Test
+    public void testDeflectAsync() throws DBusException {
+        final VoiceCall instance = newTestInstance();
+
+        instance.deflectAsync("1234567890");
+
+        verify(connection).queueCallback(call(VoiceCall.DEFLECT, "1234567890"), any(), any());
+    }
+
+    @Test
+    public void testSnapshot() throws DBusException {
+        reply(connection, message, GET_PROPERTIES);
+        when(message.getParameters())
+            .thenReturn(new Object[]{
+                new DBusMap<>(
+                    new Object[][]{
+                        {LINE_IDENTIFICATION, new Variant<>("1234567890")},
+                        {NAME, new Variant<>("name")},
+                        {MULTIPARTY, new Variant<>(false)},
+                        {STATE, new Variant<>(ACTIVE.getState())},
+                        {START_TIME, new Variant<>(START_TIME_VALUE)},
+                        {ICON, new Variant<>((byte) 3)},
+                        {EMERGENCY, new Variant<>(false)},
+                        {REMOTE_HELD, new Variant<>(true)},
+                        {REMOTE_MULTIPARTY, new Variant<>(false)}
+                    }
+                )
+            });
+        final VoiceCall instance = newTestInstance();
+
+        final VoiceCallSnapshot result = instance.snapshot();
+
+        assertEquals(new VoiceCallSnapshot(PATH, "1234567890", Optional.empty(), "name", false, ACTIVE,
+            Optional.of(START_TIME_INSTANT), Optional.empty(), Optional.of((byte) 3), false, true, false), result);
+        assertEquals(result, instance.snapshot());
+        verify(connection, times(1)).sendMessage(call(GET_PROPERTIES));
+    }
+
+    @Test
+    public void testSnapshotAsync() throws Exception {
+        final VoiceCall instance = newTestInstance();
+        doAnswer(i -> {
+            final CallbackHandler<Object> callback = i.getArgument(2);
+            callback.handle(Map.of(
+                LINE_IDENTIFICATION, new Variant<>("1234567890"),
+                NAME, new Variant<>("name"),
+                MULTIPARTY, new Variant<>(false),
+                STATE, new Variant<>(ACTIVE.getState()),
+                START_TIME, new Variant<>(START_TIME_VALUE),
+                EMERGENCY, new Variant<>(false),
+                REMOTE_HELD, new Variant<>(false),
+                REMOTE_MULTIPARTY, new Variant<>(false)));
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(GET_PROPERTIES), any(), any());
+
+        final VoiceCallSnapshot result = instance.snapshotAsync().get();
+
+        assertEquals(new VoiceCallSnapshot(PATH, "1234567890", Optional.empty(), "name", false, ACTIVE,
+            Optional.of(START_TIME_INSTANT), Optional.empty(), Optional.empty(), false, false, false), result);
+        // Only the asynchronous call itself, no blocking one
+        verify(connection, times(1)).sendMessage(call(GET_PROPERTIES));
     }
 
     @Test
@@ -115,6 +236,104 @@ public class VoiceCallTest {
         verify(handler).accept(Map.entry(PATH, reason));
     }
 
+    @Test
+    public void testOnPropertyChange() throws DBusException {
+        final VoiceCall instance = newTestInstance();
+        final Consumer<Map.Entry<String, Object>> handler = mock(Consumer.class);
+        doAnswer(i -> {
+            final DBusSigHandler<PropertyChanged> signalhandler = i.getArgument(2);
+            signalhandler.handle(new PropertyChanged(PATH, STATE, new Variant<>(ACTIVE.getState())));
+            return null;
+        })
+        .when(connection)
+            .addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+        instance.onPropertyChange(handler);
+
+        verify(connection).addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+        verify(connection, never()).addSigHandler(same(PropertiesChanged.class), eq(properties), any(DBusSigHandler.class));
+        verify(handler).accept(Map.entry(STATE, ACTIVE.getState()));
+    }
+
+    @Test
+    public void testOnPropertyEvent() throws DBusException {
+        final VoiceCall instance = newTestInstance();
+        final List<Object> handled = new ArrayList<>();
+        doAnswer(i -> {
+            final DBusSigHandler<PropertyChanged> signalhandler = i.getArgument(2);
+            signalhandler.handle(new PropertyChanged(PATH, STATE, new Variant<>(ACTIVE.getState())));
+            signalhandler.handle(new PropertyChanged(PATH, NAME, new Variant<>("Alice")));
+            return null;
+        })
+        .when(connection)
+            .addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+
+        instance.onPropertyEvent(e -> {
+            handled.add(e.getProperty());
+            handled.add(e.getState());
+            handled.add(e.toEntry());
+        });
+
+        assertEquals(Arrays.asList(
+            VoiceCall.Property.STATE, ACTIVE, Map.entry(STATE, ACTIVE.getState()),
+            VoiceCall.Property.NAME, null, Map.entry(NAME, "Alice")), handled);
+    }
+
+    @Test
+    public void testDisconnectReasonEvents() throws Exception {
+        final VoiceCall instance = newTestInstance();
+        final List<DBusSigHandler<DisconnectReason>> handlers = new ArrayList<>();
+        doAnswer(i -> handlers.add(i.getArgument(2)))
+        .when(connection)
+            .addSigHandler(same(DisconnectReason.class), eq(remoteObject), any(DBusSigHandler.class));
+        final VoiceCallManagerTest.Collector<Map.Entry<String, String>> collector = new VoiceCallManagerTest.Collector<>(1);
+
+        instance.disconnectReasonEvents().subscribe(collector);
+        handlers.get(0).handle(new DisconnectReason(PATH, "remote"));
+
+        assertEquals(List.of(Map.entry(PATH, "remote")), collector.await());
+    }
+
+    @Test
+    public void testPropertyChangeEvents() throws Exception {
+        final VoiceCall instance = newTestInstance();
+        final List<DBusSigHandler<PropertyChanged>> handlers = new ArrayList<>();
+        doAnswer(i -> handlers.add(i.getArgument(2)))
+        .when(connection)
+            .addSigHandler(same(PropertyChanged.class), eq(remoteObject), any(DBusSigHandler.class));
+        final VoiceCallManagerTest.Collector<Map.Entry<String, Object>> first = new VoiceCallManagerTest.Collector<>(1);
+        final VoiceCallManagerTest.Collector<Map.Entry<String, Object>> second = new VoiceCallManagerTest.Collector<>(1);
+
+        instance.propertyChangeEvents().subscribe(first);
+        instance.propertyChangeEvents().subscribe(second);
+        handlers.get(0).handle(new PropertyChanged(PATH, STATE, new Variant<>(ACTIVE.getState())));
+
+        assertEquals(1, handlers.size());
+        assertEquals(List.of(Map.entry(STATE, ACTIVE.getState())), first.await());
+        assertEquals(List.of(Map.entry(STATE, ACTIVE.getState())), second.await());
+    }
+
+    @Test
+    public void testPropertyChangedUpdatesCache() throws DBusException {
+        reply(connection, message, GET_PROPERTIES);
+        when(message.getParameters())
+            .thenReturn(new Object[]{
+                new DBusMap<>(
+                    new Object[][]{
+                        {STATE, new Variant<>(VoiceCallState.INCOMING.getState())}
+                    }
+                )
+            });
+        final VoiceCall instance = newTestInstance();
+        final ArgumentCaptor<DBusSigHandler<PropertyChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+
+        assertEquals(VoiceCallState.INCOMING, instance.getState());
+        verify(connection).addSigHandler(same(PropertyChanged.class), eq(remoteObject), captor.capture());
+        captor.getValue().handle(new PropertyChanged(PATH, STATE, new Variant<>(ACTIVE.getState())));
+
+        assertEquals(ACTIVE, instance.getState());
+        verify(connection, times(1)).sendMessage(call(GET_PROPERTIES));
+    }
+
     @Test
     public void testRemoveCallAdded() throws DBusException {
         final InOrder inOrder = inOrder(connection);
@@ -1,26 +1,67 @@
 package com.javadruid.bluez.phone.lib;
 
 import com.javadruid.bluez.phone.lib.interfaces.Manager;
+import com.javadruid.bluez.phone.lib.interfaces.Manager.ModemAdded;
+import com.javadruid.bluez.phone.lib.interfaces.Manager.ModemRemoved;
+import com.javadruid.bluez.phone.lib.interfaces.Modem;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCall.DisconnectReason;
+import com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.CallRemoved;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import org.freedesktop.dbus.DBusAsyncReply;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.freedesktop.dbus.DBusMap;
+import org.freedesktop.dbus.DBusMatchRule;
+import org.freedesktop.dbus.DBusPath;
 import org.freedesktop.dbus.ObjectPath;
 import org.freedesktop.dbus.connections.impl.DBusConnection;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
+import org.freedesktop.dbus.interfaces.CallbackHandler;
+import org.freedesktop.dbus.interfaces.DBus.NameOwnerChanged;
+import org.freedesktop.dbus.interfaces.DBusSigHandler;
 import org.freedesktop.dbus.messages.Message;
 import org.freedesktop.dbus.messages.MethodCall;
 import org.freedesktop.dbus.types.Variant;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static com.javadruid.bluez.phone.lib.VoiceCalls.GET_MODEMS;
+import static com.javadruid.bluez.phone.lib.VoiceCalls.ONLINE;
+import static java.lang.Boolean.FALSE;
 import static com.javadruid.bluez.phone.lib.OfonoTests.PATH;
+import static com.javadruid.bluez.phone.lib.StubCalls.call;
+import static com.javadruid.bluez.phone.lib.StubCalls.reply;
 import static java.lang.Boolean.TRUE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,10 +73,6 @@ public class VoiceCallsTest {
     @Mock
     private Manager remoteObject;
     @Mock
-    private DBusAsyncReply reply;
-    @Mock
-    private MethodCall call;
-    @Mock
     private Message message;
 
     @Test
@@ -47,10 +84,7 @@ public class VoiceCallsTest {
 
     @Test
     public void testGetVoiceCallManagers() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_MODEMS))
-            .thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_MODEMS);
         when(message.getParameters())
             .thenReturn(new Object[]{
                 Collections.singletonList(new Object[]{
@@ -67,18 +101,158 @@ public class VoiceCallsTest {
         assertEquals(PATH, result.get(0).toString());
     }
 
+    @Test
+    public void testGetVoiceCallManagersListedOnce() throws DBusException {
+        mockGetModems(PATH, TRUE);
+        final VoiceCalls instance = newInstance();
+
+        final VoiceCallManager first = instance.getVoiceCallManagers().findFirst().get();
+        final VoiceCallManager second = instance.getVoiceCallManagers().findFirst().get();
+
+        assertSame(first, second);
+        verify(connection, times(1)).sendMessage(call(GET_MODEMS));
+    }
+
+    @Test
+    public void testGetVoiceCallManagersOffline() throws DBusException {
+        mockGetModems(PATH, FALSE);
+        final VoiceCalls instance = newInstance();
+
+        assertEquals(0, instance.getVoiceCallManagers().count());
+    }
+
+    @Test
+    public void testModemAdded() throws DBusException {
+        mockGetModems();
+        final ArgumentCaptor<DBusSigHandler<ModemAdded>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Consumer<VoiceCallManager> handler = mock(Consumer.class);
+        final VoiceCalls instance = newInstance();
+        instance.onVoiceCallManagerAdded(handler);
+        verify(connection).addSigHandler(same(ModemAdded.class), eq(remoteObject), captor.capture());
+
+        captor.getValue().handle(new ModemAdded("/", new DBusPath(PATH), Map.of(ONLINE, new Variant<>(TRUE))));
+
+        final List<VoiceCallManager> result = instance.getVoiceCallManagers().toList();
+        assertEquals(PATH, result.get(0).getPath());
+        verify(handler).accept(result.get(0));
+    }
+
+    @Test
+    public void testModemRemoved() throws DBusException {
+        mockGetModems(PATH, TRUE);
+        final ArgumentCaptor<DBusSigHandler<ModemRemoved>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Consumer<VoiceCallManager> handler = mock(Consumer.class);
+        final VoiceCalls instance = newInstance();
+        final VoiceCallManager manager = instance.getVoiceCallManagers().findFirst().get();
+        instance.onVoiceCallManagerRemoved(handler);
+        verify(connection).addSigHandler(same(ModemRemoved.class), eq(remoteObject), captor.capture());
+
+        captor.getValue().handle(new ModemRemoved("/", new DBusPath(PATH)));
+
+        assertEquals(0, instance.getVoiceCallManagers().count());
+        verify(handler).accept(manager);
+    }
+
+    @Test
+    public void testModemOnlineChanged() throws DBusException {
+        mockGetModems(PATH, FALSE);
+        final ArgumentCaptor<DBusSigHandler<Modem.PropertyChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Consumer<VoiceCallManager> added = mock(Consumer.class);
+        final Consumer<VoiceCallManager> removed = mock(Consumer.class);
+        final VoiceCalls instance = newInstance();
+        instance.onVoiceCallManagerAdded(added);
+        instance.onVoiceCallManagerRemoved(removed);
+        verify(connection).addSigHandler(same(Modem.PropertyChanged.class), captor.capture());
+
+        captor.getValue().handle(new Modem.PropertyChanged(PATH, ONLINE, new Variant<>(TRUE)));
+        final VoiceCallManager manager = instance.getVoiceCallManagers().findFirst().get();
+        captor.getValue().handle(new Modem.PropertyChanged(PATH, "Powered", new Variant<>(FALSE)));
+        captor.getValue().handle(new Modem.PropertyChanged(PATH, ONLINE, new Variant<>(FALSE)));
+
+        assertEquals(0, instance.getVoiceCallManagers().count());
+        verify(added).accept(manager);
+        verify(removed).accept(manager);
+    }
+
     @Test
     public void testGetVoiceCallManagerThrowsException() throws DBusException {
-        when(connection.callMethodAsync(remoteObject, GET_MODEMS))
-            .thenReturn(reply);
-        when(reply.getCall()).thenReturn(call);
-        when(call.getReply()).thenReturn(message);
+        reply(connection, message, GET_MODEMS);
         when(message.getParameters()).thenThrow(DBusException.class);
         final VoiceCalls instance = newInstance();
 
         assertThrows(RuntimeException.class, () -> instance.getVoiceCallManagers());
     }
 
+    @Test
+    public void testHangupAll() throws DBusException {
+        mockGetModems(PATH, TRUE, PATH + "2", TRUE, PATH + "3", TRUE, PATH + "4", TRUE);
+        mockVoiceCallManager(PATH);
+        mockVoiceCallManager(PATH + "2");
+        mockVoiceCallManager(PATH + "3");
+        mockVoiceCallManager(PATH + "4");
+        final DBusExecutionException error = new DBusExecutionException("busy");
+        doAnswer(i -> {
+            final String path = i.<MethodCall>getArgument(0).getPath();
+            final CallbackHandler<Void> handler = i.getArgument(2);
+            if (path.equals(PATH)) {
+                handler.handle(null);
+            } else if (path.equals(PATH + "3")) {
+                handler.handleError(error);
+            } else if (!path.equals(PATH + "2")) {
+                throw new IllegalStateException("Disconnected");
+            }
+            return null;
+        })
+        .when(connection)
+            .queueCallback(call(VoiceCallManager.HANGUP_ALL), any(), any());
+        final VoiceCalls instance = newInstance();
+
+        final ModemResults<Void> result = instance.hangupAll(Duration.ofMillis(100));
+
+        assertEquals(List.of(PATH), List.copyOf(result.values().keySet()));
+        assertEquals(List.of(PATH + "2", PATH + "3", PATH + "4"), List.copyOf(result.errors().keySet()));
+        assertEquals(VoiceCallManager.HANGUP_ALL,
+            assertInstanceOf(DBusTimeoutException.class, result.errors().get(PATH + "2")).getMethod());
+        assertSame(error, result.errors().get(PATH + "3"));
+        assertInstanceOf(IllegalStateException.class, result.errors().get(PATH + "4"));
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void testForEachVoiceCallManagerCancelsOnTimeout() throws DBusException {
+        mockGetModems(PATH, TRUE);
+        mockVoiceCallManager(PATH);
+        final CompletableFuture<Void> call = new CompletableFuture<>();
+        final VoiceCalls instance = newInstance();
+
+        final ModemResults<Void> result = instance.forEachVoiceCallManager(VoiceCallManager.HANGUP_ALL,
+            m -> call, Duration.ofMillis(20)).join();
+
+        assertInstanceOf(DBusTimeoutException.class, result.errors().get(PATH));
+        assertTrue(call.isCancelled());
+    }
+
+    @Test
+    public void testGetCallSnapshotsNoModems() throws DBusException {
+        mockGetModems();
+        final VoiceCalls instance = newInstance();
+
+        final ModemResults<List<VoiceCallSnapshot>> result = instance.getCallSnapshots(Duration.ofMillis(100));
+
+        assertTrue(result.values().isEmpty());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void testForEachVoiceCallManagerListingFails() throws DBusException {
+        doThrow(IllegalStateException.class).when(connection).sendMessage(call(GET_MODEMS));
+        final VoiceCalls instance = newInstance();
+
+        final CompletableFuture<ModemResults<Void>> result = instance.hangupAllAsync(Duration.ofMillis(100));
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
     @Test
     public void testVoiceCall() throws DBusException {
         final VoiceCalls instance = newInstance();
@@ -88,15 +262,225 @@ public class VoiceCallsTest {
         assertEquals(PATH, result.toString());
     }
 
+    @Test
+    public void testVoiceCallCached() throws DBusException {
+        final VoiceCalls instance = newInstance();
+
+        final VoiceCall result = instance.voiceCall(PATH);
+
+        assertSame(result, instance.voiceCall(PATH));
+        assertEquals(1, instance.getVoiceCallRegistry().getHits());
+    }
+
+    @Test
+    public void testVoiceCallSeeded() throws DBusException {
+        final VoiceCalls instance = newInstance();
+
+        final VoiceCall result = instance.voiceCall(PATH, Map.of(VoiceCall.LINE_IDENTIFICATION, "1234567890"));
+
+        assertEquals("1234567890", result.getLineIdentification());
+        assertSame(result, instance.voiceCall(PATH));
+    }
+
+    @Test
+    public void testCallRemovedEvicts() throws DBusException {
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final VoiceCalls instance = newInstance();
+        verify(connection).addSigHandler(same(CallRemoved.class), captor.capture());
+        final VoiceCall voiceCall = instance.voiceCall(PATH);
+
+        captor.getValue().handle(new CallRemoved("/modem", new DBusPath(PATH)));
+
+        assertEquals(0, instance.getVoiceCallRegistry().getLiveCount());
+        assertNotSame(voiceCall, instance.voiceCall(PATH));
+    }
+
+    @Test
+    public void testDisconnectReasonEvicts() throws DBusException {
+        final ArgumentCaptor<DBusSigHandler<DisconnectReason>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final VoiceCalls instance = newInstance();
+        verify(connection).addSigHandler(same(DisconnectReason.class), captor.capture());
+        instance.voiceCall(PATH);
+
+        captor.getValue().handle(new DisconnectReason(PATH, "remote"));
+
+        assertEquals(0, instance.getVoiceCallRegistry().getLiveCount());
+    }
+
+    @Test
+    public void testOfonoRestart() throws DBusException {
+        reply(connection, message, GET_MODEMS);
+        when(message.getParameters())
+            .thenReturn(new Object[]{List.<Object[]>of(modem(PATH, TRUE))})
+            .thenReturn(new Object[]{List.of(modem(PATH, FALSE), modem(PATH + "2", TRUE))});
+        final ArgumentCaptor<DBusSigHandler<NameOwnerChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Consumer<VoiceCallManager> added = mock(Consumer.class);
+        final Consumer<VoiceCallManager> removed = mock(Consumer.class);
+        final VoiceCalls instance = newInstance();
+        final VoiceCallManager before = instance.getVoiceCallManagers().findFirst().get();
+        instance.onVoiceCallManagerAdded(added);
+        instance.onVoiceCallManagerRemoved(removed);
+        verify(connection).addSigHandler(same(NameOwnerChanged.class), captor.capture());
+
+        captor.getValue().handle(new NameOwnerChanged("/org/freedesktop/DBus", Ofono.BUS_NAME, ":1.1", ""));
+        captor.getValue().handle(new NameOwnerChanged("/org/freedesktop/DBus", "org.bluez", "", ":1.3"));
+        verify(connection, times(1)).sendMessage(call(GET_MODEMS));
+        captor.getValue().handle(new NameOwnerChanged("/org/freedesktop/DBus", Ofono.BUS_NAME, "", ":1.2"));
+
+        // Resynchronised in the background
+        verify(added, timeout(1000)).accept(any());
+        verify(connection, times(2)).sendMessage(call(GET_MODEMS));
+        verify(removed).accept(before);
+        final List<VoiceCallManager> result = instance.getVoiceCallManagers().toList();
+        assertEquals(1, result.size());
+        assertEquals(PATH + "2", result.get(0).getPath());
+        verify(added).accept(result.get(0));
+    }
+
+    @Test
+    public void testCloseDuringResync() throws Exception {
+        final CountDownLatch sent = new CountDownLatch(2);
+        final CountDownLatch listed = new CountDownLatch(1);
+        doAnswer(i -> {
+            sent.countDown();
+            if (sent.getCount() == 0) {
+                listed.await(5, TimeUnit.SECONDS);
+            }
+            i.<MethodCall>getArgument(0).setReply(message);
+            return null;
+        })
+        .when(connection).sendMessage(call(GET_MODEMS));
+        when(message.getParameters()).thenReturn(new Object[]{List.<Object[]>of(modem(PATH, TRUE))});
+        final ArgumentCaptor<DBusSigHandler<NameOwnerChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final Consumer<VoiceCallManager> removed = mock(Consumer.class);
+        final VoiceCalls instance = newInstance();
+        instance.getVoiceCallManagers();
+        instance.onVoiceCallManagerRemoved(removed);
+        verify(connection).addSigHandler(same(NameOwnerChanged.class), captor.capture());
+
+        captor.getValue().handle(new NameOwnerChanged("/org/freedesktop/DBus", Ofono.BUS_NAME, "", ":1.2"));
+        assertTrue(sent.await(1, TimeUnit.SECONDS));
+        // The modems are not held whilst listing them
+        assertTimeoutPreemptively(Duration.ofSeconds(1), instance::close);
+        listed.countDown();
+
+        verify(removed, after(200).never()).accept(any());
+    }
+
+    @Test
+    public void testOtherNameOwnerChanged() throws DBusException {
+        final ArgumentCaptor<DBusSigHandler<NameOwnerChanged>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusMatchRule> rules = ArgumentCaptor.forClass(DBusMatchRule.class);
+        final ArgumentCaptor<DBusSigHandler<NameOwnerChanged>> counters = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final DBusMetrics metrics = DBusMetrics.getInstance();
+        newInstance();
+        verify(connection).addSigHandler(same(NameOwnerChanged.class), captor.capture());
+        verify(connection, atLeastOnce()).addSigHandler(rules.capture(), counters.capture());
+        final DBusSigHandler<NameOwnerChanged> counter =
+            counters.getAllValues().get(rules.getAllValues().stream().map(DBusMatchRule::getMember).toList()
+                .indexOf("NameOwnerChanged"));
+        final long received = metrics.getSignalCount(NameOwnerChanged.class);
+
+        final NameOwnerChanged signal = new NameOwnerChanged("/org/freedesktop/DBus", "org.bluez", "", ":1.3");
+        captor.getValue().handle(signal);
+        counter.handle(signal);
+
+        assertEquals(received, metrics.getSignalCount(NameOwnerChanged.class));
+    }
+
+    @Test
+    public void testSetCallerIdResolverPreloads(@TempDir Path directory) throws DBusException {
+        final List<Runnable> tasks = new ArrayList<>();
+        final AddressBook addressBook = new AddressBook(directory.resolve("contacts.vcf"), tasks::add, Duration.ZERO);
+        final VoiceCalls instance = newInstance();
+
+        instance.setCallerIdResolver(addressBook);
+
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testSetCallerIdResolverPreloadsAny() throws DBusException {
+        final CallerIdResolver resolver = mock(CallerIdResolver.class);
+        final VoiceCalls instance = newInstance();
+
+        instance.setCallerIdResolver(resolver);
+
+        verify(resolver).preload();
+        assertSame(resolver, instance.getVoiceCallRegistry().getCallerIdResolver());
+    }
+
+    @Test
+    public void testSetJournal(@TempDir Path directory) throws Exception {
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> captor = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final VoiceCalls instance = newInstance();
+        try (CallJournal journal = new CallJournal(directory)) {
+            instance.setJournal(journal);
+            verify(connection, times(2)).addSigHandler(same(CallRemoved.class), captor.capture());
+
+            captor.getAllValues().get(1).handle(new CallRemoved("/modem", new DBusPath(PATH)));
+            instance.setJournal(null);
+
+            assertEquals(1, journal.getRecordCount());
+            verify(connection).removeSigHandler(CallRemoved.class, captor.getAllValues().get(1));
+        }
+    }
+
     @Test
     public void testClose() throws Exception {
         final VoiceCalls instance = newInstance();
 
+        instance.close();
         instance.close();
 
         verify(connection).close();
     }
 
+    @Test
+    public void testCloseRemovesHandlers() throws Exception {
+        mockGetModems();
+        final ArgumentCaptor<DBusSigHandler<CallRemoved>> callRemoved = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final ArgumentCaptor<DBusSigHandler<ModemAdded>> modemAdded = ArgumentCaptor.forClass(DBusSigHandler.class);
+        final VoiceCalls instance = newInstance();
+        instance.getVoiceCallManagers();
+        verify(connection).addSigHandler(same(CallRemoved.class), callRemoved.capture());
+        verify(connection).addSigHandler(same(ModemAdded.class), eq(remoteObject), modemAdded.capture());
+
+        instance.close();
+
+        verify(connection).removeSigHandler(CallRemoved.class, callRemoved.getValue());
+        verify(connection).removeSigHandler(same(DisconnectReason.class), any(DBusSigHandler.class));
+        verify(connection).removeSigHandler(same(NameOwnerChanged.class), any(DBusSigHandler.class));
+        verify(connection).removeSigHandler(ModemAdded.class, remoteObject, modemAdded.getValue());
+        verify(connection).removeSigHandler(same(ModemRemoved.class), eq(remoteObject), any(DBusSigHandler.class));
+        verify(connection).removeSigHandler(same(Modem.PropertyChanged.class), any(DBusSigHandler.class));
+    }
+
+    private void mockGetModems(Object... pathAndOnline) throws DBusException {
+        reply(connection, message, GET_MODEMS);
+        final List<Object[]> modems = new ArrayList<>();
+        for (int i = 0; i < pathAndOnline.length; i += 2) {
+            modems.add(modem((String) pathAndOnline[i], (Boolean) pathAndOnline[i + 1]));
+        }
+        when(message.getParameters()).thenReturn(new Object[]{modems});
+    }
+
+    private void mockVoiceCallManager(String path) throws DBusException {
+        // Each manager also asks for its Properties object, which may stay null here
+        lenient().when(connection.getRemoteObject(Ofono.BUS_NAME, path,
+                com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class))
+            .thenReturn(mock(com.javadruid.bluez.phone.lib.interfaces.VoiceCallManager.class));
+    }
+
+    private static Object[] modem(String path, Boolean online) {
+        return new Object[]{
+            new ObjectPath("SYSTEM", path), new DBusMap<String, Variant<?>>(
+                new Object[][]{
+                    {ONLINE, new Variant<>(online)}
+            })
+        };
+    }
+
     private VoiceCalls newInstance() throws DBusException {
         when(connection.getRemoteObject(Ofono.BUS_NAME, "/", Manager.class))
             .thenReturn(remoteObject);
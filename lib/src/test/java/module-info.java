@@ -5,6 +5,7 @@ open module com.javadruid.bluez.phone.lib {
     requires org.mockito;
     requires org.mockito.junit.jupiter;
     requires org.freedesktop.dbus;
+    requires java.management;
 
     exports com.javadruid.bluez.phone.lib;
 }
@@ -0,0 +1,180 @@
+package com.javadruid.bluez.phone.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code <Interface>Stub} class next to each D-Bus interface annotated with
+ * {@code @GenerateStub}. The stub holds a {@code StubMethod} per method, with its D-Bus
+ * signature computed here from the parameter types, a lookup by member name and a typed
+ * method per call, so that sending a call needs neither reflection nor signature lookup.
+ */
+@SupportedAnnotationTypes(DBusStubProcessor.GENERATE_STUB)
+public class DBusStubProcessor extends AbstractProcessor {
+
+    static final String GENERATE_STUB = "com.javadruid.bluez.phone.lib.interfaces.GenerateStub";
+    private static final String INTERFACE_NAME = "org.freedesktop.dbus.annotations.DBusInterfaceName";
+    private static final Set<String> UNSUPPORTED = Set.of(
+        "org.freedesktop.dbus.annotations.DBusMemberName",
+        "org.freedesktop.dbus.annotations.MethodNoReply");
+    private static final Map<String, String> SIGNATURES = Map.ofEntries(
+        Map.entry("java.lang.Boolean", "b"),
+        Map.entry("java.lang.Byte", "y"),
+        Map.entry("java.lang.Short", "n"),
+        Map.entry("java.lang.Integer", "i"),
+        Map.entry("java.lang.Long", "x"),
+        Map.entry("java.lang.Double", "d"),
+        Map.entry("java.lang.String", "s"),
+        Map.entry("org.freedesktop.dbus.DBusPath", "o"),
+        Map.entry("org.freedesktop.dbus.ObjectPath", "o"),
+        Map.entry("org.freedesktop.dbus.types.UInt16", "q"),
+        Map.entry("org.freedesktop.dbus.types.UInt32", "u"),
+        Map.entry("org.freedesktop.dbus.types.UInt64", "t"),
+        Map.entry("org.freedesktop.dbus.types.Variant", "v"));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.INTERFACE) {
+                    error(element, "@GenerateStub only applies to interfaces");
+                } else {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        final List<StubSource.Method> methods = new ArrayList<>();
+        final Set<String> members = new HashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.STATIC) || method.isDefault()) {
+                continue;
+            }
+            final String member = method.getSimpleName().toString();
+            if (!members.add(member)) {
+                error(method, "Overloaded D-Bus method " + member + " is not supported");
+                return;
+            }
+            if (method.getAnnotationMirrors().stream().anyMatch(a -> UNSUPPORTED.contains(annotationName(a)))) {
+                error(method, "Method annotations are not supported by @GenerateStub");
+                return;
+            }
+            final StringBuilder signature = new StringBuilder();
+            final List<StubSource.Parameter> parameters = new ArrayList<>();
+            for (VariableElement parameter : method.getParameters()) {
+                final TypeMirror parameterType = parameter.asType();
+                if (!appendSignature(signature, parameterType)) {
+                    error(parameter, "No D-Bus signature for " + parameterType);
+                    return;
+                }
+                parameters.add(new StubSource.Parameter(parameter.getSimpleName().toString(),
+                    parameterType.toString(), processingEnv.getTypeUtils().erasure(parameterType).toString()));
+            }
+            methods.add(new StubSource.Method(member, signature.toString(), parameters));
+        }
+        final StubSource source = new StubSource(
+            processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString(),
+            type.getSimpleName().toString(), interfaceName(type), methods);
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(source.getQualifiedName(), type).openWriter())) {
+            source.write(out);
+        } catch (IOException ex) {
+            error(type, "Could not write " + source.getQualifiedName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return {@code false} if the type has no D-Bus signature
+     */
+    private boolean appendSignature(StringBuilder signature, TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN -> signature.append('b');
+            case BYTE -> signature.append('y');
+            case SHORT -> signature.append('n');
+            case INT -> signature.append('i');
+            case LONG -> signature.append('x');
+            case DOUBLE -> signature.append('d');
+            case ARRAY -> {
+                signature.append('a');
+                return appendSignature(signature, ((ArrayType) type).getComponentType());
+            }
+            case DECLARED -> {
+                final DeclaredType declared = (DeclaredType) type;
+                final String name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+                final List<? extends TypeMirror> arguments = declared.getTypeArguments();
+                if (SIGNATURES.containsKey(name)) {
+                    signature.append(SIGNATURES.get(name));
+                } else if ((name.equals("java.util.List") || name.equals("java.util.Collection"))
+                        && arguments.size() == 1) {
+                    signature.append('a');
+                    return appendSignature(signature, arguments.get(0));
+                } else if (name.equals("java.util.Map") && arguments.size() == 2) {
+                    signature.append("a{");
+                    final boolean known = appendSignature(signature, arguments.get(0))
+                        && appendSignature(signature, arguments.get(1));
+                    signature.append('}');
+                    return known;
+                } else {
+                    return false;
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String interfaceName(TypeElement type) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (INTERFACE_NAME.equals(annotationName(annotation))) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e
+                        : annotation.getElementValues().entrySet()) {
+                    if (e.getKey().getSimpleName().contentEquals("value")) {
+                        return (String) e.getValue().getValue();
+                    }
+                }
+            }
+        }
+        return type.getQualifiedName().toString();
+    }
+
+    private static String annotationName(AnnotationMirror annotation) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
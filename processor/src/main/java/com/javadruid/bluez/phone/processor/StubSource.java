@@ -0,0 +1,111 @@
+package com.javadruid.bluez.phone.processor;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.lang.model.SourceVersion;
+
+/**
+ * The source of the stub generated for one interface.
+ */
+record StubSource(String packageName, String interfaceName, String dbusName, List<Method> methods) {
+
+    static final String STUB_METHOD = "com.javadruid.bluez.phone.lib.interfaces.StubMethod";
+
+    record Method(String member, String signature, List<Parameter> parameters) {
+
+        String constant() {
+            return member.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+        }
+
+        String javaName() {
+            final String name = Character.toLowerCase(member.charAt(0)) + member.substring(1);
+            return SourceVersion.isKeyword(name) ? name + "_" : name;
+        }
+    }
+
+    /**
+     * @param erasure the erased type, whose class literal finds the interface method
+     */
+    record Parameter(String name, String type, String erasure) {
+
+        /**
+         * @return the argument passed on to the varargs of {@code StubMethod}, where an array
+         * must stay a single parameter rather than be spread
+         */
+        String argument() {
+            return type.endsWith("[]") ? "(Object) " + name : name;
+        }
+    }
+
+    String getSimpleName() {
+        return interfaceName + "Stub";
+    }
+
+    String getQualifiedName() {
+        return packageName.isEmpty() ? getSimpleName() : packageName + '.' + getSimpleName();
+    }
+
+    void write(PrintWriter out) {
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("import " + STUB_METHOD + ";");
+        out.println("import org.freedesktop.dbus.connections.AbstractConnection;");
+        out.println("import org.freedesktop.dbus.messages.MethodCall;");
+        out.println();
+        out.println("/**");
+        out.println(" * Typed calls to {@link " + interfaceName + "} with signatures computed at build time.");
+        out.println(" * Generated from the interface by DBusStubProcessor; do not edit.");
+        out.println(" */");
+        out.println("public final class " + getSimpleName() + " {");
+        out.println();
+        for (Method method : methods) {
+            out.println("    public static final StubMethod " + method.constant() + " = new StubMethod("
+                + interfaceName + ".class, " + quote(dbusName) + ", " + quote(method.member()) + ", "
+                + quote(method.signature())
+                + method.parameters().stream().map(p -> ", " + p.erasure() + ".class").collect(Collectors.joining())
+                + ");");
+        }
+        out.println();
+        out.println("    private final AbstractConnection connection;");
+        out.println("    private final String busName;");
+        out.println("    private final String objectPath;");
+        out.println();
+        out.println("    public " + getSimpleName() + "(AbstractConnection connection, String busName, String objectPath) {");
+        out.println("        this.connection = connection;");
+        out.println("        this.busName = busName;");
+        out.println("        this.objectPath = objectPath;");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * @return the method with the given member name, or {@code null} if there is none");
+        out.println("     */");
+        out.println("    public static StubMethod method(String member) {");
+        out.println("        return switch (member) {");
+        for (Method method : methods) {
+            out.println("            case " + quote(method.member()) + " -> " + method.constant() + ";");
+        }
+        out.println("            default -> null;");
+        out.println("        };");
+        out.println("    }");
+        for (Method method : methods) {
+            out.println();
+            out.println("    public MethodCall " + method.javaName() + "("
+                + method.parameters().stream().map(p -> p.type() + " " + p.name()).collect(Collectors.joining(", "))
+                + ") {");
+            out.println("        return " + method.constant() + ".call(connection, busName, objectPath"
+                + method.parameters().stream().map(p -> ", " + p.argument()).collect(Collectors.joining())
+                + ");");
+            out.println("    }");
+        }
+        out.println();
+        out.println("}");
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+}
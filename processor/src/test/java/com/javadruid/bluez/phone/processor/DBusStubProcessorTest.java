@@ -0,0 +1,161 @@
+package com.javadruid.bluez.phone.processor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.freedesktop.dbus.interfaces.DBusInterface;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DBusStubProcessorTest {
+
+    private static final String PACKAGE = "com.javadruid.bluez.phone.lib.interfaces";
+    private static final String GENERATE_STUB = """
+        package com.javadruid.bluez.phone.lib.interfaces;
+        public @interface GenerateStub {
+        }
+        """;
+    // Only what the generated stubs use
+    private static final String STUB_METHOD = """
+        package com.javadruid.bluez.phone.lib.interfaces;
+        import org.freedesktop.dbus.connections.AbstractConnection;
+        import org.freedesktop.dbus.interfaces.DBusInterface;
+        import org.freedesktop.dbus.messages.MethodCall;
+        public final class StubMethod {
+            public StubMethod(Class<? extends DBusInterface> type, String interfaceName, String member,
+                    String signature, Class<?>... parameterTypes) {
+            }
+            public MethodCall call(AbstractConnection connection, String busName, String objectPath,
+                    Object... parameters) {
+                return null;
+            }
+        }
+        """;
+
+    @TempDir
+    private Path directory;
+    private final StringWriter diagnostics = new StringWriter();
+
+    @Test
+    public void testSignatures() throws IOException {
+        final boolean result = compile("Sample", """
+            package com.javadruid.bluez.phone.lib.interfaces;
+            import java.util.List;
+            import java.util.Map;
+            import org.freedesktop.dbus.DBusPath;
+            import org.freedesktop.dbus.annotations.DBusInterfaceName;
+            import org.freedesktop.dbus.interfaces.DBusInterface;
+            import org.freedesktop.dbus.types.UInt32;
+            import org.freedesktop.dbus.types.Variant;
+            @GenerateStub
+            @DBusInterfaceName("org.ofono.Sample")
+            public interface Sample extends DBusInterface {
+                DBusPath Dial(String number, String hideCallerId);
+                Map<String, Variant<?>> GetProperties();
+                void SetProperty(String property, Variant<?> value);
+                void PrivateChat(DBusPath[] calls);
+                void Primitives(boolean b, byte y, short n, int i, long x, double d);
+                void Containers(List<UInt32> values, Map<String, List<Boolean>> flags);
+            }
+            """);
+
+        assertTrue(result, diagnostics::toString);
+        final String stub = Files.readString(directory.resolve("com/javadruid/bluez/phone/lib/interfaces/SampleStub.java"));
+        assertTrue(stub.contains("DIAL = new StubMethod(Sample.class, \"org.ofono.Sample\", \"Dial\", \"ss\", "
+            + "java.lang.String.class, java.lang.String.class);"), stub);
+        assertTrue(stub.contains("\"GetProperties\", \"\");"), stub);
+        assertTrue(stub.contains("\"SetProperty\", \"sv\", java.lang.String.class, "
+            + "org.freedesktop.dbus.types.Variant.class);"), stub);
+        assertTrue(stub.contains("\"PrivateChat\", \"ao\", org.freedesktop.dbus.DBusPath[].class);"), stub);
+        assertTrue(stub.contains("PRIVATE_CHAT.call(connection, busName, objectPath, (Object) calls);"), stub);
+        assertTrue(stub.contains("\"Primitives\", \"bynixd\","), stub);
+        assertTrue(stub.contains("\"Containers\", \"aua{sab}\", java.util.List.class, java.util.Map.class);"), stub);
+        assertTrue(stub.contains("case \"Dial\" -> DIAL;"), stub);
+        assertTrue(stub.contains("public MethodCall setProperty(java.lang.String property, "
+            + "org.freedesktop.dbus.types.Variant<?> value) {"), stub);
+    }
+
+    @Test
+    public void testUnsupportedType() throws IOException {
+        final boolean result = compile("Sample", """
+            package com.javadruid.bluez.phone.lib.interfaces;
+            import org.freedesktop.dbus.interfaces.DBusInterface;
+            @GenerateStub
+            public interface Sample extends DBusInterface {
+                void Send(Object value);
+            }
+            """);
+
+        assertFalse(result);
+        assertTrue(diagnostics.toString().contains("No D-Bus signature for java.lang.Object"), diagnostics::toString);
+    }
+
+    @Test
+    public void testOverload() throws IOException {
+        final boolean result = compile("Sample", """
+            package com.javadruid.bluez.phone.lib.interfaces;
+            import org.freedesktop.dbus.interfaces.DBusInterface;
+            @GenerateStub
+            public interface Sample extends DBusInterface {
+                void Send(String value);
+                void Send(int value);
+            }
+            """);
+
+        assertFalse(result);
+        assertTrue(diagnostics.toString().contains("Overloaded D-Bus method Send"), diagnostics::toString);
+    }
+
+    @Test
+    public void testNotAnInterface() throws IOException {
+        final boolean result = compile("Sample", """
+            package com.javadruid.bluez.phone.lib.interfaces;
+            @GenerateStub
+            public class Sample {
+            }
+            """);
+
+        assertFalse(result);
+        assertTrue(diagnostics.toString().contains("@GenerateStub only applies to interfaces"), diagnostics::toString);
+    }
+
+    private boolean compile(String name, String source) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null)) {
+            final List<JavaFileObject> sources = new ArrayList<>();
+            sources.add(source("GenerateStub", GENERATE_STUB));
+            sources.add(source("StubMethod", STUB_METHOD));
+            sources.add(source(name, source));
+            final String dbus = Path.of(DBusInterface.class.getProtectionDomain().getCodeSource().getLocation()
+                .getPath()).toString();
+            final JavaCompiler.CompilationTask task = compiler.getTask(diagnostics, files, null,
+                List.of("-d", directory.toString(), "-s", directory.toString(), "-classpath", dbus),
+                null, sources);
+            task.setProcessors(List.of(new DBusStubProcessor()));
+            return task.call();
+        }
+    }
+
+    private static JavaFileObject source(String name, String source) {
+        return new SimpleJavaFileObject(
+                java.net.URI.create("string:///" + PACKAGE.replace('.', '/') + "/" + name + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+    }
+
+}
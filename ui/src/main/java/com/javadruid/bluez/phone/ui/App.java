@@ -1,6 +1,12 @@
 package com.javadruid.bluez.phone.ui;
 
+import com.javadruid.bluez.phone.lib.AddressBook;
+import com.javadruid.bluez.phone.lib.DBusMetrics;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -9,10 +15,24 @@ import java.io.IOException;
 
 public class App extends Application {
 
+    /**
+     * Exits once started ({@code --exit-after=started}), to time startup, or once ready
+     * ({@code --exit-after=ready}), for a class data sharing training run.
+     */
+    private static final String EXIT_AFTER = "exit-after";
+    /**
+     * The vCard file naming the callers ({@code --contacts=}), indexed once connected.
+     */
+    private static final String CONTACTS = "contacts";
+    private static final Path DEFAULT_CONTACTS = Path.of(System.getProperty("user.home"), ".bluetooth-phone",
+        "contacts.vcf");
+
     private PrimaryController controller;
 
     @Override
     public void start(Stage stage) throws IOException {
+        final StartupMetrics startup = new StartupMetrics();
+        DBusMetrics.getInstance().registerMBean();
         final FXMLLoader loader = new FXMLLoader(getClass().getResource( "primary.fxml"));
         final Scene scene = new Scene(loader.load());
         controller = loader.getController();
@@ -20,7 +40,19 @@ public class App extends Application {
         stage.setScene(scene);
         stage.setResizable(false);
         stage.setTitle("Bluetooth dialer");
+        startup.watchFirstFrame(scene);
         stage.show();
+        final AddressBook contacts = new AddressBook(Optional.ofNullable(getParameters().getNamed().get(CONTACTS))
+            .map(Path::of)
+            .orElse(DEFAULT_CONTACTS));
+        final CompletableFuture<Void> ready = controller.start(startup, contacts);
+        startup.markStarted();
+        switch (getParameters().getNamed().getOrDefault(EXIT_AFTER, "")) {
+            case "started" -> Platform.runLater(Platform::exit);
+            case "ready" -> ready.thenRun(Platform::exit);
+            default -> {
+            }
+        }
     }
 
     public static void main(String[] args) {
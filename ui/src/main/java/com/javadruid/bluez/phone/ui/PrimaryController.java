@@ -1,11 +1,25 @@
 package com.javadruid.bluez.phone.ui;
 
+import com.javadruid.bluez.phone.lib.BusExecutor;
+import com.javadruid.bluez.phone.lib.CallTimeouts;
+import com.javadruid.bluez.phone.lib.CallerIdResolver;
+import com.javadruid.bluez.phone.lib.PropertyEvent;
+import com.javadruid.bluez.phone.lib.SignalDispatcher;
 import com.javadruid.bluez.phone.lib.VoiceCall;
 import com.javadruid.bluez.phone.lib.VoiceCallManager;
+import com.javadruid.bluez.phone.lib.VoiceCallSnapshot;
 import com.javadruid.bluez.phone.lib.VoiceCalls;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -19,7 +33,27 @@ import javafx.scene.input.KeyEvent;
 
 public class PrimaryController implements Closeable {
 
-    private final VoiceCalls voiceCalls = new VoiceCalls();
+    private static final String DIAL = "dial";
+    private static final String SEARCHING = "Looking for phones...";
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DIAL_TIMEOUT = Duration.ofSeconds(15);
+
+    static {
+        CallTimeouts.getInstance().setDefault(DEFAULT_TIMEOUT);
+        CallTimeouts.getInstance().set("Dial", DIAL_TIMEOUT);
+    }
+
+    // Opened in the background by start(), so the window does not wait for the bus
+    private volatile VoiceCalls voiceCalls;
+    private boolean closed;
+    private volatile CallerIdResolver callerIds = CallerIdResolver.NONE;
+    // The phones found at startup or added later, with their calls being watched. FX thread only
+    private final Map<VoiceCallManager, CompletableFuture<Void>> watched = new HashMap<>();
+
+    private final UpdateCoalescer updates = new UpdateCoalescer();
+
+    // Blocking bus work runs on virtual threads; the results come back on the FX thread
+    private final BusExecutor bus = new BusExecutor(Platform::runLater);
 
     @FXML
     TextArea phonenumber;
@@ -33,14 +67,30 @@ public class PrimaryController implements Closeable {
     Label info;
 
     public void initialize() {
-        final ObservableList<VoiceCallManager> items = phones.getItems();
-        voiceCalls.getVoiceCallManagers()
-            .peek(vcm -> {
-                vcm.onCallAdded(this::onCallAdded);
-                vcm.onCallRemoved(this::onCallRemoved);
-            })
-            .forEach(items::add);
-        if(!items.isEmpty()) phones.getSelectionModel().selectFirst();
+        updates.start();
+    }
+
+    /**
+     * Connects to the bus and discovers the modems in the background once the window is shown.
+     * Each phone is added as soon as its handlers are registered; the dialer is ready once all
+     * of them are. Phones that come and go afterwards are added and removed as they do.
+     * @param callerIds names the callers shown
+     * @return completes on the FX thread once the dialer is ready, whether or not phones were found
+     */
+    public CompletableFuture<Void> start(StartupMetrics startup, CallerIdResolver callerIds) {
+        this.callerIds = callerIds;
+        info.setText(SEARCHING);
+        return bus.supply(this::connect)
+            .thenCompose(managers -> CompletableFuture.allOf(managers.stream()
+                    .map(this::addPhone)
+                    .toArray(CompletableFuture[]::new)))
+            .exceptionally(ex -> showError("Could not list phones", ex))
+            .thenRun(() -> {
+                if (SEARCHING.equals(info.getText())) {
+                    info.setText("");
+                }
+                startup.markReady(phones.getItems().size());
+            });
     }
 
     @FXML
@@ -55,18 +105,30 @@ public class PrimaryController implements Closeable {
 
     @FXML
     void onCall(ActionEvent actionEvent) {
-        phones.getSelectionModel().getSelectedItem().dial(phonenumber.getText());
+        final VoiceCallManager phone = phones.getSelectionModel().getSelectedItem();
+        // None while still looking for phones
+        if (phone == null) {
+            return;
+        }
+        phone.dialAsync(phonenumber.getText())
+            .exceptionally(ex -> {
+                updates.submit(DIAL, () -> showError("Could not dial", ex));
+                return null;
+            });
     }
 
     @FXML
     void onAnswer(ActionEvent actionEvent) {
         final VoiceCall call = (VoiceCall)((Node)actionEvent.getSource()).getUserData();
-        call.answer();
+        bus.run(call::answer)
+            .exceptionally(ex -> showError("Could not answer", ex));
     }
 
     @FXML
     void onHang(ActionEvent actionEvent) {
-        ((VoiceCall)((Node)actionEvent.getSource()).getUserData()).hangup();
+        final VoiceCall call = (VoiceCall)((Node)actionEvent.getSource()).getUserData();
+        bus.run(call::hangup)
+            .exceptionally(ex -> showError("Could not hang up", ex));
     }
 
     public void enterKey(KeyEvent e) {
@@ -79,7 +141,16 @@ public class PrimaryController implements Closeable {
 
     @Override
     public void close() throws IOException {
-        voiceCalls.close();
+        updates.stop();
+        bus.close();
+        final VoiceCalls opened;
+        synchronized (this) {
+            closed = true;
+            opened = voiceCalls;
+        }
+        if (opened != null) {
+            opened.close();
+        }
     }
 
     private void enterBackspace() {
@@ -93,34 +164,113 @@ public class PrimaryController implements Closeable {
         phonenumber.setText(phonenumber.getText().concat(text));
     }
 
+    private List<VoiceCallManager> connect() {
+        final VoiceCalls opened = new VoiceCalls(new SignalDispatcher(
+            Executors.newVirtualThreadPerTaskExecutor(), 64, SignalDispatcher.OverflowPolicy.DROP_OLDEST));
+        final boolean open;
+        synchronized (this) {
+            open = !closed;
+            if (open) {
+                voiceCalls = opened;
+            }
+        }
+        if (!open) {
+            // Closed while connecting: the connection would otherwise keep the JVM running
+            try {
+                opened.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            throw new CancellationException("Dialer closed");
+        }
+        opened.setCallerIdResolver(callerIds);
+        // Set before listing so that no phone goes unnoticed; the ones listed are notified too
+        opened.onVoiceCallManagerAdded(vcm -> Platform.runLater(() -> addPhone(vcm)));
+        opened.onVoiceCallManagerRemoved(vcm -> Platform.runLater(() -> removePhone(vcm)));
+        return opened.getVoiceCallManagers().toList();
+    }
+
+    /**
+     * Watches the calls of a phone and then shows it, unless it is added already.
+     * @return completes once the phone is shown
+     */
+    private CompletableFuture<Void> addPhone(VoiceCallManager vcm) {
+        return watched.computeIfAbsent(vcm, k -> bus.run(() -> watch(vcm))
+            .thenRun(() -> showPhone(vcm))
+            .exceptionally(ex -> showError("Could not watch phone " + vcm, ex)));
+    }
+
+    private void removePhone(VoiceCallManager vcm) {
+        watched.remove(vcm);
+        final ObservableList<VoiceCallManager> items = phones.getItems();
+        if (items.remove(vcm) && phones.getSelectionModel().getSelectedItem() == null && !items.isEmpty()) {
+            phones.getSelectionModel().selectFirst();
+        }
+    }
+
+    private void watch(VoiceCallManager vcm) {
+        vcm.onCallAdded(this::onCallAdded);
+        vcm.onCallRemoved(this::onCallRemoved);
+    }
+
+    private void showPhone(VoiceCallManager vcm) {
+        // Unless it went away whilst being watched
+        if (!watched.containsKey(vcm)) {
+            return;
+        }
+        final ObservableList<VoiceCallManager> items = phones.getItems();
+        items.add(vcm);
+        if (items.size() == 1) phones.getSelectionModel().selectFirst();
+    }
+
+    private Void showError(String text, Throwable ex) {
+        final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        info.setText(text + ": " + cause.getMessage());
+        return null;
+    }
+
+    // Signal handlers run on the dispatcher's virtual threads, so blocking reads hold up neither
+    // the FX thread nor signal delivery
     private void onCallAdded(Map.Entry<String, Map<String, Object>> e) {
-        final VoiceCall voiceCall = voiceCalls.voiceCall(e.getKey());
-        Platform.runLater(() -> {
-            info.setText(voiceCall.getLineIdentification());
-            answer.setDisable(false);
-            hang.setDisable(false);
-            answer.setUserData(voiceCall);
-            hang.setUserData(voiceCall);
-        });
-        voiceCall.onPropertyChange(p -> onVoiceCallPropertyChange(p, voiceCall));
+        final long received = System.nanoTime();
+        final VoiceCall voiceCall = voiceCalls.voiceCall(e.getKey(), e.getValue());
+        final String caller = caller(voiceCall.snapshot());
+        updates.submit(voiceCall.getPath(), () -> showCall(voiceCall, caller), received);
+        voiceCall.onPropertyEvent(p -> onVoiceCallPropertyEvent(p, voiceCall));
     }
 
     private void onCallRemoved(String path) {
-        Platform.runLater(() -> {
-            answer.setUserData(null);
-            hang.setUserData(null);
-            answer.setDisable(true);
-            hang.setDisable(true);
-            info.setText("");
-        });
-    }
-
-    private void onVoiceCallPropertyChange(Map.Entry<String, Object> e, VoiceCall voiceCall) {
-        Platform.runLater(() -> {
-            switch (e.getKey()) {
-                case VoiceCall.STATE -> info.setText(e.getValue() + " voiceCall from \n" + voiceCall.getLineIdentification());
-            }
-        });
+        updates.submit(path, this::clearCall);
+    }
+
+    private void onVoiceCallPropertyEvent(PropertyEvent e, VoiceCall voiceCall) {
+        if (e.getProperty() == VoiceCall.Property.STATE) {
+            final long received = System.nanoTime();
+            final String text = e.getValue() + " voiceCall from \n" + caller(voiceCall.snapshot());
+            updates.submit(voiceCall.getPath(), () -> showCall(voiceCall, text), received);
+        }
+    }
+
+    private static String caller(VoiceCallSnapshot snapshot) {
+        return snapshot.contactName()
+            .map(name -> name + " (" + snapshot.lineIdentification() + ")")
+            .orElse(snapshot.lineIdentification());
+    }
+
+    private void showCall(VoiceCall voiceCall, String text) {
+        info.setText(text);
+        answer.setDisable(false);
+        hang.setDisable(false);
+        answer.setUserData(voiceCall);
+        hang.setUserData(voiceCall);
+    }
+
+    private void clearCall() {
+        answer.setUserData(null);
+        hang.setUserData(null);
+        answer.setDisable(true);
+        hang.setDisable(true);
+        info.setText("");
     }
 
 }
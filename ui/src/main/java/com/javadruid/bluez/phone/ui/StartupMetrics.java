@@ -0,0 +1,89 @@
+package com.javadruid.bluez.phone.ui;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Times the dialer's startup from the start of the JVM: until {@code Application.start} returns,
+ * until the first frame of the window is laid out, and until every modem found at startup is
+ * listed and watched, i.e. ready to dial.
+ * Times are {@code -1} until reached.
+ */
+public class StartupMetrics {
+
+    private static final System.Logger logger = System.getLogger(StartupMetrics.class.getName());
+
+    private final long createdNanos = System.nanoTime();
+    private final long createdMillis;
+    private volatile long startedMillis = -1;
+    private volatile long firstFrameMillis = -1;
+    private volatile long readyMillis = -1;
+    private volatile int modemCount;
+
+    public StartupMetrics() {
+        this(ProcessHandle.current().info().startInstant().orElseGet(Instant::now));
+    }
+
+    StartupMetrics(Instant jvmStart) {
+        createdMillis = Math.max(0, Duration.between(jvmStart, Instant.now()).toMillis());
+    }
+
+    /**
+     * Records the end of {@code Application.start}.
+     */
+    public void markStarted() {
+        startedMillis = elapsedMillis();
+        logger.log(System.Logger.Level.INFO, "App.start completed {0,number,#} ms after JVM start", startedMillis);
+    }
+
+    /**
+     * Records the first frame once the scene has been laid out for its first pulse.
+     */
+    public void watchFirstFrame(Scene scene) {
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                // The scene is iterating over its listeners, so remove this one afterwards
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                if (firstFrameMillis < 0) {
+                    firstFrameMillis = elapsedMillis();
+                    logger.log(System.Logger.Level.INFO, "First frame {0,number,#} ms after JVM start", firstFrameMillis);
+                }
+            }
+        };
+        scene.addPostLayoutPulseListener(listener);
+    }
+
+    /**
+     * Records that the dialer is ready, with the modems that were found at startup.
+     */
+    public void markReady(int modems) {
+        modemCount = modems;
+        readyMillis = elapsedMillis();
+        logger.log(System.Logger.Level.INFO, "Ready with {0} phones {1,number,#} ms after JVM start", modems, readyMillis);
+    }
+
+    public long getTimeToStartedMillis() {
+        return startedMillis;
+    }
+
+    public long getTimeToFirstFrameMillis() {
+        return firstFrameMillis;
+    }
+
+    public long getTimeToReadyMillis() {
+        return readyMillis;
+    }
+
+    public int getModemCount() {
+        return modemCount;
+    }
+
+    private long elapsedMillis() {
+        return createdMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.javadruid.bluez.phone.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Collects UI updates coming from signal threads and applies them once per pulse. Only the latest
+ * update submitted for each key is applied; the older ones are discarded as stale.
+ */
+public class UpdateCoalescer extends AnimationTimer {
+
+    private static final System.Logger logger = System.getLogger(UpdateCoalescer.class.getName());
+
+    private final Map<String, Update> pending = new LinkedHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile long applied;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+
+    /**
+     * Schedules an update for the next pulse, replacing any update still pending for the same key.
+     * May be called from any thread.
+     */
+    public void submit(String key, Runnable update) {
+        submit(key, update, System.nanoTime());
+    }
+
+    /**
+     * Like {@link #submit(String, Runnable)}, for an update caused by an event received earlier,
+     * e.g. before the bus was read to build it, so that its latency includes that read.
+     * @param received when the event was received, from {@link System#nanoTime()}
+     */
+    public void submit(String key, Runnable update, long received) {
+        submitted.increment();
+        synchronized (pending) {
+            if (pending.remove(key) != null) {
+                coalesced.increment();
+            }
+            pending.put(key, new Update(update, received));
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        final List<Update> updates;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            updates = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Update update : updates) {
+            update.action().run();
+            final long latency = System.nanoTime() - update.received();
+            applied++;
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        logger.log(System.Logger.Level.INFO,
+            "UI updates: {0} submitted, {1} coalesced, {2} applied, latency mean {3} us, max {4} us",
+            getSubmitted(), getCoalesced(), getApplied(),
+            getMeanLatencyNanos() / 1000, getMaxLatencyNanos() / 1000);
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * @return mean time from the event behind an update being received to the update being
+     * applied on screen
+     */
+    public long getMeanLatencyNanos() {
+        final long count = applied;
+        return count == 0 ? 0 : totalLatencyNanos / count;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    private record Update(Runnable action, long received) {
+    }
+
+}
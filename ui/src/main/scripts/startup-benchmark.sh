@@ -0,0 +1,31 @@
+#!/bin/sh
+# Times JVM start to the end of App.start, as logged by StartupMetrics, without class data
+# sharing, with the runtime's default archive and with phone-ui.jsa.
+# Usage: startup-benchmark.sh [runs]
+cd "$(dirname "$0")"
+RUNS=${1:-10}
+JAVA=java
+[ -x runtime/bin/java ] && JAVA=runtime/bin/java
+
+run() {
+    label=$1
+    shift
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        "$JAVA" "$@" -jar phone-ui.jar --exit-after=started 2>&1 \
+            | sed -n 's/.*App.start completed \([0-9]*\) ms.*/\1/p'
+        i=$((i + 1))
+    done | sort -n | awk -v label="$label" '
+        { t[NR] = $1; sum += $1 }
+        END {
+            if (NR == 0) { print label ": no run completed"; exit }
+            printf "%-14s median %5d ms  mean %5d ms  min %5d ms  max %5d ms  (%d runs)\n",
+                label, t[int((NR + 1) / 2)], sum / NR, t[1], t[NR], NR
+        }'
+}
+
+run "no CDS" -Xshare:off
+run "default CDS" -Xshare:auto
+if [ -f phone-ui.jsa ]; then
+    run "phone-ui.jsa" -XX:SharedArchiveFile=phone-ui.jsa
+fi
@@ -1,2 +1,9 @@
 #!/bin/sh
-java -jar phone-ui.jar
+# Uses the bundled runtime and class data sharing archive when the package has them (-Pcds)
+cd "$(dirname "$0")"
+JAVA=java
+[ -x runtime/bin/java ] && JAVA=runtime/bin/java
+if [ -f phone-ui.jsa ]; then
+    exec "$JAVA" -XX:SharedArchiveFile=phone-ui.jsa -jar phone-ui.jar "$@"
+fi
+exec "$JAVA" -jar phone-ui.jar "$@"
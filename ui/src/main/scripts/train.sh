@@ -0,0 +1,7 @@
+#!/bin/sh
+# Records phone-ui.jsa from a run that exits once the phones are discovered. Rerun it after
+# replacing the runtime or any jar, as the archive only matches the ones it was recorded with.
+cd "$(dirname "$0")"
+JAVA=java
+[ -x runtime/bin/java ] && JAVA=runtime/bin/java
+exec "$JAVA" -XX:ArchiveClassesAtExit=phone-ui.jsa -jar phone-ui.jar --exit-after=ready